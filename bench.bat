@@ -0,0 +1,17 @@
+@echo off
+setlocal ENABLEDELAYEDEXPANSION
+
+REM Compile sources and benchmarks
+if not exist build\bench mkdir build\bench
+echo Compiling sources and benchmarks...
+javac -d build\bench -cp src src\*.java bench\*.java
+if errorlevel 1 (
+  echo Compilation failed.
+  exit /b 1
+)
+
+REM Run benchmarks, JSON results go to build\bench-results.json
+echo Running benchmarks...
+java -cp build\bench Benchmarks -o build\bench-results.json %*
+
+endlocal
@@ -0,0 +1,9 @@
+#!/usr/bin/env bash
+set -euo pipefail
+
+mkdir -p build/bench
+echo "Compiling sources and benchmarks..."
+javac -d build/bench -cp src src/*.java bench/*.java
+
+echo "Running benchmarks..."
+java -cp build/bench Benchmarks -o build/bench-results.json "$@"
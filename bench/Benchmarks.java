@@ -0,0 +1,420 @@
+import java.io.File;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+/**
+ * Micro-benchmarks for the simulation hot paths. Runs without any build tool
+ * or extra jars (see bench.sh / bench.bat) and writes results in the same
+ * JSON layout as JMH's {@code -rf json}, so existing JMH comparison tools can
+ * diff two runs.
+ *
+ * Usage: java -cp build/bench Benchmarks [-wi N] [-i N] [-t ms] [-o file.json] [regex]
+ */
+public class Benchmarks {
+    private static int warmupIterations = 3;
+    private static int measureIterations = 5;
+    private static long iterationMs = 500;
+
+    // Results are folded into this field so the JIT cannot drop the benchmarked work
+    static volatile long sink;
+
+    /** One benchmark case: {@link #setup()} once per iteration, then {@link #op()} in a loop. */
+    abstract static class Bench {
+        final String name;
+        final Map<String, String> params = new LinkedHashMap<>();
+
+        Bench(String name) {
+            this.name = name;
+        }
+
+        Bench param(String key, Object value) {
+            params.put(key, String.valueOf(value));
+            return this;
+        }
+
+        String label() {
+            return params.isEmpty() ? name : name + params;
+        }
+
+        abstract void setup();
+
+        abstract long op();
+    }
+
+    static class Result {
+        final Bench bench;
+        final double[] nsPerOp;
+
+        Result(Bench bench, double[] nsPerOp) {
+            this.bench = bench;
+            this.nsPerOp = nsPerOp;
+        }
+
+        double mean() {
+            double sum = 0;
+            for (double v : nsPerOp) sum += v;
+            return sum / nsPerOp.length;
+        }
+
+        /** Half-width of a ~99.9% interval, the same spirit as JMH's scoreError. */
+        double error() {
+            if (nsPerOp.length < 2) return Double.NaN;
+            double mean = mean();
+            double sq = 0;
+            for (double v : nsPerOp) sq += (v - mean) * (v - mean);
+            double stdev = Math.sqrt(sq / (nsPerOp.length - 1));
+            return 3.29 * stdev / Math.sqrt(nsPerOp.length);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String output = null;
+        Pattern filter = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-wi": warmupIterations = Integer.parseInt(args[++i]); break;
+                case "-i": measureIterations = Integer.parseInt(args[++i]); break;
+                case "-t": iterationMs = Long.parseLong(args[++i]); break;
+                case "-o": output = args[++i]; break;
+                default: filter = Pattern.compile(args[i]); break;
+            }
+        }
+
+        List<Result> results = new ArrayList<>();
+        for (Bench bench : allBenchmarks()) {
+            if (filter != null && !filter.matcher(bench.label()).find()) continue;
+            Result result = run(bench);
+            results.add(result);
+            System.out.println(String.format(Locale.ROOT, "%-50s %12.1f +- %8.1f ns/op",
+                bench.label(), result.mean(), result.error()));
+        }
+
+        if (output != null) {
+            writeJson(new File(output), results);
+            System.out.println("Results written to " + output);
+        }
+    }
+
+    static List<Bench> allBenchmarks() {
+        List<Bench> list = new ArrayList<>();
+        for (int level = 1; level <= 5; level++) {
+            list.add(tick(level));
+        }
+        for (int fill : new int[] {10, 25, 50, 75, 90, 99}) {
+            list.add(spawnFood(fill));
+        }
+        for (int length : new int[] {10, 100, 1000}) {
+            list.add(moveAISnake(length));
+        }
+        for (int length : new int[] {10, 100, 1000, 10000}) {
+            list.add(collision(length));
+        }
+        for (int agents : new int[] {50, 100, 250, 500}) {
+            list.add(arenaTick(agents, false));
+            list.add(arenaTick(agents, true));
+        }
+        for (int length : new int[] {4, 100, 1000, 4000}) {
+            list.add(snapshot(length, true));
+            list.add(snapshot(length, false));
+        }
+        return list;
+    }
+
+    private static Result run(Bench bench) {
+        for (int i = 0; i < warmupIterations; i++) {
+            iteration(bench);
+        }
+        double[] samples = new double[measureIterations];
+        for (int i = 0; i < measureIterations; i++) {
+            samples[i] = iteration(bench);
+        }
+        return new Result(bench, samples);
+    }
+
+    private static double iteration(Bench bench) {
+        bench.setup();
+        long deadline = System.nanoTime() + iterationMs * 1_000_000L;
+        long ops = 0;
+        long acc = 0;
+        long start = System.nanoTime();
+        long now;
+        do {
+            // Check the clock every 64 ops so System.nanoTime() stays out of the measurement
+            for (int i = 0; i < 64; i++) {
+                acc += bench.op();
+            }
+            ops += 64;
+            now = System.nanoTime();
+        } while (now < deadline);
+        sink += acc;
+        return (double) (now - start) / ops;
+    }
+
+    // ---- benchmark cases ----
+
+    /** One engine tick on the standard 24x24 board; restarts the level whenever the random player dies. */
+    static Bench tick(final int level) {
+        return new Bench("tick") {
+            GameEngine engine;
+            Random inputs;
+            final char[] dirs = {'U', 'D', 'L', 'R', 0, 0, 0, 0};
+
+            @Override
+            void setup() {
+                engine = new GameEngine(24, 24, 42);
+                engine.reset(level);
+                inputs = new Random(7);
+            }
+
+            @Override
+            long op() {
+                GameState s = engine.getState();
+                if (s.status != GameState.Status.RUNNING) {
+                    engine.reset(level);
+                }
+                engine.step(dirs[inputs.nextInt(dirs.length)]);
+                return s.tick;
+            }
+        }.param("level", level);
+    }
+
+    /** spawnFood() on a 64x64 board with the player snake covering {@code fillPercent} of it. */
+    static Bench spawnFood(final int fillPercent) {
+        return new Bench("spawnFood") {
+            GameEngine engine;
+
+            @Override
+            void setup() {
+                engine = new GameEngine(64, 64, 42);
+                GameState s = engine.getState();
+                engine.reset(2);
+                layOutSerpentine(s, s.snake, s.cols * s.rows * fillPercent / 100);
+                engine.spawnFood();
+            }
+
+            @Override
+            long op() {
+                engine.spawnFood();
+                return engine.getState().food;
+            }
+        }.param("fill", fillPercent);
+    }
+
+    /**
+     * One AI move with an AI snake of {@code length} cells. The snake runs
+     * along a single row twice its length wide with an invisible apple on the
+     * same row, so it loops forever without eating or hitting itself.
+     */
+    static Bench moveAISnake(final int length) {
+        return new Bench("moveAISnake") {
+            GameEngine engine;
+
+            @Override
+            void setup() {
+                engine = new GameEngine(length * 2, 5, 42);
+                GameState s = engine.getState();
+                engine.reset(5);
+                clearSnake(s, s.snake);
+                clearSnake(s, s.aiSnake);
+                for (int i = 0; i < length; i++) {
+                    occupyTail(s, s.aiSnake, s.cell(length + i, 1));
+                }
+                s.aiDirection = 'L';
+                s.aiSnakeActive = true;
+                placeFood(s, s.cell(0, 1));
+                s.appleVisible = false;
+            }
+
+            @Override
+            long op() {
+                engine.moveAISnake();
+                return engine.getState().aiSnake.head();
+            }
+        }.param("length", length);
+    }
+
+    /**
+     * A level 2 tick where a player snake of {@code length} cells moves along a
+     * row twice its length wide, so the tick cost is dominated by the
+     * self-collision check rather than eating or spawning.
+     */
+    static Bench collision(final int length) {
+        return new Bench("collision") {
+            GameEngine engine;
+
+            @Override
+            void setup() {
+                engine = new GameEngine(length * 2, 3, 42);
+                GameState s = engine.getState();
+                engine.reset(2);
+                clearSnake(s, s.snake);
+                for (int i = 0; i < length; i++) {
+                    occupyTail(s, s.snake, s.cell(length - 1 - i, 1));
+                }
+                s.direction = 'R';
+                placeFood(s, s.cell(0, 0));
+            }
+
+            @Override
+            long op() {
+                engine.step((char) 0);
+                return engine.getState().snake.head();
+            }
+        }.param("length", length);
+    }
+
+    /**
+     * One arena tick on a 200x200 board with {@code agents} AI snakes,
+     * deciding on one thread or across the common fork/join pool. The arena
+     * is warmed up for 200 ticks first so snakes have grown and spread out.
+     */
+    static Bench arenaTick(final int agents, final boolean parallel) {
+        return new Bench("arenaTick") {
+            ArenaEngine arena;
+
+            @Override
+            void setup() {
+                arena = new ArenaEngine(200, 200, agents, 42, parallel);
+                for (int i = 0; i < 200; i++) {
+                    arena.step();
+                }
+            }
+
+            @Override
+            long op() {
+                arena.step();
+                return arena.getTick();
+            }
+        }.param("agents", agents).param("parallel", parallel);
+    }
+
+    /**
+     * {@link GameSnapshot} encode or decode of a level 5 game on a 64x64
+     * board with a player snake of {@code length} cells laid out as a
+     * serpentine. The snapshot's size is reported as the {@code bytes} param.
+     */
+    static Bench snapshot(final int length, final boolean encode) {
+        final GameEngine source = new GameEngine(64, 64, 42);
+        source.reset(5);
+        layOutSerpentine(source.getState(), source.getState().snake, length);
+        placeFood(source.getState(), source.getState().freeCells.randomFree(new Random(42)));
+        final ByteBuffer encoded = ByteBuffer.allocate(GameSnapshot.maxBytes(64, 64));
+        int bytes = source.snapshot(encoded);
+        encoded.flip();
+        return new Bench(encode ? "snapshotEncode" : "snapshotDecode") {
+            final ByteBuffer out = ByteBuffer.allocate(GameSnapshot.maxBytes(64, 64));
+            final GameEngine target = new GameEngine(64, 64, 42);
+
+            @Override
+            void setup() {
+            }
+
+            @Override
+            long op() {
+                if (encode) {
+                    out.clear();
+                    return source.snapshot(out);
+                }
+                target.restore(encoded.duplicate());
+                return target.getState().snake.head();
+            }
+        }.param("length", length).param("bytes", bytes);
+    }
+
+    // ---- state setup helpers (keep GameState.freeCells consistent with the bodies) ----
+
+    private static void clearSnake(GameState s, SnakeBody body) {
+        for (int i = 0; i < body.size(); i++) {
+            s.freeCells.release(body.get(i));
+        }
+        body.clear();
+    }
+
+    private static void occupyTail(GameState s, SnakeBody body, int cell) {
+        body.addTail(cell);
+        s.freeCells.occupy(cell);
+    }
+
+    private static void placeFood(GameState s, int cell) {
+        if (s.food != GameState.NO_CELL) {
+            s.freeCells.release(s.food);
+        }
+        s.food = cell;
+        s.freeCells.occupy(cell);
+    }
+
+    /** Replaces {@code body} with a boustrophedon path of {@code length} cells starting at the top-left corner. */
+    private static void layOutSerpentine(GameState s, SnakeBody body, int length) {
+        clearSnake(s, body);
+        if (s.food != GameState.NO_CELL) {
+            s.freeCells.release(s.food);
+            s.food = GameState.NO_CELL;
+        }
+        for (int i = 0; i < length; i++) {
+            int y = i / s.cols;
+            int x = (y & 1) == 0 ? i % s.cols : s.cols - 1 - i % s.cols;
+            occupyTail(s, body, s.cell(x, y));
+        }
+    }
+
+    // ---- JMH-style JSON output ----
+
+    private static void writeJson(File file, List<Result> results) throws Exception {
+        try (PrintWriter out = new PrintWriter(file, "UTF-8")) {
+            out.println("[");
+            for (int r = 0; r < results.size(); r++) {
+                Result result = results.get(r);
+                out.println("    {");
+                out.println("        \"benchmark\" : \"Benchmarks." + result.bench.name + "\",");
+                out.println("        \"mode\" : \"avgt\",");
+                out.println("        \"threads\" : 1,");
+                out.println("        \"forks\" : 1,");
+                out.println("        \"jvm\" : \"" + jsonEscape(System.getProperty("java.home")) + "\",");
+                out.println("        \"jdkVersion\" : \"" + jsonEscape(System.getProperty("java.version")) + "\",");
+                out.println("        \"warmupIterations\" : " + warmupIterations + ",");
+                out.println("        \"warmupTime\" : \"" + iterationMs + " ms\",");
+                out.println("        \"measurementIterations\" : " + measureIterations + ",");
+                out.println("        \"measurementTime\" : \"" + iterationMs + " ms\",");
+                if (!result.bench.params.isEmpty()) {
+                    out.println("        \"params\" : {");
+                    int p = 0;
+                    for (Map.Entry<String, String> e : result.bench.params.entrySet()) {
+                        out.print("            \"" + e.getKey() + "\" : \"" + e.getValue() + "\"");
+                        out.println(++p < result.bench.params.size() ? "," : "");
+                    }
+                    out.println("        },");
+                }
+                out.println("        \"primaryMetric\" : {");
+                out.println("            \"score\" : " + number(result.mean()) + ",");
+                out.println("            \"scoreError\" : " + number(result.error()) + ",");
+                out.println("            \"scoreUnit\" : \"ns/op\",");
+                out.println("            \"rawData\" : [ " + rawData(result.nsPerOp) + " ]");
+                out.println("        }");
+                out.println(r + 1 < results.size() ? "    }," : "    }");
+            }
+            out.println("]");
+        }
+    }
+
+    private static String rawData(double[] samples) {
+        String[] parts = new String[samples.length];
+        for (int i = 0; i < samples.length; i++) parts[i] = number(samples[i]);
+        return "[ " + String.join(", ", Arrays.asList(parts)) + " ]";
+    }
+
+    private static String number(double v) {
+        return Double.isNaN(v) ? "\"NaN\"" : String.format(Locale.ROOT, "%.3f", v);
+    }
+
+    private static String jsonEscape(String s) {
+        return s == null ? "" : s.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
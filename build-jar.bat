@@ -10,6 +10,10 @@ if errorlevel 1 (
   exit /b 1
 )
 
+REM Flight Recorder events need JDK 11+; the game runs without them
+javac -d bin -cp bin jfr\*.java 2>nul
+if errorlevel 1 echo No Flight Recorder in this JDK, building without JFR events
+
 REM Prepare dist directory
 if exist dist rmdir /S /Q dist
 mkdir dist
@@ -0,0 +1,210 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder events for the engine and the game view, so a
+ * recording of a stutter shows ticks, spawns, collisions, AI decisions,
+ * level changes and paint phases next to GC pauses and safepoints.
+ *
+ * This is the only class that touches {@code jdk.jfr}, so it sits in its
+ * own source root: it needs JDK 11+ to compile, and {@link GameEvents}
+ * finds it by name, leaving the rest of the game buildable on Java 8.
+ * Loading the first event class initialises JFR's internals, which takes a
+ * few hundred milliseconds even with no recording running, so no event is
+ * created until the recorder has been started ({@link #isRecording()}), and
+ * fields are only filled in once {@code shouldCommit()} says a recording
+ * wants the event.
+ */
+final class JfrEvents implements GameEvents.Recorder {
+    @Name("snake.Tick")
+    @Label("Engine Tick")
+    @Category({"Snake", "Engine"})
+    @Description("One GameEngine.step()")
+    @StackTrace(false)
+    static final class Tick extends Event {
+        @Label("Level") int level;
+        @Label("Tick") long tick;
+        @Label("Snake Length") int snakeLength;
+        @Label("AI Snake Length") int aiLength;
+        @Label("Score") int score;
+        @Label("Event Flags") @Description("GameEngine.EVENT_* raised during the step") int events;
+    }
+
+    @Name("snake.Spawn")
+    @Label("Spawn")
+    @Category({"Snake", "Engine"})
+    @Description("Food or bomb placed on a random free cell")
+    @StackTrace(false)
+    static final class Spawn extends Event {
+        @Label("Item") String item;
+        @Label("Level") int level;
+        @Label("Cell") int cell;
+        @Label("Free Cells") @Description("Cells the item could be placed on") int freeCells;
+        @Label("Snake Length") int snakeLength;
+    }
+
+    @Name("snake.Collision")
+    @Label("Collision")
+    @Category({"Snake", "Engine"})
+    @Description("A collision that killed the player or the AI snake")
+    @StackTrace(false)
+    static final class Collision extends Event {
+        @Label("Kind") String kind;
+        @Label("Level") int level;
+        @Label("Tick") long tick;
+        @Label("Cell") int cell;
+        @Label("Snake Length") int snakeLength;
+        @Label("AI Snake Length") int aiLength;
+    }
+
+    @Name("snake.AIDecision")
+    @Label("AI Decision")
+    @Category({"Snake", "Engine"})
+    @Description("The level-5 AI choosing its next direction")
+    @StackTrace(false)
+    static final class AIDecision extends Event {
+        @Label("Level") int level;
+        @Label("AI Snake Length") int aiLength;
+        @Label("Direction") char direction;
+        @Label("Target Cell") int target;
+        @Label("Field Rebuilt") @Description("The BFS distance field was rebuilt for this decision") boolean rebuilt;
+    }
+
+    @Name("snake.LevelTransition")
+    @Label("Level Transition")
+    @Category({"Snake", "Engine"})
+    @Description("A level started or ended")
+    @StackTrace(false)
+    static final class LevelTransition extends Event {
+        @Label("Level") int level;
+        @Label("Status") @Description("RUNNING when the level started, otherwise how it ended") String status;
+        @Label("Cause") String cause;
+        @Label("Tick") long tick;
+        @Label("Score") int score;
+        @Label("Snake Length") int snakeLength;
+    }
+
+    @Name("snake.Paint")
+    @Label("Paint Phase")
+    @Category({"Snake", "View"})
+    @Description("One phase of drawing the board: background, entities or HUD overlay")
+    @StackTrace(false)
+    static final class Paint extends Event {
+        @Label("Phase") String phase;
+        @Label("Level") int level;
+        @Label("Clip Area") @Description("Pixels in the clip rectangle, or the whole panel") int clipArea;
+        @Label("Snake Length") int snakeLength;
+    }
+
+    /** True once a recording has been started in this JVM, from the command line or with jcmd. */
+    @Override
+    public boolean isRecording() {
+        return FlightRecorder.isInitialized();
+    }
+
+    @Override
+    public Object beginTick() {
+        Tick event = new Tick();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endTick(Object token, GameState s) {
+        Tick event = (Tick) token;
+        if (event.shouldCommit()) {
+            event.level = s.level;
+            event.tick = s.tick;
+            event.snakeLength = s.snake.size();
+            event.aiLength = s.aiSnake.size();
+            event.score = s.score;
+            event.events = s.events;
+            event.commit();
+        }
+    }
+
+    @Override
+    public Object beginAIDecision() {
+        AIDecision event = new AIDecision();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endAIDecision(Object token, GameState s, int target, boolean rebuilt) {
+        AIDecision event = (AIDecision) token;
+        if (event.shouldCommit()) {
+            event.level = s.level;
+            event.aiLength = s.aiSnake.size();
+            event.direction = s.aiDirection;
+            event.target = target;
+            event.rebuilt = rebuilt;
+            event.commit();
+        }
+    }
+
+    @Override
+    public Object beginPaint() {
+        Paint event = new Paint();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endPaint(Object token, String phase, int level, int clipArea, int snakeLength) {
+        Paint event = (Paint) token;
+        if (event.shouldCommit()) {
+            event.phase = phase;
+            event.level = level;
+            event.clipArea = clipArea;
+            event.snakeLength = snakeLength;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void spawn(String item, GameState s, int cell) {
+        Spawn event = new Spawn();
+        if (event.isEnabled()) {
+            event.item = item;
+            event.level = s.level;
+            event.cell = cell;
+            event.freeCells = s.freeCells.freeCount() + (cell != GameState.NO_CELL ? 1 : 0);
+            event.snakeLength = s.snake.size();
+            event.commit();
+        }
+    }
+
+    @Override
+    public void collision(String kind, GameState s, int cell) {
+        Collision event = new Collision();
+        if (event.isEnabled()) {
+            event.kind = kind;
+            event.level = s.level;
+            event.tick = s.tick;
+            event.cell = cell;
+            event.snakeLength = s.snake.size();
+            event.aiLength = s.aiSnake.size();
+            event.commit();
+        }
+    }
+
+    @Override
+    public void levelTransition(GameState s) {
+        LevelTransition event = new LevelTransition();
+        if (event.isEnabled()) {
+            event.level = s.level;
+            event.status = s.status.name();
+            event.cause = s.cause.name();
+            event.tick = s.tick;
+            event.score = s.score;
+            event.snakeLength = s.snake.size();
+            event.commit();
+        }
+    }
+}
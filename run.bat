@@ -12,6 +12,10 @@ if errorlevel 1 (
   exit /b 1
 )
 
+REM Flight Recorder events need JDK 11+; the game runs without them
+javac -d bin -cp bin jfr\*.java 2>nul
+if errorlevel 1 echo No Flight Recorder in this JDK, building without JFR events
+
 REM Copy sound assets
 if exist src\sounds (
   xcopy /E /I /Y src\sounds bin\sounds >nul 2>nul
@@ -5,6 +5,8 @@ mkdir -p bin
 
 echo "Compiling sources..."
 javac -d bin -cp src src/*.java
+# Flight Recorder events need JDK 11+; the game runs without them
+javac -d bin -cp bin jfr/*.java 2>/dev/null || echo "No Flight Recorder in this JDK, building without JFR events"
 
 if [ -d src/sounds ]; then
   mkdir -p bin/sounds
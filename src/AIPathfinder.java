@@ -0,0 +1,335 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Steering for the level-5 AI snake (and the balance runner's path bot). Keeps a BFS distance field to the
+ * target cell over the wrap-around board, with both snakes as walls, and
+ * moves the AI downhill along it; a visible bomb is simply never stepped on.
+ *
+ * The field is only rebuilt when the target changes, or when the AI's best
+ * neighbour has no distance because it is cut off or has strayed outside
+ * the field (retried at most every {@link #RETRY_MOVES} moves); otherwise
+ * the old field is reused as the snakes move. A rebuild stops
+ * {@link #RETRY_MOVES} steps past the AI's head, or after
+ * {@link #FIELD_BUDGET} cells on a large board. When the head is further
+ * away than that, the AI heads straight for the target by wrap-around
+ * distance until it is within {@link #FIELD_RADIUS}, so a move never costs
+ * more than one bounded rebuild. Before committing to a move
+ * the chosen cell gets a flood fill capped at {@link #SPACE_BUDGET} cells,
+ * so the AI avoids pockets smaller than itself without the cost of a move
+ * growing with board or snake size. The budget is counted in cells visited
+ * rather than wall time, which keeps the AI deterministic for replays.
+ *
+ * Everything lives in primitive arrays allocated once per board; visited
+ * sets use generation stamps, so nothing is cleared or allocated per move.
+ *
+ * A field outlives the board it was built on, so the AI's next moves
+ * depend on where the snakes were at the last rebuild. Each rebuild keeps
+ * the blocked cells it ran into, in the order it met them; with the target
+ * and head that is all it read, and {@link #readField} rebuilds the same
+ * field from them for a restored {@link GameSnapshot}.
+ */
+public class AIPathfinder {
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    // Most cells a single safety flood fill may visit
+    static final int SPACE_BUDGET = 64;
+
+    // Moves to wait before rebuilding again for a target that was unreachable
+    static final int RETRY_MOVES = 8;
+
+    // Most cells one rebuild may enqueue, and how close the head must be before a truncated field is retried
+    static final int FIELD_BUDGET = 1 << 16;
+    static final int FIELD_RADIUS = 128;
+
+    private static final char[] DIRECTIONS = {'U', 'D', 'L', 'R'};
+
+    final int cols;
+    final int rows;
+
+    // adjacent[cell * 4 + k] is the neighbour of cell in direction DIRECTIONS[k], wrapping at the edges
+    private final int[] adjacent;
+
+    // Distance field: dist[c] is valid only while fieldStamp[c] == fieldGen
+    private final int[] dist;
+    private final int[] fieldStamp;
+    private int fieldGen = 0;
+    private int fieldTarget = GameState.NO_CELL;
+    private int fieldHead = GameState.NO_CELL;
+    private boolean fieldCoversHead = false;
+    private int movesSinceRebuild = 0;
+
+    // Blocked cells the last rebuild reached, in BFS order
+    private int[] walls = new int[64];
+    private int wallCount = 0;
+
+    // Flood fill scratch for the space check
+    private final int[] spaceStamp;
+    private int spaceGen = 0;
+
+    // Shared BFS queue
+    private final int[] queue;
+
+    // Free neighbours of the head, nearest first
+    private final char[] candidateDirs = new char[3];
+    private final int[] candidateDist = new int[3];
+
+    private long rebuilds = 0;
+
+    public AIPathfinder(int cols, int rows) {
+        this.cols = cols;
+        this.rows = rows;
+        int cells = cols * rows;
+        adjacent = new int[cells * 4];
+        for (int cell = 0; cell < cells; cell++) {
+            int x = cell % cols;
+            int y = cell / cols;
+            adjacent[cell * 4] = (y == 0 ? rows - 1 : y - 1) * cols + x;
+            adjacent[cell * 4 + 1] = (y == rows - 1 ? 0 : y + 1) * cols + x;
+            adjacent[cell * 4 + 2] = y * cols + (x == 0 ? cols - 1 : x - 1);
+            adjacent[cell * 4 + 3] = y * cols + (x == cols - 1 ? 0 : x + 1);
+        }
+        dist = new int[cells];
+        fieldStamp = new int[cells];
+        spaceStamp = new int[cells];
+        queue = new int[cells];
+    }
+
+    /** Forgets the current field; the next {@link #chooseDirection} rebuilds it. */
+    public void invalidate() {
+        fieldTarget = GameState.NO_CELL;
+        fieldHead = GameState.NO_CELL;
+        fieldCoversHead = false;
+        movesSinceRebuild = 0;
+        wallCount = 0;
+        fieldGen = nextGen(fieldGen, fieldStamp);
+    }
+
+    /**
+     * Writes what the current field was built from: target + 1 and head + 1
+     * (0 = none), moves since that rebuild, and the blocked cells it reached
+     * (count, then each cell), all as varints.
+     */
+    void writeField(ByteBuffer out) {
+        NetProtocol.putVarint(out, fieldTarget + 1);
+        NetProtocol.putVarint(out, fieldHead + 1);
+        NetProtocol.putVarint(out, movesSinceRebuild);
+        NetProtocol.putVarint(out, wallCount);
+        for (int i = 0; i < wallCount; i++) {
+            NetProtocol.putVarint(out, walls[i]);
+        }
+    }
+
+    /**
+     * Reads what {@link #writeField} wrote and rebuilds that field, which
+     * comes out exactly as the original: the BFS visits cells in the same
+     * order and meets the same walls. Throws {@link IllegalArgumentException}
+     * on cells off the board.
+     */
+    void readField(ByteBuffer in) {
+        int cells = cols * rows;
+        int target = cellOrNone(NetProtocol.getVarintInt(in), cells);
+        int head = cellOrNone(NetProtocol.getVarintInt(in), cells);
+        if (head == GameState.NO_CELL && target != GameState.NO_CELL) throw new IllegalArgumentException("Field without a head");
+        int moves = NetProtocol.getVarintInt(in);
+        int count = NetProtocol.getVarintInt(in);
+        if (count > cells) throw new IllegalArgumentException("More walls than cells: " + count);
+        spaceGen = nextGen(spaceGen, spaceStamp);
+        for (int i = 0; i < count; i++) {
+            int wall = NetProtocol.getVarintInt(in);
+            if (wall >= cells) throw new IllegalArgumentException("Cell off the board: " + wall);
+            spaceStamp[wall] = spaceGen;
+        }
+        fill(null, head, target);
+        movesSinceRebuild = moves;
+    }
+
+    private static int cellOrNone(int cellPlusOne, int cells) {
+        if (cellPlusOne > cells) throw new IllegalArgumentException("Cell off the board: " + (cellPlusOne - 1));
+        return cellPlusOne - 1;
+    }
+
+    /** Number of times the distance field has been rebuilt, for benchmarks and stats. */
+    public long getRebuilds() {
+        return rebuilds;
+    }
+
+    /** Steps from {@code cell} to {@code target} through free cells as of the last rebuild. */
+    public int distance(int cell) {
+        return fieldStamp[cell] == fieldGen ? dist[cell] : UNREACHABLE;
+    }
+
+    /**
+     * Picks the next direction for {@code self} (the AI snake, or the player
+     * when a bot steers it) currently heading {@code direction}: the safe
+     * neighbour closest to the target, preferring ones with room for the
+     * whole snake behind them. If no neighbour is free the current direction
+     * is kept.
+     */
+    public char chooseDirection(GameState s, SnakeBody self, char direction, int target) {
+        int head = self.head();
+        int bomb = s.bombVisible ? s.bomb : GameState.NO_CELL;
+        if (target != fieldTarget) {
+            rebuild(s, head, target);
+        }
+
+        char best = pick(s, self, direction, target, bomb);
+        boolean stale = fieldCoversHead
+            ? best != 0 && distance(neighbor(head, best)) == UNREACHABLE
+            : target != GameState.NO_CELL && torusDistance(head, target) <= FIELD_RADIUS;
+        if (stale && movesSinceRebuild >= RETRY_MOVES) {
+            // Walled off by cells that moved since the last rebuild, or now close enough for a full field
+            rebuild(s, head, target);
+            best = pick(s, self, direction, target, bomb);
+        }
+        movesSinceRebuild++;
+        return best != 0 ? best : direction;
+    }
+
+    /**
+     * Tries the free neighbours nearest-first and takes the first one with
+     * room for the snake, so usually only one flood fill runs. When every
+     * neighbour is a pocket the roomiest wins. Returns 0 if none is free.
+     */
+    private char pick(GameState s, SnakeBody self, char direction, int target, int bomb) {
+        int head = self.head();
+        int count = 0;
+        char reverse = GameEngine.getOppositeDirection(direction);
+        for (int k = 0; k < 4; k++) {
+            char dir = DIRECTIONS[k];
+            if (dir == reverse) continue;
+            int next = adjacent[head * 4 + k];
+            if (isBlocked(s, next, bomb)) continue;
+            // Insertion sort by distance; ties keep DIRECTIONS order
+            int d = fieldCoversHead || target == GameState.NO_CELL ? distance(next) : torusDistance(next, target);
+            int i = count++;
+            while (i > 0 && candidateDist[i - 1] > d) {
+                candidateDirs[i] = candidateDirs[i - 1];
+                candidateDist[i] = candidateDist[i - 1];
+                i--;
+            }
+            candidateDirs[i] = dir;
+            candidateDist[i] = d;
+        }
+        if (count <= 1) {
+            return count == 0 ? 0 : candidateDirs[0];
+        }
+
+        int need = Math.min(self.size(), SPACE_BUDGET);
+        char roomiest = 0;
+        int roomiestSpace = -1;
+        for (int i = 0; i < count; i++) {
+            char dir = candidateDirs[i];
+            int space = space(s, neighbor(head, dir), bomb, need);
+            if (space >= need) {
+                return dir;
+            }
+            if (space > roomiestSpace) {
+                roomiest = dir;
+                roomiestSpace = space;
+            }
+        }
+        return roomiest;
+    }
+
+    private void rebuild(GameState s, int head, int target) {
+        rebuilds++;
+        movesSinceRebuild = 0;
+        fill(s, head, target);
+    }
+
+    /**
+     * Builds the field for {@code target} around {@code head}, with the
+     * snakes in {@code s} as walls, or when {@code s} is null, the cells
+     * {@link #readField} stamped into {@code spaceStamp}.
+     */
+    private void fill(GameState s, int head, int target) {
+        fieldGen = nextGen(fieldGen, fieldStamp);
+        fieldTarget = target;
+        fieldHead = head;
+        fieldCoversHead = false;
+        wallCount = 0;
+        if (target == GameState.NO_CELL || torusDistance(head, target) > FIELD_RADIUS) {
+            return; // too far for a field yet; steer by wrap-around distance
+        }
+
+        int headIdx = 0;
+        int tailIdx = 0;
+        dist[target] = 0;
+        fieldStamp[target] = fieldGen;
+        queue[tailIdx++] = target;
+        int horizon = UNREACHABLE;
+        while (headIdx < tailIdx) {
+            int cell = queue[headIdx++];
+            if (dist[cell] > horizon) break;
+            if (horizon == UNREACHABLE && fieldStamp[head] == fieldGen) {
+                // Head found: cover what the AI can reach within RETRY_MOVES moves of detour, then stop
+                horizon = dist[head] + RETRY_MOVES + 1;
+            }
+            int d = dist[cell] + 1;
+            for (int k = cell * 4; k < cell * 4 + 4; k++) {
+                int next = adjacent[k];
+                if (fieldStamp[next] == fieldGen) continue;
+                fieldStamp[next] = fieldGen;
+                dist[next] = d;
+                // Occupied cells get a distance (so a head next to the target sees it) but are not expanded
+                if (s != null ? isBlocked(s, next, GameState.NO_CELL) : spaceStamp[next] == spaceGen) {
+                    if (wallCount == walls.length) walls = Arrays.copyOf(walls, wallCount * 2);
+                    walls[wallCount++] = next;
+                } else if (tailIdx < FIELD_BUDGET) {
+                    queue[tailIdx++] = next;
+                }
+            }
+        }
+        fieldCoversHead = fieldStamp[head] == fieldGen;
+    }
+
+    /** Steps between two cells on the wrap-around board, ignoring anything in the way. */
+    private int torusDistance(int a, int b) {
+        int dx = Math.abs(a % cols - b % cols);
+        int dy = Math.abs(a / cols - b / cols);
+        return Math.min(dx, cols - dx) + Math.min(dy, rows - dy);
+    }
+
+    /** Free cells reachable from {@code start}, counting at most {@code limit}. */
+    private int space(GameState s, int start, int bomb, int limit) {
+        spaceGen = nextGen(spaceGen, spaceStamp);
+        int headIdx = 0;
+        int tailIdx = 0;
+        spaceStamp[start] = spaceGen;
+        queue[tailIdx++] = start;
+        while (headIdx < tailIdx && tailIdx < limit) {
+            int cell = queue[headIdx++];
+            for (int k = cell * 4; k < cell * 4 + 4; k++) {
+                int next = adjacent[k];
+                if (spaceStamp[next] == spaceGen || isBlocked(s, next, bomb)) continue;
+                spaceStamp[next] = spaceGen;
+                queue[tailIdx++] = next;
+                if (tailIdx >= limit) break;
+            }
+        }
+        return tailIdx;
+    }
+
+    private static boolean isBlocked(GameState s, int cell, int bomb) {
+        return cell == bomb || s.snake.contains(cell) || s.aiSnake.contains(cell);
+    }
+
+    /** Bumps a generation counter, wiping its stamp array on the (rare) wrap to 0. */
+    private static int nextGen(int gen, int[] stamps) {
+        if (++gen == 0) {
+            Arrays.fill(stamps, 0);
+            gen = 1;
+        }
+        return gen;
+    }
+
+    private int neighbor(int cell, char dir) {
+        switch (dir) {
+            case 'U': return adjacent[cell * 4];
+            case 'D': return adjacent[cell * 4 + 1];
+            case 'L': return adjacent[cell * 4 + 2];
+            default: return adjacent[cell * 4 + 3];
+        }
+    }
+}
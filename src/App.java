@@ -1,10 +1,23 @@
+import java.io.File;
 import javax.swing.SwingUtilities;
 
 public class App {
     public static void main(String[] args) {
+        StartupTimer.start();
         SwingUtilities.invokeLater(() -> {
             SnakeGame game = new SnakeGame();
             game.setVisible(true);
+            // java App file.snkr: watch a recorded level instead of playing
+            if (args.length > 0) {
+                try {
+                    game.playReplay(new File(args[0]));
+                } catch (Exception e) {
+                    System.out.println("Failed to load replay: " + e.getMessage());
+                }
+            } else if (System.getProperty("snake.connect") != null) {
+                // java -Dsnake.connect=host[:port] App: play in a GameServer room
+                game.joinServer(System.getProperty("snake.connect"));
+            }
         });
     }
 }
@@ -0,0 +1,508 @@
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Headless arena: many AI snakes and half as many apples on one large
+ * wrap-around board. Like {@link GameEngine}, each {@link #step()} is one
+ * tick and nothing here touches Swing or the wall clock.
+ *
+ * A tick runs in two phases. In the decision phase every live agent picks
+ * its next direction from the board as it stood at the start of the tick;
+ * agents only read shared state and write their own slot in
+ * {@link #decisions}, so the phase is split across a fork/join pool. The
+ * resolution phase then applies all moves on the calling thread in agent
+ * order, so results depend only on the seed, never on thread timing.
+ *
+ * All collisions go through one shared grid holding the owner of each
+ * cell, so a move is checked in O(1) however many snakes there are. Each
+ * agent keeps heading for the apple it picked until that apple is gone and
+ * only then scans the (dense) apple list for the nearest one, which also
+ * happens in the parallel phase.
+ *
+ * Agents can also be steered from outside ({@link #setControlled}): a
+ * controlled agent takes the direction last given to {@link #steer}
+ * instead of deciding for itself, which is how {@link GameServer} puts
+ * remote players into the arena. Each step also lists which agents died,
+ * which were (re)spawned and where apples appeared, so the server can
+ * send the changes instead of the board.
+ */
+public class ArenaEngine {
+    public static final int START_LENGTH = 4;
+
+    // Agents per fork/join leaf task
+    static final int DECIDE_BATCH = 32;
+
+    // Most cells one safety flood fill may visit; kept small since every agent runs one per tick
+    static final int SPACE_BUDGET = 32;
+
+    // grid[] values besides agent ids
+    static final int EMPTY = -1;
+    static final int APPLE = -2;
+
+    private static final char[] DIRECTIONS = {'U', 'D', 'L', 'R'};
+
+    final int cols;
+    final int rows;
+    final int agentCount;
+    final int appleCount;
+
+    // adjacent[cell * 4 + k] is the neighbour of cell in direction DIRECTIONS[k]
+    private final int[] adjacent;
+
+    // Owner of every cell: an agent id, EMPTY or APPLE
+    final int[] grid;
+    final FreeCellIndex freeCells;
+
+    final SnakeBody[] bodies;
+    final char[] directions;
+    final boolean[] alive;
+    final int[] scores;
+    final char[] decisions;
+
+    // Remote-controlled agents and the turn each one takes on the next step (0 = straight on)
+    private final boolean[] controlled;
+    private final char[] steering;
+
+    // What the last step changed besides the moves, in the order it happened
+    final int[] died;
+    int diedCount = 0;
+    final int[] spawned;
+    int spawnedCount = 0;
+    final int[] applesPlaced;
+    int applesPlacedCount = 0;
+
+    // Apple cells, dense, plus each cell's slot in that array
+    private final int[] appleCells;
+    private final int[] appleSlot;
+    private int apples = 0;
+
+    // Apple each agent is heading for; written only by that agent's decision
+    private final int[] targets;
+
+    // Resolution scratch: per-cell claim stamps and the claimed head cell of each agent
+    private final int[] claimStamp;
+    private final int[] claimCount;
+    private final int[] newHeads;
+    private final boolean[] dying;
+    private int claimGen = 0;
+
+    private final Random random;
+    private final boolean parallel;
+    private final ThreadLocal<FloodScratch> floodScratch;
+
+    long tick = 0;
+    int deaths = 0;
+    int applesEaten = 0;
+
+    public ArenaEngine(int cols, int rows, int agentCount, long seed) {
+        this(cols, rows, agentCount, seed, true);
+    }
+
+    public ArenaEngine(int cols, int rows, int agentCount, long seed, boolean parallel) {
+        this.cols = cols;
+        this.rows = rows;
+        this.agentCount = agentCount;
+        this.appleCount = Math.max(1, agentCount / 2);
+        this.parallel = parallel;
+        this.random = new Random(seed);
+
+        int cells = cols * rows;
+        adjacent = new int[cells * 4];
+        for (int cell = 0; cell < cells; cell++) {
+            int x = cell % cols;
+            int y = cell / cols;
+            adjacent[cell * 4] = (y == 0 ? rows - 1 : y - 1) * cols + x;
+            adjacent[cell * 4 + 1] = (y == rows - 1 ? 0 : y + 1) * cols + x;
+            adjacent[cell * 4 + 2] = y * cols + (x == 0 ? cols - 1 : x - 1);
+            adjacent[cell * 4 + 3] = y * cols + (x == cols - 1 ? 0 : x + 1);
+        }
+        grid = new int[cells];
+        freeCells = new FreeCellIndex(cells);
+        appleCells = new int[appleCount];
+        appleSlot = new int[cells];
+        claimStamp = new int[cells];
+        claimCount = new int[cells];
+
+        bodies = new SnakeBody[agentCount];
+        for (int i = 0; i < agentCount; i++) {
+            bodies[i] = new SnakeBody(cells);
+        }
+        directions = new char[agentCount];
+        alive = new boolean[agentCount];
+        scores = new int[agentCount];
+        decisions = new char[agentCount];
+        newHeads = new int[agentCount];
+        dying = new boolean[agentCount];
+        targets = new int[agentCount];
+        controlled = new boolean[agentCount];
+        steering = new char[agentCount];
+        died = new int[agentCount];
+        spawned = new int[agentCount];
+        applesPlaced = new int[appleCount];
+        floodScratch = ThreadLocal.withInitial(() -> new FloodScratch(cells));
+        reset();
+    }
+
+    /** Clears the board, then places every agent and apple at random. */
+    public void reset() {
+        Arrays.fill(grid, EMPTY);
+        freeCells.reset();
+        tick = 0;
+        deaths = 0;
+        applesEaten = 0;
+        apples = 0;
+        diedCount = 0;
+        spawnedCount = 0;
+        applesPlacedCount = 0;
+        Arrays.fill(targets, GameState.NO_CELL);
+        for (int i = 0; i < agentCount; i++) {
+            bodies[i].clear();
+            alive[i] = false;
+            scores[i] = 0;
+            spawnAgent(i);
+        }
+        refillApples();
+    }
+
+    public int getCols() { return cols; }
+    public int getRows() { return rows; }
+    public int getAgentCount() { return agentCount; }
+    public long getTick() { return tick; }
+    public int getDeaths() { return deaths; }
+    public int getApplesEaten() { return applesEaten; }
+    public boolean isAlive(int agent) { return alive[agent]; }
+    public SnakeBody getBody(int agent) { return bodies[agent]; }
+
+    /** An agent id, {@link #EMPTY} or {@link #APPLE}. */
+    public int ownerAt(int cell) {
+        return grid[cell];
+    }
+
+    /** Hands {@code agent} to an outside controller, or back to its own decisions. */
+    public void setControlled(int agent, boolean controlled) {
+        this.controlled[agent] = controlled;
+        steering[agent] = 0;
+    }
+
+    public boolean isControlled(int agent) {
+        return controlled[agent];
+    }
+
+    /**
+     * Turn for a controlled agent to take on the next step; a reversal is
+     * ignored and the agent goes straight on.
+     */
+    public void steer(int agent, char direction) {
+        steering[agent] = direction;
+    }
+
+    public char getDirection(int agent) {
+        return directions[agent];
+    }
+
+    public int getScore(int agent) {
+        return scores[agent];
+    }
+
+    public int liveAgents() {
+        int n = 0;
+        for (boolean a : alive) if (a) n++;
+        return n;
+    }
+
+    /** Advances the arena by one tick: parallel decisions, then deterministic resolution. */
+    public void step() {
+        diedCount = 0;
+        spawnedCount = 0;
+        applesPlacedCount = 0;
+        if (parallel) {
+            ForkJoinPool.commonPool().invoke(new DecideTask(0, agentCount));
+        } else {
+            decide(0, agentCount);
+        }
+        resolve();
+        tick++;
+    }
+
+    // ---- decision phase (read-only on shared state) ----
+
+    private void decide(int from, int to) {
+        FloodScratch scratch = floodScratch.get();
+        for (int i = from; i < to; i++) {
+            if (!alive[i]) continue;
+            if (controlled[i]) {
+                char turn = steering[i];
+                steering[i] = 0;
+                boolean legal = turn != 0 && turn != GameEngine.getOppositeDirection(directions[i]);
+                decisions[i] = legal ? turn : directions[i];
+            } else {
+                decisions[i] = chooseDirection(i, scratch);
+            }
+        }
+    }
+
+    /**
+     * Same rule as the level-5 {@link AIPathfinder}: free neighbours are
+     * tried closest to the target apple first, and the first with room for
+     * the snake wins; failing that the roomiest, failing that straight on.
+     */
+    private char chooseDirection(int agent, FloodScratch scratch) {
+        int head = bodies[agent].head();
+        int target = targets[agent];
+        if (target == GameState.NO_CELL || grid[target] != APPLE) {
+            target = nearestApple(head);
+            targets[agent] = target;
+        }
+        char reverse = GameEngine.getOppositeDirection(directions[agent]);
+        char[] dirs = scratch.candidateDirs;
+        int[] dists = scratch.candidateDist;
+        int count = 0;
+        for (int k = 0; k < 4; k++) {
+            char dir = DIRECTIONS[k];
+            int next = adjacent[head * 4 + k];
+            if (dir == reverse || grid[next] >= 0) continue;
+            int d = target == GameState.NO_CELL ? 0 : distance(next, target);
+            int i = count++;
+            while (i > 0 && dists[i - 1] > d) {
+                dirs[i] = dirs[i - 1];
+                dists[i] = dists[i - 1];
+                i--;
+            }
+            dirs[i] = dir;
+            dists[i] = d;
+        }
+        if (count == 0) return directions[agent];
+        if (count == 1) return dirs[0];
+
+        int need = Math.min(bodies[agent].size(), SPACE_BUDGET);
+        char roomiest = dirs[0];
+        int roomiestSpace = -1;
+        for (int i = 0; i < count; i++) {
+            int space = scratch.space(neighbor(head, dirs[i]), need);
+            if (space >= need) return dirs[i];
+            if (space > roomiestSpace) {
+                roomiest = dirs[i];
+                roomiestSpace = space;
+            }
+        }
+        return roomiest;
+    }
+
+    private int nearestApple(int from) {
+        int best = GameState.NO_CELL;
+        int bestDist = Integer.MAX_VALUE;
+        for (int i = 0; i < apples; i++) {
+            int d = distance(from, appleCells[i]);
+            if (d < bestDist) {
+                best = appleCells[i];
+                bestDist = d;
+            }
+        }
+        return best;
+    }
+
+    /** Steps between two cells on the wrap-around board, ignoring anything in the way. */
+    private int distance(int a, int b) {
+        int dx = Math.abs(a % cols - b % cols);
+        int dy = Math.abs(a / cols - b / cols);
+        return Math.min(dx, cols - dx) + Math.min(dy, rows - dy);
+    }
+
+    /** Per-worker flood fill state, so deciding agents never share scratch arrays. */
+    private final class FloodScratch {
+        final int[] stamp;
+        final int[] queue = new int[SPACE_BUDGET + 4];
+        final char[] candidateDirs = new char[3];
+        final int[] candidateDist = new int[3];
+        int gen = 0;
+
+        FloodScratch(int cells) {
+            stamp = new int[cells];
+        }
+
+        /** Cells not owned by any snake reachable from {@code start}, counting at most {@code limit}. */
+        int space(int start, int limit) {
+            if (++gen == 0) {
+                Arrays.fill(stamp, 0);
+                gen = 1;
+            }
+            int headIdx = 0;
+            int tailIdx = 0;
+            stamp[start] = gen;
+            queue[tailIdx++] = start;
+            while (headIdx < tailIdx && tailIdx < limit) {
+                int cell = queue[headIdx++];
+                for (int k = cell * 4; k < cell * 4 + 4 && tailIdx < limit; k++) {
+                    int next = adjacent[k];
+                    if (stamp[next] == gen || grid[next] >= 0) continue;
+                    stamp[next] = gen;
+                    queue[tailIdx++] = next;
+                }
+            }
+            return tailIdx;
+        }
+    }
+
+    private final class DecideTask extends RecursiveAction {
+        private final int from;
+        private final int to;
+
+        DecideTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= DECIDE_BATCH) {
+                decide(from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new DecideTask(from, mid), new DecideTask(mid, to));
+        }
+    }
+
+    // ---- resolution phase (single thread, agent order) ----
+
+    private void resolve() {
+        if (++claimGen == 0) {
+            Arrays.fill(claimStamp, 0);
+            claimGen = 1;
+        }
+
+        // Turn, pick the head cell, and vacate the tail of every agent that is not about to eat
+        for (int i = 0; i < agentCount; i++) {
+            if (!alive[i]) continue;
+            directions[i] = decisions[i];
+            int next = neighbor(bodies[i].head(), directions[i]);
+            newHeads[i] = next;
+            if (claimStamp[next] != claimGen) {
+                claimStamp[next] = claimGen;
+                claimCount[next] = 0;
+            }
+            claimCount[next]++;
+            if (grid[next] != APPLE) {
+                int tail = bodies[i].popTail();
+                grid[tail] = EMPTY;
+                freeCells.release(tail);
+            }
+        }
+
+        // Heads meeting in one cell all die; so does a head entering any remaining body.
+        // Every death is decided before any body is removed, so agent order cannot matter.
+        for (int i = 0; i < agentCount; i++) {
+            int next = newHeads[i];
+            dying[i] = alive[i] && (claimCount[next] > 1 || grid[next] >= 0);
+        }
+        for (int i = 0; i < agentCount; i++) {
+            if (dying[i]) {
+                kill(i);
+            }
+        }
+
+        // Survivors move in; apples eaten leave the snake one longer since its tail stayed
+        for (int i = 0; i < agentCount; i++) {
+            if (!alive[i]) continue;
+            int next = newHeads[i];
+            if (grid[next] == APPLE) {
+                removeApple(next);
+                scores[i] += 10;
+                applesEaten++;
+            }
+            bodies[i].pushHead(next);
+            grid[next] = i;
+            freeCells.occupy(next);
+        }
+
+        for (int i = 0; i < agentCount; i++) {
+            if (!alive[i]) {
+                spawnAgent(i);
+            }
+        }
+        refillApples();
+    }
+
+    private void kill(int agent) {
+        SnakeBody body = bodies[agent];
+        for (int i = 0; i < body.size(); i++) {
+            int cell = body.get(i);
+            if (grid[cell] == agent) {
+                grid[cell] = EMPTY;
+                freeCells.release(cell);
+            }
+        }
+        body.clear();
+        alive[agent] = false;
+        deaths++;
+        died[diedCount++] = agent;
+    }
+
+    /**
+     * Lays out a fresh snake heading right from a random free cell with
+     * room behind it. Gives up for this tick (leaving the agent dead) if a
+     * few tries find no spot, which only happens on a crowded board.
+     */
+    private void spawnAgent(int agent) {
+        for (int attempt = 0; attempt < 8; attempt++) {
+            int head = freeCells.randomFree(random);
+            if (head == GameState.NO_CELL) return;
+            boolean fits = true;
+            int cell = head;
+            for (int i = 0; i < START_LENGTH; i++) {
+                if (grid[cell] != EMPTY) {
+                    fits = false;
+                    break;
+                }
+                cell = neighbor(cell, 'L');
+            }
+            if (!fits) continue;
+
+            SnakeBody body = bodies[agent];
+            cell = head;
+            for (int i = 0; i < START_LENGTH; i++) {
+                body.addTail(cell);
+                grid[cell] = agent;
+                freeCells.occupy(cell);
+                cell = neighbor(cell, 'L');
+            }
+            directions[agent] = 'R';
+            decisions[agent] = 'R';
+            alive[agent] = true;
+            spawned[spawnedCount++] = agent;
+            return;
+        }
+    }
+
+    private void refillApples() {
+        int missing = appleCount - apples;
+        for (int i = 0; i < missing; i++) {
+            int cell = freeCells.randomFree(random);
+            if (cell == GameState.NO_CELL) break;
+            grid[cell] = APPLE;
+            freeCells.occupy(cell);
+            appleSlot[cell] = apples;
+            appleCells[apples++] = cell;
+            applesPlaced[applesPlacedCount++] = cell;
+        }
+    }
+
+    private void removeApple(int cell) {
+        freeCells.release(cell);
+        int slot = appleSlot[cell];
+        int last = appleCells[--apples];
+        appleCells[slot] = last;
+        appleSlot[last] = slot;
+    }
+
+    private int neighbor(int cell, char dir) {
+        switch (dir) {
+            case 'U': return adjacent[cell * 4];
+            case 'D': return adjacent[cell * 4 + 1];
+            case 'L': return adjacent[cell * 4 + 2];
+            default: return adjacent[cell * 4 + 3];
+        }
+    }
+}
@@ -0,0 +1,315 @@
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Software mixer on its own thread feeding one {@link SourceDataLine}.
+ * Sounds are decoded once into 16-bit stereo PCM at the mixer rate by
+ * {@link #load}; after that {@link #play}, {@link #loop} and {@link #stop}
+ * only put a packed command on a lock-free queue and return, so the game
+ * loop never waits on the audio device. The mixer thread picks the commands
+ * up before each buffer and sums up to {@link #MAX_VOICES} voices, each with
+ * its own gain, so rapid sounds overlap instead of cutting each other off.
+ *
+ * The buffer size (in frames per write) trades latency against the risk of
+ * underruns; 512 frames is about 12 ms at 44.1 kHz. Without an audio device
+ * the mixer stays silent and every call is a no-op.
+ */
+public class AudioMixer {
+    public static final int NO_SAMPLE = -1;
+    public static final int MAX_VOICES = 16;
+    public static final int DEFAULT_BUFFER_FRAMES = 512;
+
+    // Channel of one-shot sounds; looped sounds get their own channel so they can be stopped
+    public static final int EFFECTS = 0;
+
+    private static final float SAMPLE_RATE = 44100f;
+    private static final int MAX_SAMPLES = 1 << 11;
+    private static final int MAX_CHANNEL = (1 << 15) - 1;
+    private static final float GAIN_UNIT = 4096f; // gains travel through the queue as 4.12 fixed point
+
+    private static final int OP_PLAY = 1;
+    private static final int OP_LOOP = 2;
+    private static final int OP_STOP = 3;
+
+    private final int bufferFrames;
+    private final TriggerQueue commands = new TriggerQueue(256);
+    private volatile short[][] samples = new short[0][];
+
+    private SourceDataLine line;
+    private Thread thread;
+    private volatile boolean running;
+
+    // Voices, touched by the mixer thread only
+    private final int[] voiceSample = new int[MAX_VOICES];
+    private final int[] voicePosition = new int[MAX_VOICES];
+    private final int[] voiceGain = new int[MAX_VOICES];
+    private final int[] voiceChannel = new int[MAX_VOICES];
+    private final boolean[] voiceLoops = new boolean[MAX_VOICES];
+    private final long[] voiceStarted = new long[MAX_VOICES];
+    private long voicesStarted = 0;
+
+    public AudioMixer(int bufferFrames) {
+        this.bufferFrames = Math.max(64, bufferFrames);
+        Arrays.fill(voiceSample, NO_SAMPLE);
+    }
+
+    /**
+     * Opens the output line and starts the mixer thread. Returns false (and
+     * leaves the mixer silent) when no line can be opened.
+     */
+    public synchronized boolean start() {
+        if (thread != null) return true;
+        AudioFormat format = new AudioFormat(SAMPLE_RATE, 16, 2, true, false);
+        try {
+            line = AudioSystem.getSourceDataLine(format);
+            line.open(format, bufferFrames * 4 * 2); // two buffers' worth, so one can play while the next is mixed
+            line.start();
+        } catch (LineUnavailableException | IllegalArgumentException | SecurityException e) {
+            System.out.println("Audio line unavailable: " + e.getMessage());
+            line = null;
+            return false;
+        }
+        running = true;
+        thread = new Thread(this::run, "audio-mixer");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MAX_PRIORITY);
+        thread.start();
+        return true;
+    }
+
+    public synchronized void close() {
+        running = false;
+        if (thread != null) {
+            try {
+                thread.join(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+        if (line != null) {
+            line.close();
+            line = null;
+        }
+    }
+
+    /**
+     * Decodes {@code in} completely into the mixer's format (resampling and
+     * up/down-mixing as needed) and returns its sample id for {@link #play}.
+     * Several threads may load at once; only adding the result is serialised.
+     */
+    public int load(AudioInputStream in) throws IOException {
+        AudioFormat source = in.getFormat();
+        AudioFormat pcm = new AudioFormat(source.getSampleRate(), 16, source.getChannels(), true, false);
+        AudioInputStream decoded = source.matches(pcm) ? in : AudioSystem.getAudioInputStream(pcm, in);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] chunk = new byte[8192];
+        int n;
+        while ((n = decoded.read(chunk)) > 0) {
+            bytes.write(chunk, 0, n);
+        }
+        return add(toStereo(bytes.toByteArray(), source.getChannels(), source.getSampleRate()));
+    }
+
+    private synchronized int add(short[] stereo) throws IOException {
+        if (samples.length == MAX_SAMPLES) throw new IOException("Too many samples");
+        short[][] grown = Arrays.copyOf(samples, samples.length + 1);
+        grown[samples.length] = stereo;
+        samples = grown;
+        return samples.length - 1;
+    }
+
+    /** Plays a loaded sample once at {@code gain} (1 = as recorded). */
+    public void play(int sample, float gain) {
+        if (sample != NO_SAMPLE) commands.offer(pack(OP_PLAY, sample, gain, EFFECTS));
+    }
+
+    /** Plays a loaded sample over and over on {@code channel} (1 and up) until {@link #stop} is called for it. */
+    public void loop(int sample, float gain, int channel) {
+        if (sample != NO_SAMPLE) commands.offer(pack(OP_LOOP, sample, gain, channel));
+    }
+
+    /** Silences every voice on {@code channel}. */
+    public void stop(int channel) {
+        commands.offer(pack(OP_STOP, 0, 0, channel));
+    }
+
+    public int getBufferFrames() {
+        return bufferFrames;
+    }
+
+    /** Expected delay from a trigger to hearing it: one buffer being mixed plus what the line holds. */
+    public double getLatencyMillis() {
+        return line == null ? 0 : (bufferFrames + line.getBufferSize() / 4) * 1000.0 / SAMPLE_RATE;
+    }
+
+    // Command layout: op (4 bits) | sample (11) | gain (16, 4.12 fixed point) | channel (15)
+    private static long pack(int op, int sample, float gain, int channel) {
+        long g = Math.max(0, Math.min(0xFFFF, Math.round(gain * GAIN_UNIT)));
+        return (long) op << 42 | (long) (sample & (MAX_SAMPLES - 1)) << 31 | g << 15 | (channel & MAX_CHANNEL);
+    }
+
+    private void run() {
+        int[] mix = new int[bufferFrames * 2];
+        byte[] out = new byte[bufferFrames * 4];
+        while (running) {
+            long command;
+            while ((command = commands.poll()) != TriggerQueue.EMPTY) {
+                apply(command);
+            }
+            mixInto(mix);
+            for (int i = 0; i < mix.length; i++) {
+                int v = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, mix[i]));
+                out[i * 2] = (byte) v;
+                out[i * 2 + 1] = (byte) (v >> 8);
+            }
+            line.write(out, 0, out.length); // blocks this thread only, until the line has room
+        }
+        line.drain();
+    }
+
+    private void apply(long command) {
+        int op = (int) (command >>> 42);
+        int sample = (int) (command >>> 31) & (MAX_SAMPLES - 1);
+        int gain = (int) (command >>> 15) & 0xFFFF;
+        int channel = (int) command & MAX_CHANNEL;
+        if (op == OP_STOP) {
+            for (int v = 0; v < MAX_VOICES; v++) {
+                if (voiceSample[v] != NO_SAMPLE && voiceChannel[v] == channel) voiceSample[v] = NO_SAMPLE;
+            }
+            return;
+        }
+        int v = freeVoice();
+        voiceSample[v] = sample;
+        voicePosition[v] = 0;
+        voiceGain[v] = gain;
+        voiceChannel[v] = channel;
+        voiceLoops[v] = op == OP_LOOP;
+        voiceStarted[v] = voicesStarted++;
+    }
+
+    /** An idle voice, or else the oldest one-shot (loops are only replaced when nothing else is playing). */
+    private int freeVoice() {
+        int oldest = 0;
+        boolean oldestLoops = true;
+        for (int v = 0; v < MAX_VOICES; v++) {
+            if (voiceSample[v] == NO_SAMPLE) return v;
+            boolean better = oldestLoops && !voiceLoops[v]
+                || oldestLoops == voiceLoops[v] && voiceStarted[v] < voiceStarted[oldest];
+            if (better) {
+                oldest = v;
+                oldestLoops = voiceLoops[v];
+            }
+        }
+        return oldest;
+    }
+
+    private void mixInto(int[] mix) {
+        Arrays.fill(mix, 0);
+        short[][] loaded = samples;
+        for (int v = 0; v < MAX_VOICES; v++) {
+            if (voiceSample[v] == NO_SAMPLE) continue;
+            short[] pcm = loaded[voiceSample[v]];
+            int gain = voiceGain[v];
+            int pos = voicePosition[v];
+            for (int i = 0; i < mix.length; i++) {
+                if (pos == pcm.length) {
+                    if (!voiceLoops[v] || pcm.length == 0) {
+                        voiceSample[v] = NO_SAMPLE;
+                        break;
+                    }
+                    pos = 0;
+                }
+                mix[i] += pcm[pos++] * gain >> 12;
+            }
+            voicePosition[v] = pos;
+        }
+    }
+
+    /** Interleaved 16-bit PCM at {@code rate} with {@code channels} channels to stereo at the mixer rate. */
+    private static short[] toStereo(byte[] pcm, int channels, float rate) {
+        int frames = pcm.length / (2 * channels);
+        int outFrames = (int) ((long) frames * (long) SAMPLE_RATE / (long) rate);
+        short[] out = new short[outFrames * 2];
+        double step = rate / SAMPLE_RATE;
+        for (int f = 0; f < outFrames; f++) {
+            // Linear interpolation between the two nearest source frames
+            double src = f * step;
+            int i = (int) src;
+            int j = Math.min(i + 1, frames - 1);
+            double t = src - i;
+            for (int c = 0; c < 2; c++) {
+                int sc = Math.min(c, channels - 1); // mono plays on both sides; channels past two are dropped
+                int a = sampleAt(pcm, i * channels + sc);
+                int b = sampleAt(pcm, j * channels + sc);
+                out[f * 2 + c] = (short) Math.round(a + (b - a) * t);
+            }
+        }
+        return out;
+    }
+
+    private static int sampleAt(byte[] pcm, int index) {
+        return (short) ((pcm[index * 2] & 0xFF) | pcm[index * 2 + 1] << 8);
+    }
+
+    /**
+     * Bounded multi-producer, single-consumer queue of packed commands
+     * (Vyukov's array queue): producers claim a slot with one CAS and never
+     * block; when the queue is full the command is dropped, which for sound
+     * triggers is better than stalling the game.
+     */
+    static final class TriggerQueue {
+        static final long EMPTY = -1;
+
+        private final int mask;
+        private final AtomicLongArray sequence;
+        private final AtomicLongArray values;
+        private final AtomicLong tail = new AtomicLong();
+        private long head = 0; // consumer only
+
+        TriggerQueue(int capacity) {
+            int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+            mask = size - 1;
+            sequence = new AtomicLongArray(size);
+            values = new AtomicLongArray(size);
+            for (int i = 0; i < size; i++) {
+                sequence.set(i, i);
+            }
+        }
+
+        boolean offer(long value) {
+            while (true) {
+                long pos = tail.get();
+                int slot = (int) pos & mask;
+                long seq = sequence.get(slot);
+                if (seq == pos) {
+                    if (tail.compareAndSet(pos, pos + 1)) {
+                        values.lazySet(slot, value);
+                        sequence.set(slot, pos + 1); // publishes the value
+                        return true;
+                    }
+                } else if (seq < pos) {
+                    return false; // full
+                }
+                // else another producer took this slot; retry with the new tail
+            }
+        }
+
+        long poll() {
+            int slot = (int) head & mask;
+            if (sequence.get(slot) != head + 1) return EMPTY;
+            long value = values.get(slot);
+            sequence.lazySet(slot, head + mask + 1);
+            head++;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,323 @@
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Monte Carlo level balancing: plays a large batch of seeded games per level
+ * with a {@link Bot} on the headless engine, across all cores, and reports
+ * win rate, how games ended (time up, self, bomb, AI snake, stalled), the
+ * score distribution and how many ticks it took to reach the win score.
+ *
+ * {@code -sweep name=v1,v2,...} (repeatable) runs every combination of the
+ * given {@link LevelRules} values. Game {@code i} of a level gets the same
+ * seed under every combination, so differences between rows come from the
+ * rules and not from luck of the draw.
+ *
+ * Usage: java -cp bin BalanceRunner [-level n] [-games n] [-bot random|path|class]
+ *        [-seed n] [-threads n] [-board COLSxROWS] [-max-ticks n]
+ *        [-sweep name=v1,v2,...]... [-csv file]
+ */
+public class BalanceRunner {
+    // Games a worker claims at a time; large enough that the shared counter is never contended
+    private static final int CHUNK = 1000;
+
+    // Histogram bucket widths: scores are multiples of 10, ticks are bucketed to keep the arrays small
+    private static final int SCORE_BUCKET = 10;
+    private static final int SCORE_BUCKETS = 1000;
+    private static final int TICK_BUCKET = 10;
+    private static final int TICK_BUCKETS = 10000;
+
+    private static final String[] OUTCOMES = {"win", "time up", "self", "bomb", "AI snake", "stalled"};
+    private static final int WIN = 0, TIME_UP = 1, SELF = 2, BOMB = 3, AI_SNAKE = 4, STALLED = 5;
+
+    /** Results for one level under one set of rules; each worker fills its own, then they are merged. */
+    static final class Stats {
+        long games = 0;
+        final long[] outcomes = new long[OUTCOMES.length];
+        long scoreSum = 0;
+        final long[] scores = new long[SCORE_BUCKETS + 1];
+        long reachedWin = 0;
+        long ticksToWinSum = 0;
+        final long[] ticksToWin = new long[TICK_BUCKETS + 1];
+        long ticks = 0;
+
+        void add(GameState s, long winTick) {
+            games++;
+            ticks += s.tick;
+            outcomes[outcome(s)]++;
+            scoreSum += s.score;
+            scores[Math.min(Math.max(s.score, 0) / SCORE_BUCKET, SCORE_BUCKETS)]++;
+            if (winTick >= 0) {
+                reachedWin++;
+                ticksToWinSum += winTick;
+                ticksToWin[(int) Math.min(winTick / TICK_BUCKET, TICK_BUCKETS)]++;
+            }
+        }
+
+        void merge(Stats other) {
+            games += other.games;
+            ticks += other.ticks;
+            scoreSum += other.scoreSum;
+            reachedWin += other.reachedWin;
+            ticksToWinSum += other.ticksToWinSum;
+            for (int i = 0; i < outcomes.length; i++) outcomes[i] += other.outcomes[i];
+            for (int i = 0; i < scores.length; i++) scores[i] += other.scores[i];
+            for (int i = 0; i < ticksToWin.length; i++) ticksToWin[i] += other.ticksToWin[i];
+        }
+
+        private static int outcome(GameState s) {
+            switch (s.status) {
+                case LEVEL_COMPLETE: return WIN;
+                case LEVEL_FAILED: return TIME_UP;
+                case GAME_OVER:
+                    switch (s.cause) {
+                        case BOMB: return BOMB;
+                        case AI_SNAKE: return AI_SNAKE;
+                        default: return SELF;
+                    }
+                default: return STALLED;
+            }
+        }
+
+        double percent(int outcome) {
+            return games == 0 ? 0 : 100.0 * outcomes[outcome] / games;
+        }
+
+        /** Lower edge of the bucket holding the {@code p}-th percentile (0..1) of a histogram. */
+        static long percentile(long[] histogram, long total, double p, int bucketWidth) {
+            if (total == 0) return -1;
+            long rank = (long) Math.ceil(p * total);
+            long seen = 0;
+            for (int i = 0; i < histogram.length; i++) {
+                seen += histogram[i];
+                if (seen >= Math.max(rank, 1)) return (long) i * bucketWidth;
+            }
+            return (long) (histogram.length - 1) * bucketWidth;
+        }
+    }
+
+    private final String botName;
+    private final int cols;
+    private final int rows;
+    private final long baseSeed;
+    private final int threads;
+    private final long maxTicks;
+
+    BalanceRunner(String botName, int cols, int rows, long baseSeed, int threads, long maxTicks) {
+        this.botName = botName;
+        this.cols = cols;
+        this.rows = rows;
+        this.baseSeed = baseSeed;
+        this.threads = threads;
+        this.maxTicks = maxTicks;
+    }
+
+    /** Plays {@code games} games of {@code level} under {@code rules} on all worker threads. */
+    Stats run(LevelRules rules, int level, long games) throws InterruptedException {
+        AtomicLong next = new AtomicLong();
+        Stats[] results = new Stats[threads];
+        Thread[] workers = new Thread[threads];
+        RuntimeException[] failure = new RuntimeException[1];
+        for (int t = 0; t < threads; t++) {
+            Stats stats = results[t] = new Stats();
+            workers[t] = new Thread(() -> {
+                try {
+                    play(rules, level, games, next, stats);
+                } catch (RuntimeException e) {
+                    synchronized (failure) {
+                        failure[0] = e;
+                    }
+                }
+            }, "balance-" + t);
+            workers[t].start();
+        }
+        Stats total = new Stats();
+        for (int t = 0; t < threads; t++) {
+            workers[t].join();
+            total.merge(results[t]);
+        }
+        if (failure[0] != null) throw failure[0];
+        return total;
+    }
+
+    /** One worker: claims chunks of game indices and plays them on its own engine and bot. */
+    private void play(LevelRules rules, int level, long games, AtomicLong next, Stats stats) {
+        GameEngine engine = new GameEngine(cols, rows, 0, rules);
+        GameState s = engine.getState();
+        Bot bot = Bot.create(botName);
+        int winScore = rules.getWinScore();
+        long start;
+        while ((start = next.getAndAdd(CHUNK)) < games) {
+            long end = Math.min(start + CHUNK, games);
+            for (long game = start; game < end; game++) {
+                long seed = gameSeed(level, game);
+                engine.reset(level, seed);
+                bot.reset(s, seed);
+                long winTick = -1;
+                while (s.isRunning() && s.tick < maxTicks) {
+                    engine.step(bot.nextInput(s));
+                    if (winTick < 0 && s.score >= winScore) {
+                        winTick = s.tick;
+                    }
+                }
+                stats.add(s, winTick);
+            }
+        }
+    }
+
+    /** SplitMix64 of the base seed, level and game index, so every game gets an independent stream. */
+    private long gameSeed(int level, long game) {
+        long z = baseSeed + (level * 0x9E3779B97F4A7C15L) + game * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /** Every combination of the sweep values applied to the shipped rules, first sweep varying slowest. */
+    static List<LevelRules> expand(List<String> names, List<String[]> values) {
+        List<LevelRules> configs = new ArrayList<>();
+        configs.add(new LevelRules());
+        for (int i = 0; i < names.size(); i++) {
+            List<LevelRules> expanded = new ArrayList<>();
+            for (LevelRules base : configs) {
+                for (String value : values.get(i)) {
+                    expanded.add(base.copy().set(names.get(i), value));
+                }
+            }
+            configs = expanded;
+        }
+        return configs;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int firstLevel = 1;
+        int lastLevel = 5;
+        long games = 100_000;
+        String bot = "path";
+        long seed = 1;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int cols = 24;
+        int rows = 24;
+        long maxTicks = 100_000;
+        String csv = null;
+        List<String> sweepNames = new ArrayList<>();
+        List<String[]> sweepValues = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-level": firstLevel = lastLevel = Integer.parseInt(args[++i]); break;
+                    case "-games": games = Long.parseLong(args[++i]); break;
+                    case "-bot": bot = args[++i]; break;
+                    case "-seed": seed = Long.parseLong(args[++i]); break;
+                    case "-threads": threads = Math.max(1, Integer.parseInt(args[++i])); break;
+                    case "-max-ticks": maxTicks = Long.parseLong(args[++i]); break;
+                    case "-csv": csv = args[++i]; break;
+                    case "-board": {
+                        String[] size = args[++i].toLowerCase(Locale.ROOT).split("x");
+                        cols = Integer.parseInt(size[0]);
+                        rows = Integer.parseInt(size[size.length - 1]);
+                        break;
+                    }
+                    case "-sweep": {
+                        String spec = args[++i];
+                        int eq = spec.indexOf('=');
+                        if (eq <= 0) throw new IllegalArgumentException("Expected name=v1,v2,... after -sweep, got " + spec);
+                        String name = spec.substring(0, eq);
+                        String[] values = spec.substring(eq + 1).split(",");
+                        for (String value : values) new LevelRules().set(name, value); // validate up front
+                        sweepNames.add(name);
+                        sweepValues.add(values);
+                        break;
+                    }
+                    default: throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+            Bot.create(bot);
+        } catch (RuntimeException e) {
+            System.out.println(e.getMessage());
+            System.out.println("Usage: java BalanceRunner [-level n] [-games n] [-bot random|path|class] [-seed n]"
+                + " [-threads n] [-board COLSxROWS] [-max-ticks n] [-sweep name=v1,v2,...]... [-csv file]");
+            System.out.println("Sweepable rules: " + String.join(", ", LevelRules.NAMES));
+            System.exit(2);
+            return;
+        }
+
+        List<LevelRules> configs = expand(sweepNames, sweepValues);
+        BalanceRunner runner = new BalanceRunner(bot, cols, rows, seed, threads, maxTicks);
+        System.out.println(String.format(Locale.ROOT, "%d games per level, bot %s, %dx%d board, seed %d, %d threads",
+            games, bot, cols, rows, seed, threads));
+
+        PrintWriter out = csv != null ? new PrintWriter(new File(csv), "UTF-8") : null;
+        try {
+            if (out != null) {
+                StringBuilder header = new StringBuilder();
+                for (String name : sweepNames) header.append(name).append(',');
+                header.append("level,games,win_pct,time_up_pct,self_pct,bomb_pct,ai_snake_pct,stalled_pct,"
+                    + "score_mean,score_p10,score_p50,score_p90,reached_win,ticks_to_win_mean,ticks_to_win_p50,ticks_to_win_p90");
+                out.println(header);
+            }
+            for (LevelRules rules : configs) {
+                if (!sweepNames.isEmpty()) {
+                    StringBuilder label = new StringBuilder();
+                    for (String name : sweepNames) label.append(' ').append(name).append('=').append(rules.get(name));
+                    System.out.println();
+                    System.out.println("Rules:" + label);
+                }
+                for (int level = firstLevel; level <= lastLevel; level++) {
+                    long start = System.nanoTime();
+                    Stats stats = runner.run(rules, level, games);
+                    double seconds = (System.nanoTime() - start) / 1e9;
+                    report(level, stats, rules.getWinScore(), seconds);
+                    if (out != null) {
+                        out.println(csvRow(sweepNames, rules, level, stats));
+                    }
+                }
+            }
+        } finally {
+            if (out != null) out.close();
+        }
+    }
+
+    private static void report(int level, Stats s, int winScore, double seconds) {
+        StringBuilder ends = new StringBuilder();
+        for (int i = 1; i < OUTCOMES.length; i++) {
+            if (s.outcomes[i] == 0) continue;
+            ends.append(String.format(Locale.ROOT, ", %s %.1f%%", OUTCOMES[i], s.percent(i)));
+        }
+        System.out.println(String.format(Locale.ROOT,
+            "Level %d: win %.2f%%%s | score mean %.1f, p10/p50/p90 %d/%d/%d | ticks to %d: %s | %.0f games/s, %.0f ticks/s",
+            level, s.percent(WIN), ends, mean(s.scoreSum, s.games),
+            Stats.percentile(s.scores, s.games, 0.1, SCORE_BUCKET),
+            Stats.percentile(s.scores, s.games, 0.5, SCORE_BUCKET),
+            Stats.percentile(s.scores, s.games, 0.9, SCORE_BUCKET),
+            winScore, s.reachedWin == 0 ? "never reached" : String.format(Locale.ROOT, "mean %.0f, p50/p90 %d/%d",
+                mean(s.ticksToWinSum, s.reachedWin),
+                Stats.percentile(s.ticksToWin, s.reachedWin, 0.5, TICK_BUCKET),
+                Stats.percentile(s.ticksToWin, s.reachedWin, 0.9, TICK_BUCKET)),
+            s.games / seconds, s.ticks / seconds));
+    }
+
+    private static String csvRow(List<String> sweepNames, LevelRules rules, int level, Stats s) {
+        StringBuilder row = new StringBuilder();
+        for (String name : sweepNames) row.append(rules.get(name)).append(',');
+        row.append(level).append(',').append(s.games);
+        for (int i = 0; i < OUTCOMES.length; i++) {
+            row.append(String.format(Locale.ROOT, ",%.4f", s.percent(i)));
+        }
+        row.append(String.format(Locale.ROOT, ",%.2f,%d,%d,%d,%d,%.2f,%d,%d", mean(s.scoreSum, s.games),
+            Stats.percentile(s.scores, s.games, 0.1, SCORE_BUCKET),
+            Stats.percentile(s.scores, s.games, 0.5, SCORE_BUCKET),
+            Stats.percentile(s.scores, s.games, 0.9, SCORE_BUCKET),
+            s.reachedWin, mean(s.ticksToWinSum, s.reachedWin),
+            Stats.percentile(s.ticksToWin, s.reachedWin, 0.5, TICK_BUCKET),
+            Stats.percentile(s.ticksToWin, s.reachedWin, 0.9, TICK_BUCKET)));
+        return row.toString();
+    }
+
+    private static double mean(long sum, long count) {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+}
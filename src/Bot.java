@@ -0,0 +1,107 @@
+import java.util.Random;
+
+/**
+ * Something that steers the player snake headless, for the balance runner.
+ * One instance plays many games in a row on one thread: {@link #reset} is
+ * called after every engine reset, then {@link #nextInput} before every step.
+ * A bot must draw any randomness from the seed it is given, so a batch of
+ * games is repeatable.
+ *
+ * Besides the built-in "random" and "path" bots, any class on the class path
+ * implementing this interface with a public no-argument constructor can be
+ * named instead.
+ */
+public interface Bot {
+    /** Called once the engine has been reset for a new game. */
+    void reset(GameState state, long seed);
+
+    /** Direction to pass to {@link GameEngine#step(char)} for the coming tick, or 0 to go straight. */
+    char nextInput(GameState state);
+
+    static Bot create(String name) {
+        switch (name) {
+            case "random": return new RandomBot();
+            case "path": return new PathBot();
+            default:
+                try {
+                    return (Bot) Class.forName(name).getDeclaredConstructor().newInstance();
+                } catch (ReflectiveOperationException | ClassCastException e) {
+                    throw new IllegalArgumentException("Unknown bot '" + name + "': " + e, e);
+                }
+        }
+    }
+
+    /**
+     * Wanders: keeps going straight, and on roughly one tick in eight (or
+     * whenever straight ahead is occupied) turns to a random free neighbour.
+     * Only looks one cell ahead, so it is a floor for what a careless player
+     * would do, not a challenge.
+     */
+    final class RandomBot implements Bot {
+        private static final char[] DIRECTIONS = {'U', 'D', 'L', 'R'};
+
+        private final Random random = new Random();
+        private final char[] free = new char[3];
+
+        @Override
+        public void reset(GameState state, long seed) {
+            random.setSeed(seed);
+        }
+
+        @Override
+        public char nextInput(GameState s) {
+            int head = s.snake.head();
+            boolean straightFree = !isBlocked(s, step(s, head, s.direction));
+            if (straightFree && random.nextInt(8) != 0) {
+                return 0;
+            }
+            int count = 0;
+            char reverse = GameEngine.getOppositeDirection(s.direction);
+            for (char dir : DIRECTIONS) {
+                if (dir != reverse && !isBlocked(s, step(s, head, dir))) {
+                    free[count++] = dir;
+                }
+            }
+            return count == 0 ? 0 : free[random.nextInt(count)];
+        }
+
+        private static boolean isBlocked(GameState s, int cell) {
+            return s.snake.contains(cell) || s.aiSnake.contains(cell) || (s.bombVisible && cell == s.bomb);
+        }
+
+        private static int step(GameState s, int cell, char dir) {
+            int x = s.cellX(cell);
+            int y = s.cellY(cell);
+            switch (dir) {
+                case 'U': y = y == 0 ? s.rows - 1 : y - 1; break;
+                case 'D': y = y == s.rows - 1 ? 0 : y + 1; break;
+                case 'L': x = x == 0 ? s.cols - 1 : x - 1; break;
+                case 'R': x = x == s.cols - 1 ? 0 : x + 1; break;
+            }
+            return s.cell(x, y);
+        }
+    }
+
+    /**
+     * Plays like the level-5 AI: follows an {@link AIPathfinder} distance
+     * field to the food (the centre while there is none), avoiding the bomb
+     * and pockets too small for itself. Deterministic, so the seed is unused.
+     */
+    final class PathBot implements Bot {
+        private AIPathfinder path;
+
+        @Override
+        public void reset(GameState s, long seed) {
+            if (path == null || path.cols != s.cols || path.rows != s.rows) {
+                path = new AIPathfinder(s.cols, s.rows);
+            }
+            path.invalidate();
+        }
+
+        @Override
+        public char nextInput(GameState s) {
+            int target = s.food != GameState.NO_CELL ? s.food : s.cell(s.cols / 2, s.rows / 2);
+            return path.chooseDirection(s, s.snake, s.direction, target);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/**
+ * Cells whose appearance changed since the view last drew, collected by
+ * {@link GameEngine} as it moves snakes and spawns or hides items. The view
+ * repaints just those cells and then calls {@link #clear()}.
+ *
+ * Once more than {@link #MAX_CELLS} cells are pending (or after a reset) the
+ * set collapses into "everything", which also bounds its size when nobody
+ * consumes it, as in headless runs.
+ */
+public class DirtyCells {
+    public static final int MAX_CELLS = 256;
+
+    private final int[] cells = new int[MAX_CELLS];
+    private int count = 0;
+    private boolean all = true;
+
+    public void add(int cell) {
+        if (all || cell == GameState.NO_CELL) return;
+        if (count == MAX_CELLS) {
+            markAll();
+            return;
+        }
+        cells[count++] = cell;
+    }
+
+    public void markAll() {
+        all = true;
+        count = 0;
+    }
+
+    public void clear() {
+        all = false;
+        count = 0;
+    }
+
+    /** True when the whole board has to be redrawn. */
+    public boolean isAll() {
+        return all;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int get(int i) {
+        return cells[i];
+    }
+}
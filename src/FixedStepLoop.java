@@ -0,0 +1,189 @@
+/**
+ * Game loop on its own thread that runs the simulation at a fixed timestep
+ * and renders as often as the display refreshes. Leftover time in the tick
+ * accumulator is handed to the renderer as an interpolation factor in [0, 1).
+ *
+ * Frame pacing, dropped frames and tick drift are measured as the loop runs
+ * and can be read at any time; {@link #summary()} formats them for logging.
+ */
+public class FixedStepLoop implements Runnable {
+    /** Callbacks invoked on the loop thread. */
+    public interface Handler {
+        /** Runs one simulation tick; returning false stops the loop. */
+        boolean tick();
+
+        /** Draws one frame, {@code alpha} of the way from the previous tick to the current one. */
+        void render(double alpha);
+    }
+
+    // Never run more than this many ticks to catch up in a single frame
+    private static final int MAX_TICKS_PER_FRAME = 5;
+
+    private final Handler handler;
+    private final long tickNanos;
+    private final long frameNanos;
+    private Thread thread;
+    private volatile boolean running;
+    private PerfMetrics metrics; // optional; gets tick lateness, render time and frames
+
+    // Stats, written by the loop thread only
+    private volatile long frames;
+    private volatile long ticks;
+    private volatile long droppedFrames;
+    private volatile long skippedTicks;
+    private volatile long frameNanosTotal;
+    private volatile long maxFrameNanos;
+    private volatile long maxTickLateNanos;
+    private volatile long startNanos;
+    private volatile long endNanos;
+
+    public FixedStepLoop(Handler handler, long tickMillis, int refreshRate) {
+        this.handler = handler;
+        this.tickNanos = tickMillis * 1_000_000L;
+        this.frameNanos = 1_000_000_000L / (refreshRate > 0 ? refreshRate : 60);
+    }
+
+    /** Reports per-tick lateness and per-frame render time to {@code metrics}; call before {@link #start()}. */
+    public void setMetrics(PerfMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public synchronized void start() {
+        if (thread != null) return;
+        running = true;
+        thread = new Thread(this, "snake-game-loop");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Stops the loop and waits for the current frame to finish (unless called from the loop itself). */
+    public synchronized void stop() {
+        running = false;
+        Thread t = thread;
+        thread = null;
+        if (t != null && t != Thread.currentThread()) {
+            try {
+                t.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        startNanos = System.nanoTime();
+        endNanos = 0;
+        long lastFrame = startNanos;
+        long nextTickAt = startNanos + tickNanos;
+        long accumulator = 0;
+
+        while (running) {
+            long now = System.nanoTime();
+            long frameTime = now - lastFrame;
+            lastFrame = now;
+            accumulator += frameTime;
+
+            if (frames > 0) {
+                frameNanosTotal += frameTime;
+                if (frameTime > maxFrameNanos) maxFrameNanos = frameTime;
+                if (frameTime > frameNanos + frameNanos / 2) droppedFrames++;
+            }
+
+            int steps = 0;
+            while (accumulator >= tickNanos && running) {
+                if (steps == MAX_TICKS_PER_FRAME) {
+                    // Too far behind (debugger, long GC): give up the backlog instead of spiralling
+                    long behind = accumulator / tickNanos;
+                    skippedTicks += behind;
+                    nextTickAt += behind * tickNanos;
+                    accumulator -= behind * tickNanos;
+                    break;
+                }
+                long late = System.nanoTime() - nextTickAt;
+                if (late > maxTickLateNanos) maxTickLateNanos = late;
+                if (metrics != null) metrics.tickLate(late);
+                nextTickAt += tickNanos;
+                accumulator -= tickNanos;
+                steps++;
+                ticks++;
+                if (!handler.tick()) {
+                    running = false;
+                }
+            }
+            if (!running) break;
+
+            long renderStart = System.nanoTime();
+            handler.render((double) accumulator / tickNanos);
+            frames++;
+            if (metrics != null) {
+                metrics.paintDone(renderStart);
+                metrics.frameShown();
+            }
+
+            // Sleep off what is left of this frame's slot
+            long sleep = frameNanos - (System.nanoTime() - now);
+            if (sleep > 0) {
+                try {
+                    Thread.sleep(sleep / 1_000_000L, (int) (sleep % 1_000_000L));
+                } catch (InterruptedException e) {
+                    running = false;
+                }
+            }
+        }
+        endNanos = System.nanoTime();
+    }
+
+    private long elapsedNanos() {
+        long end = endNanos;
+        return (end != 0 ? end : System.nanoTime()) - startNanos;
+    }
+
+    public long getFrames() {
+        return frames;
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    public long getSkippedTicks() {
+        return skippedTicks;
+    }
+
+    public double getFps() {
+        long elapsed = elapsedNanos();
+        return elapsed > 0 ? frames * 1e9 / elapsed : 0;
+    }
+
+    public double getAverageFrameMillis() {
+        long counted = frames - 1;
+        return counted > 0 ? frameNanosTotal / 1e6 / counted : 0;
+    }
+
+    public double getMaxFrameMillis() {
+        return maxFrameNanos / 1e6;
+    }
+
+    /** Worst delay between when a tick was due and when it actually ran. */
+    public double getMaxTickLateMillis() {
+        return maxTickLateNanos / 1e6;
+    }
+
+    /** How far simulated time trails wall-clock time since the loop started (positive = behind). */
+    public double getTickDriftMillis() {
+        long elapsed = elapsedNanos();
+        return (elapsed - ticks * tickNanos) / 1e6;
+    }
+
+    public String summary() {
+        return String.format(java.util.Locale.ROOT,
+            "frames=%d fps=%.1f avgFrame=%.2fms maxFrame=%.2fms dropped=%d ticks=%d skippedTicks=%d maxTickLate=%.2fms drift=%.1fms",
+            frames, getFps(), getAverageFrameMillis(), getMaxFrameMillis(), droppedFrames,
+            ticks, skippedTicks, getMaxTickLateMillis(), getTickDriftMillis());
+    }
+}
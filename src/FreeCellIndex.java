@@ -0,0 +1,97 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Set of board cells not covered by any entity (either snake, food, bomb),
+ * kept as a bitmap of free cells plus a free count per block of 4096
+ * cells. Occupying or releasing a cell flips one bit and one count, and
+ * picking a uniformly random free cell is a single {@code nextInt}
+ * followed by a count down to that free cell in id order: past whole
+ * blocks, then words by popcount, then bits.
+ *
+ * Which cell a given {@code nextInt} picks depends only on the set of free
+ * cells, never on the order they were taken and given back in, so a game
+ * restored from a {@link GameSnapshot} spawns exactly where the original
+ * would have.
+ *
+ * Cells are reference-counted because entities can briefly share one (a
+ * head entering the other snake, or the food cell a head just ate), and a
+ * cell only becomes free again when its last occupant leaves.
+ */
+public class FreeCellIndex {
+    private static final int BLOCK_SHIFT = 12;
+
+    private final byte[] occupants;
+    private final long[] freeBits; // bit (cell % 64) of word (cell / 64) is set while the cell is free
+    private final int[] blockFree; // free cells in each block of 1 << BLOCK_SHIFT
+    private int freeCount;
+
+    public FreeCellIndex(int cellCount) {
+        occupants = new byte[cellCount];
+        freeBits = new long[(cellCount + 63) >>> 6];
+        blockFree = new int[(cellCount + (1 << BLOCK_SHIFT) - 1) >>> BLOCK_SHIFT];
+        reset();
+    }
+
+    /** Marks every cell free again. */
+    public void reset() {
+        int cells = occupants.length;
+        Arrays.fill(occupants, (byte) 0);
+        Arrays.fill(freeBits, -1L);
+        if ((cells & 63) != 0) {
+            freeBits[freeBits.length - 1] = (1L << cells) - 1; // no bits past the last cell
+        }
+        for (int b = 0; b < blockFree.length; b++) {
+            blockFree[b] = Math.min(1 << BLOCK_SHIFT, cells - (b << BLOCK_SHIFT));
+        }
+        freeCount = cells;
+    }
+
+    public int freeCount() {
+        return freeCount;
+    }
+
+    public boolean isFree(int cell) {
+        return occupants[cell] == 0;
+    }
+
+    public void occupy(int cell) {
+        if (occupants[cell]++ == 0) {
+            freeBits[cell >>> 6] &= ~(1L << cell);
+            blockFree[cell >>> BLOCK_SHIFT]--;
+            freeCount--;
+        }
+    }
+
+    public void release(int cell) {
+        if (--occupants[cell] == 0) {
+            freeBits[cell >>> 6] |= 1L << cell;
+            blockFree[cell >>> BLOCK_SHIFT]++;
+            freeCount++;
+        }
+    }
+
+    /** A uniformly chosen free cell, or {@link GameState#NO_CELL} when the board is full. */
+    public int randomFree(Random random) {
+        return freeCount == 0 ? GameState.NO_CELL : nthFree(random.nextInt(freeCount));
+    }
+
+    /** The free cell with {@code n} free cells before it in id order. */
+    int nthFree(int n) {
+        int block = 0;
+        while (n >= blockFree[block]) {
+            n -= blockFree[block++];
+        }
+        int word = block << (BLOCK_SHIFT - 6);
+        int count;
+        while (n >= (count = Long.bitCount(freeBits[word]))) {
+            n -= count;
+            word++;
+        }
+        long bits = freeBits[word];
+        for (; n > 0; n--) {
+            bits &= bits - 1; // drop the lowest free cell
+        }
+        return word << 6 | Long.numberOfTrailingZeros(bits);
+    }
+}
@@ -0,0 +1,559 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Headless rules for all five levels. Nothing here touches Swing or the
+ * wall clock: every call to {@link #step(char)} advances the game by exactly
+ * one tick of {@link #getGameDelay(int)} simulated milliseconds, and all timed
+ * events (vanishing apple, bomb cycle, multiplier, AI cadence, level 1 time
+ * limit) are scheduled on the state's {@link TimingWheel} in whole ticks.
+ *
+ * The constants below are the shipped rules; an engine built with a
+ * {@link LevelRules} plays by those values instead.
+ */
+public class GameEngine {
+    public static final int WIN_SCORE = 300;
+    public static final long LEVEL1_TIME_LIMIT = 180000; // 3 minutes in milliseconds
+    public static final long APPLE_VISIBLE_MS = 4000;
+    public static final long BOMB_VISIBLE_MS = 4000;
+    public static final long RESPAWN_DELAY_MS = 1000;
+    public static final long MULTIPLIER_DURATION_MS = 10000;
+    public static final long AI_MOVE_DELAY_MS = 150;
+    public static final double MULTIPLIER_CHANCE = 0.2;
+
+    // Event flags reported through GameState.events after each step
+    public static final int EVENT_ATE_APPLE = 1;
+    public static final int EVENT_ATE_MULTIPLIER = 1 << 1;
+    public static final int EVENT_MULTIPLIER_ENDED = 1 << 2;
+    public static final int EVENT_AI_ATE = 1 << 3;
+    public static final int EVENT_AI_KILLED = 1 << 4;
+    public static final int EVENT_FOOD_SPAWNED = 1 << 5;
+    public static final int EVENT_BOMB_SPAWNED = 1 << 6;
+    public static final int EVENT_BOARD_FULL = 1 << 7;
+
+    // Timer ids on GameState.timers; timers due on the same tick fire in this order
+    static final int TIMER_MULTIPLIER_END = 0;
+    static final int TIMER_APPLE_HIDE = 1;
+    static final int TIMER_APPLE_RESPAWN = 2;
+    static final int TIMER_BOMB_HIDE = 3;
+    static final int TIMER_BOMB_RESPAWN = 4;
+    static final int TIMER_AI_MOVE = 5;
+    static final int TIMER_LEVEL_TIME_UP = 6;
+    static final int TIMER_COUNT = 7;
+
+    private final GameState state;
+    private final GameRandom random;
+    private final LevelRules rules;
+    private AIPathfinder aiPath; // created on the first level-5 reset
+    private final TimingWheel.Handler timerHandler = this::onTimer;
+
+    public GameEngine(int cols, int rows) {
+        this(cols, rows, new GameRandom(), new LevelRules());
+    }
+
+    public GameEngine(int cols, int rows, long seed) {
+        this(cols, rows, new GameRandom(seed), new LevelRules());
+    }
+
+    /** Engine playing by {@code rules} instead of the shipped values; the rules are read, never changed. */
+    public GameEngine(int cols, int rows, long seed, LevelRules rules) {
+        this(cols, rows, new GameRandom(seed), rules);
+    }
+
+    private GameEngine(int cols, int rows, GameRandom random, LevelRules rules) {
+        this.state = new GameState(cols, rows);
+        this.random = random;
+        this.rules = rules;
+    }
+
+    public GameState getState() {
+        return state;
+    }
+
+    public LevelRules getRules() {
+        return rules;
+    }
+
+    public static int getGameDelay(int level) {
+        switch (level) {
+            case 1:
+                return 100; // Normal speed
+            case 2:
+                return 80; // Slightly faster
+            case 3:
+                return 70; // Faster
+            case 4:
+                return 60; // Fast + bomb challenge
+            case 5:
+                return 70; // Same pace as level 3 + AI + bomb challenge
+            default:
+                return 100;
+        }
+    }
+
+    public static long getLevelTimeLimit(int level) {
+        return level == 1 ? LEVEL1_TIME_LIMIT : 0; // Only level 1 is timed
+    }
+
+    /** Number of ticks on {@code level} needed to cover {@code ms}, rounded up. */
+    public static long msToTicks(long ms, int level) {
+        long delay = getGameDelay(level);
+        return (ms + delay - 1) / delay;
+    }
+
+    /**
+     * Reseeds the engine and resets to {@code level}; the same seed and the
+     * same inputs on each tick always produce the same game.
+     */
+    public void reset(int level, long seed) {
+        random.setSeed(seed);
+        reset(level);
+    }
+
+    /** Puts the state back to the opening position of {@code level}. */
+    public void reset(int level) {
+        GameState s = state;
+        int cx = s.cols / 2;
+        int cy = s.rows / 2;
+
+        s.level = level;
+        s.status = GameState.Status.RUNNING;
+        s.tick = 0;
+        s.elapsedMs = 0;
+        s.tickMs = rules.getGameDelay(level);
+        s.levelTimeLimit = rules.getLevelTimeLimit(level);
+        s.timeUp = false;
+        s.cause = GameState.Cause.NONE;
+        s.events = 0;
+        s.timers.clear();
+        if (s.levelTimeLimit > 0) {
+            s.timers.schedule(TIMER_LEVEL_TIME_UP, rules.msToTicks(s.levelTimeLimit, level));
+        }
+
+        s.freeCells.reset();
+        s.dirty.markAll();
+        s.snake.clear();
+        for (int i = 0; i < 4; i++) {
+            s.snake.addTail(s.cell(cx - i, cy));
+            s.freeCells.occupy(s.cell(cx - i, cy));
+            s.trail[s.cell(cx - i, cy)] = 'L';
+        }
+        s.direction = 'R';
+        s.score = 0;
+        s.aiScore = 0;
+        s.scoreMultiplierActive = false;
+
+        // AI snake for level 5
+        s.aiSnake.clear();
+        s.aiSnakeActive = false;
+        s.aiMoveAtMs = 0;
+        if (level == 5) {
+            for (int i = 4; i >= 1; i--) {
+                s.aiSnake.addTail(s.cell(s.cols - i, s.rows - 4));
+                s.freeCells.occupy(s.cell(s.cols - i, s.rows - 4));
+            }
+            s.aiDirection = 'L';
+            s.aiSnakeActive = true;
+            aiPath().invalidate();
+            scheduleAIMove();
+        }
+
+        s.food = GameState.NO_CELL;
+        s.appleVisible = true;
+        spawnFood();
+
+        // Bomb for level 4 and 5. Here the apple and the bomb each vanish once,
+        // 4s into the level, and come back elsewhere 1s later to stay put
+        s.bomb = GameState.NO_CELL;
+        s.bombVisible = false;
+        if (level == 4 || level == 5) {
+            if (s.appleVisible) s.timers.schedule(TIMER_APPLE_HIDE, rules.msToTicks(rules.appleVisibleMs, level));
+            spawnBomb();
+            if (s.bombVisible) s.timers.schedule(TIMER_BOMB_HIDE, rules.msToTicks(rules.bombVisibleMs, level));
+        }
+        GameEvents.levelTransition(s);
+    }
+
+    /**
+     * Writes a {@link GameSnapshot} of the game at {@code out}'s position
+     * and returns its length.
+     */
+    public int snapshot(ByteBuffer out) {
+        return GameSnapshot.encode(this, out);
+    }
+
+    /**
+     * Replaces the game with the {@link GameSnapshot} at {@code in}'s
+     * position. The snapshot carries the random stream and the AI's path
+     * state as well as the board, so play goes on exactly as it would have
+     * from where the snapshot was taken.
+     */
+    public void restore(ByteBuffer in) {
+        GameSnapshot.decode(in, this);
+    }
+
+    // For GameSnapshot, which saves and restores these along with the state
+    GameRandom random() {
+        return random;
+    }
+
+    AIPathfinder aiPath() {
+        if (aiPath == null) {
+            aiPath = new AIPathfinder(state.cols, state.rows);
+        }
+        return aiPath;
+    }
+
+    /**
+     * Advances the game by one tick. {@code input} is the direction the
+     * player asked for ('U', 'D', 'L', 'R'), or 0 to keep going straight;
+     * a request to reverse onto the body is ignored.
+     */
+    public void step(char input) {
+        GameState s = state;
+        if (s.status != GameState.Status.RUNNING) return;
+        Object tick = GameEvents.beginTick();
+        advance(input);
+        GameEvents.endTick(tick, s);
+        if (s.status != GameState.Status.RUNNING) {
+            GameEvents.levelTransition(s);
+        }
+    }
+
+    private void advance(char input) {
+        GameState s = state;
+        s.events = 0;
+
+        // Check level-specific win/lose conditions
+        if (checkLevelConditions()) {
+            return;
+        }
+
+        if (input != 0 && input != getOppositeDirection(s.direction)) {
+            s.direction = input;
+        }
+
+        move();
+        if (s.status == GameState.Status.RUNNING) checkBombCollision();
+        if (s.status == GameState.Status.RUNNING) checkAIBombCollision();
+        if (s.status == GameState.Status.RUNNING) checkAICollision();
+        if (s.status != GameState.Status.RUNNING) return;
+
+        s.elapsedMs += s.tickMs;
+        s.tick++;
+        s.timers.advance(timerHandler);
+    }
+
+    private boolean checkLevelConditions() {
+        GameState s = state;
+        // Level 1: Check time limit and score
+        if (s.level == 1) {
+            if (s.timeUp) {
+                s.status = s.score >= rules.winScore ? GameState.Status.LEVEL_COMPLETE : GameState.Status.LEVEL_FAILED;
+                return true;
+            }
+            return false;
+        }
+
+        // Level 2, 3, 4 & 5: Check if score reaches 300
+        if (s.score >= rules.winScore) {
+            s.status = GameState.Status.LEVEL_COMPLETE;
+            return true;
+        }
+        return false;
+    }
+
+    private void move() {
+        GameState s = state;
+        int oldHead = s.snake.head();
+        int newHead = neighbor(oldHead, s.direction);
+        boolean ate = newHead == s.food && s.appleVisible;
+
+        if (!ate) {
+            int oldTail = s.snake.popTail();
+            s.freeCells.release(oldTail);
+            s.dirty.add(oldTail);
+        }
+
+        // Check self collision against the body that remains after the tail moved
+        boolean collided = s.snake.contains(newHead);
+        s.snake.pushHead(newHead);
+        s.freeCells.occupy(newHead);
+        s.trail[newHead] = (byte) getOppositeDirection(s.direction);
+        markMoved(s.snake, oldHead);
+        if (collided) {
+            s.status = GameState.Status.GAME_OVER;
+            s.cause = GameState.Cause.SELF;
+            GameEvents.collision("player self", s, newHead);
+            return;
+        }
+
+        if (ate) {
+            eatFood();
+        }
+    }
+
+    private void eatFood() {
+        GameState s = state;
+        if (s.foodType.equals("multiplier")) {
+            activateScoreMultiplier();
+            s.events |= EVENT_ATE_MULTIPLIER;
+        } else {
+            s.score += s.scoreMultiplierActive ? 20 : 10; // Double points if multiplier active
+            s.events |= EVENT_ATE_APPLE;
+        }
+        spawnFood();
+    }
+
+    private void activateScoreMultiplier() {
+        state.scoreMultiplierActive = true;
+        state.timers.schedule(TIMER_MULTIPLIER_END, rules.msToTicks(rules.multiplierDurationMs, state.level));
+    }
+
+    private void checkBombCollision() {
+        GameState s = state;
+        if (s.bombVisible && s.snake.head() == s.bomb) {
+            s.status = GameState.Status.GAME_OVER;
+            s.cause = GameState.Cause.BOMB;
+            GameEvents.collision("player bomb", s, s.bomb);
+        }
+    }
+
+    private void checkAIBombCollision() {
+        GameState s = state;
+        if (s.bombVisible && s.aiSnakeActive && s.aiSnake.head() == s.bomb) {
+            GameEvents.collision("AI bomb", s, s.bomb);
+            killAISnake(30); // Bonus for AI dying from bomb
+        }
+    }
+
+    private void checkAICollision() {
+        GameState s = state;
+        if (!s.aiSnakeActive) return;
+        int playerHead = s.snake.head();
+        int aiHead = s.aiSnake.head();
+
+        // Head-on collision: prioritize resolving as AI elimination for fairness
+        if (playerHead == aiHead) {
+            GameEvents.collision("head-on", s, aiHead);
+            killAISnake(50);
+            return;
+        }
+
+        // Player head hits AI body -> player dies
+        if (s.aiSnake.contains(playerHead)) {
+            s.status = GameState.Status.GAME_OVER;
+            s.cause = GameState.Cause.AI_SNAKE;
+            GameEvents.collision("player into AI", s, playerHead);
+            return;
+        }
+
+        // AI head hits any player segment -> AI dies
+        if (s.snake.contains(aiHead)) {
+            GameEvents.collision("AI into player", s, aiHead);
+            killAISnake(50);
+        }
+    }
+
+    private void killAISnake(int rewardPoints) {
+        // A dead AI snake is no longer drawn or collided with, so hand its cells back
+        SnakeBody ai = state.aiSnake;
+        for (int i = 0; i < ai.size(); i++) {
+            state.freeCells.release(ai.get(i));
+            state.dirty.add(ai.get(i));
+        }
+        ai.clear();
+        state.aiSnakeActive = false;
+        state.timers.cancel(TIMER_AI_MOVE);
+        state.score += Math.max(0, rewardPoints);
+        state.events |= EVENT_AI_KILLED;
+    }
+
+    private void onTimer(int id) {
+        GameState s = state;
+        switch (id) {
+            case TIMER_MULTIPLIER_END:
+                s.scoreMultiplierActive = false;
+                s.events |= EVENT_MULTIPLIER_ENDED;
+                break;
+            case TIMER_APPLE_HIDE:
+                // Vanishing apple: hide after 4s, respawn elsewhere 1s later
+                s.appleVisible = false;
+                s.dirty.add(s.food);
+                s.timers.schedule(TIMER_APPLE_RESPAWN, rules.msToTicks(rules.respawnDelayMs, s.level));
+                break;
+            case TIMER_APPLE_RESPAWN:
+                spawnFood();
+                break;
+            case TIMER_BOMB_HIDE:
+                // Bomb (level 4 and 5): hidden 1s, then somewhere else
+                s.bombVisible = false;
+                s.freeCells.release(s.bomb);
+                s.dirty.add(s.bomb);
+                s.bomb = GameState.NO_CELL;
+                s.timers.schedule(TIMER_BOMB_RESPAWN, rules.msToTicks(rules.respawnDelayMs, s.level));
+                break;
+            case TIMER_BOMB_RESPAWN:
+                spawnBomb();
+                break;
+            case TIMER_AI_MOVE:
+                // Catch up on every AI move due by now, then book the next one
+                do {
+                    moveAISnake();
+                    s.aiMoveAtMs += rules.aiMoveDelayMs;
+                } while (s.aiSnakeActive && s.aiMoveAtMs <= s.elapsedMs);
+                if (s.aiSnakeActive) {
+                    scheduleAIMove();
+                }
+                break;
+            case TIMER_LEVEL_TIME_UP:
+                s.timeUp = true;
+                break;
+        }
+    }
+
+    /**
+     * The AI moves every {@link #AI_MOVE_DELAY_MS} of simulated time, which
+     * need not be a whole number of ticks, so its next move is booked for the
+     * first tick at or after {@code aiMoveAtMs} rather than a fixed interval.
+     */
+    private void scheduleAIMove() {
+        GameState s = state;
+        if (s.aiMoveAtMs <= s.elapsedMs) {
+            s.aiMoveAtMs = s.elapsedMs + rules.aiMoveDelayMs;
+        }
+        long dueTick = rules.msToTicks(s.aiMoveAtMs, s.level);
+        s.timers.schedule(TIMER_AI_MOVE, dueTick - s.tick);
+    }
+
+    /**
+     * Moves the food to a uniformly random cell not covered by a snake or the
+     * bomb. When no cell is left the food is removed and
+     * {@link #EVENT_BOARD_FULL} is raised.
+     */
+    void spawnFood() {
+        GameState s = state;
+        if (s.food != GameState.NO_CELL) {
+            s.freeCells.release(s.food);
+            s.dirty.add(s.food);
+        }
+        s.food = s.freeCells.randomFree(random);
+        s.dirty.add(s.food);
+        if (s.food == GameState.NO_CELL) {
+            GameEvents.spawn("food", s, GameState.NO_CELL);
+            s.appleVisible = false;
+            s.timers.cancel(TIMER_APPLE_HIDE);
+            s.timers.cancel(TIMER_APPLE_RESPAWN);
+            s.events |= EVENT_BOARD_FULL;
+            return;
+        }
+        s.freeCells.occupy(s.food);
+
+        // 20% chance to spawn a multiplier apple
+        s.foodType = random.nextDouble() < rules.multiplierChance ? "multiplier" : "apple";
+        GameEvents.spawn(s.foodType, s, s.food);
+        s.appleVisible = true;
+        s.events |= EVENT_FOOD_SPAWNED;
+
+        // Level 3: every new apple starts its own vanishing countdown
+        if (s.level == 3) {
+            s.timers.schedule(TIMER_APPLE_HIDE, rules.msToTicks(rules.appleVisibleMs, s.level));
+            s.timers.cancel(TIMER_APPLE_RESPAWN);
+        }
+    }
+
+    /** Same as {@link #spawnFood()} for the bomb, which also avoids the food. */
+    private void spawnBomb() {
+        GameState s = state;
+        if (s.bomb != GameState.NO_CELL) {
+            s.freeCells.release(s.bomb);
+            s.dirty.add(s.bomb);
+        }
+        s.bomb = s.freeCells.randomFree(random);
+        s.dirty.add(s.bomb);
+        if (s.bomb == GameState.NO_CELL) {
+            GameEvents.spawn("bomb", s, GameState.NO_CELL);
+            s.bombVisible = false;
+            s.timers.cancel(TIMER_BOMB_HIDE);
+            s.timers.cancel(TIMER_BOMB_RESPAWN);
+            s.events |= EVENT_BOARD_FULL;
+            return;
+        }
+        s.freeCells.occupy(s.bomb);
+        GameEvents.spawn("bomb", s, s.bomb);
+        s.bombVisible = true;
+        s.events |= EVENT_BOMB_SPAWNED;
+    }
+
+    // Package-private, like spawnFood(), so bench/Benchmarks can drive it in isolation
+    void moveAISnake() {
+        GameState s = state;
+        if (!s.aiSnakeActive || s.aiSnake.isEmpty()) return;
+
+        int aiHead = s.aiSnake.head();
+
+        // Head for the food (the centre when there is none) along the distance field
+        int target = s.food != GameState.NO_CELL ? s.food : s.cell(s.cols / 2, s.rows / 2);
+        Object decision = GameEvents.beginAIDecision();
+        long rebuilds = aiPath.getRebuilds();
+        s.aiDirection = aiPath.chooseDirection(s, s.aiSnake, s.aiDirection, target);
+        GameEvents.endAIDecision(decision, s, target, aiPath.getRebuilds() != rebuilds);
+
+        int finalHead = neighbor(aiHead, s.aiDirection);
+        boolean ate = finalHead == s.food && s.appleVisible;
+        if (!ate) {
+            int oldTail = s.aiSnake.popTail();
+            s.freeCells.release(oldTail);
+            s.dirty.add(oldTail);
+        }
+
+        // AI self-collision check (after moving)
+        boolean collided = s.aiSnake.contains(finalHead);
+        s.aiSnake.pushHead(finalHead);
+        s.freeCells.occupy(finalHead);
+        markMoved(s.aiSnake, aiHead);
+        if (collided) {
+            GameEvents.collision("AI self", s, finalHead);
+            killAISnake(30); // Small reward for AI self-destruct
+            return;
+        }
+
+        // AI snake grows and scores
+        if (ate) {
+            s.aiScore += 10;
+            s.events |= EVENT_AI_ATE;
+            spawnFood();
+        }
+    }
+
+    /** New head, the old head (now a body sprite) and the current tail all change appearance. */
+    private void markMoved(SnakeBody body, int oldHead) {
+        state.dirty.add(body.head());
+        state.dirty.add(oldHead);
+        state.dirty.add(body.tail());
+    }
+
+    /** Cell one step from {@code cell} in direction {@code dir}, wrapping around the board edges. */
+    public int neighbor(int cell, char dir) {
+        int cols = state.cols;
+        int rows = state.rows;
+        int x = cell % cols;
+        int y = cell / cols;
+        switch (dir) {
+            case 'U': y = y == 0 ? rows - 1 : y - 1; break;
+            case 'D': y = y == rows - 1 ? 0 : y + 1; break;
+            case 'L': x = x == 0 ? cols - 1 : x - 1; break;
+            case 'R': x = x == cols - 1 ? 0 : x + 1; break;
+        }
+        return y * cols + x;
+    }
+
+    public static char getOppositeDirection(char dir) {
+        switch (dir) {
+            case 'U': return 'D';
+            case 'D': return 'U';
+            case 'L': return 'R';
+            case 'R': return 'L';
+            default: return dir;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/**
+ * Flight Recorder hooks for the engine and the game view. The events
+ * themselves are in {@code JfrEvents} (in {@code jfr/}, compiled by the
+ * build scripts when the JDK has Flight Recorder), which is looked up by
+ * name, so nothing here depends on {@code jdk.jfr} and the game builds and
+ * runs on Java 8; without it every hook does nothing.
+ *
+ * Until a recording has been started every call site costs a static field
+ * read and one call. Duration events come from the {@code begin*} methods,
+ * which return null while nothing is recording, and are passed back to the
+ * matching {@code end*} method. Record with:
+ *
+ *   java -XX:StartFlightRecording=filename=snake.jfr -cp bin App
+ *   jfr print --categories Snake snake.jfr
+ */
+final class GameEvents {
+    /** What {@code JfrEvents} provides; a {@code begin*} method's result is only ever handed to its {@code end*} method. */
+    interface Recorder {
+        boolean isRecording();
+        Object beginTick();
+        void endTick(Object token, GameState s);
+        Object beginAIDecision();
+        void endAIDecision(Object token, GameState s, int target, boolean rebuilt);
+        Object beginPaint();
+        void endPaint(Object token, String phase, int level, int clipArea, int snakeLength);
+        void spawn(String item, GameState s, int cell);
+        void collision(String kind, GameState s, int cell);
+        void levelTransition(GameState s);
+    }
+
+    private static final Recorder RECORDER = load();
+
+    private GameEvents() {
+    }
+
+    private static Recorder load() {
+        try {
+            Recorder recorder = (Recorder) Class.forName("JfrEvents").getDeclaredConstructor().newInstance();
+            recorder.isRecording(); // links jdk.jfr now rather than on the first tick
+            return recorder;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null; // built without jfr/, or a JVM without Flight Recorder
+        }
+    }
+
+    /** True once a recording has been started in this JVM, from the command line or with jcmd. */
+    static boolean enabled() {
+        return RECORDER != null && RECORDER.isRecording();
+    }
+
+    static Object beginTick() {
+        return enabled() ? RECORDER.beginTick() : null;
+    }
+
+    static void endTick(Object tick, GameState s) {
+        if (tick != null) RECORDER.endTick(tick, s);
+    }
+
+    static Object beginAIDecision() {
+        return enabled() ? RECORDER.beginAIDecision() : null;
+    }
+
+    static void endAIDecision(Object decision, GameState s, int target, boolean rebuilt) {
+        if (decision != null) RECORDER.endAIDecision(decision, s, target, rebuilt);
+    }
+
+    static Object beginPaint() {
+        return enabled() ? RECORDER.beginPaint() : null;
+    }
+
+    static void endPaint(Object paint, String phase, int level, int clipArea, int snakeLength) {
+        if (paint != null) RECORDER.endPaint(paint, phase, level, clipArea, snakeLength);
+    }
+
+    static void spawn(String item, GameState s, int cell) {
+        if (enabled()) RECORDER.spawn(item, s, cell);
+    }
+
+    static void collision(String kind, GameState s, int cell) {
+        if (enabled()) RECORDER.collision(kind, s, cell);
+    }
+
+    static void levelTransition(GameState s) {
+        if (enabled()) RECORDER.levelTransition(s);
+    }
+}
@@ -0,0 +1,47 @@
+import java.util.Random;
+
+/**
+ * {@link Random} whose internal state can be read and put back, so a replay
+ * keyframe can resume the engine's random stream exactly where it was. It
+ * runs the same 48-bit linear congruential generator as {@code Random}, so
+ * a given seed yields the same numbers as before and old replays still
+ * play back identically.
+ */
+public class GameRandom extends Random {
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = (1L << 48) - 1;
+
+    // Not initialised here: Random's constructor sets it through setSeed() before field initialisers run
+    private long state;
+
+    public GameRandom() {
+        this(new Random().nextLong());
+    }
+
+    public GameRandom(long seed) {
+        super(seed);
+    }
+
+    @Override
+    public synchronized void setSeed(long seed) {
+        super.setSeed(seed); // also drops Random's cached Gaussian
+        state = (seed ^ MULTIPLIER) & MASK;
+    }
+
+    @Override
+    protected int next(int bits) {
+        state = (state * MULTIPLIER + ADDEND) & MASK;
+        return (int) (state >>> (48 - bits));
+    }
+
+    /** The generator's current 48-bit state. */
+    public long getState() {
+        return state;
+    }
+
+    /** Continues the stream from a state returned by {@link #getState()}. */
+    public void setState(long state) {
+        this.state = state & MASK;
+    }
+}
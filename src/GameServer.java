@@ -0,0 +1,424 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Authoritative multiplayer server: rooms of up to {@code -room} players
+ * share one {@link ArenaEngine} each, stepped headless on the server's
+ * clock, and every client is sent only what each step changed (see
+ * {@link NetProtocol}). Each player steers one arena agent; agents with no
+ * player are left to the arena's own AI, so a room is never empty of
+ * snakes. A room is created when the others are full and dropped at the
+ * next tick once its last player has left.
+ *
+ * Everything runs on one thread around a NIO {@link Selector}: accepting,
+ * reading turns, stepping the rooms when a tick is due and writing. A
+ * delta is encoded once per room and written to every player; a client
+ * that cannot keep up has the rest queued, and is disconnected once
+ * {@link #MAX_BACKLOG} bytes are waiting, so it can never stall the room.
+ *
+ * Usage: java -cp bin GameServer [-port n] [-room n] [-board COLSxROWS]
+ *        [-tick ms] [-seed n]
+ */
+public class GameServer {
+    public static final int DEFAULT_PORT = 7777;
+
+    // Bytes queued for one client before it is dropped as too slow
+    private static final int MAX_BACKLOG = 256 * 1024;
+    private static final long STATS_INTERVAL_NANOS = 10_000_000_000L;
+
+    private final int roomSize;
+    private final int cols;
+    private final int rows;
+    private final int tickMs;
+    private final long seed;
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final List<Room> rooms = new ArrayList<>();
+    private long roomsCreated = 0;
+
+    // Since the last stats line
+    private final LatencyHistogram tickTimes = new LatencyHistogram();
+    private long payloadBytes = 0;
+    private long playerTicks = 0; // players in a room, summed over that room's ticks
+
+    public GameServer(int port, int roomSize, int cols, int rows, int tickMs, long seed) throws IOException {
+        this.roomSize = roomSize;
+        this.cols = cols;
+        this.rows = rows;
+        this.tickMs = tickMs;
+        this.seed = seed;
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port));
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    /** Serves until the thread is interrupted. */
+    public void run() throws IOException {
+        long tickNanos = tickMs * 1_000_000L;
+        long nextTick = System.nanoTime() + tickNanos;
+        long nextStats = System.nanoTime() + STATS_INTERVAL_NANOS;
+        while (!Thread.currentThread().isInterrupted()) {
+            long waitMs = (nextTick - System.nanoTime()) / 1_000_000L;
+            if (waitMs > 0) {
+                selector.select(waitMs);
+            } else {
+                selector.selectNow();
+            }
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                handle(key);
+            }
+
+            long now = System.nanoTime();
+            if (now - nextTick >= 0) {
+                for (int i = 0; i < rooms.size(); i++) {
+                    long start = System.nanoTime();
+                    rooms.get(i).tick(now);
+                    tickTimes.record(System.nanoTime() - start);
+                }
+                rooms.removeIf(r -> r.playerCount == 0);
+                // Far behind (e.g. after a long GC pause): skip the missed ticks instead of bursting them
+                nextTick = now - nextTick > 5 * tickNanos ? now + tickNanos : nextTick + tickNanos;
+            }
+            if (now - nextStats >= 0) {
+                printStats();
+                nextStats = now + STATS_INTERVAL_NANOS;
+            }
+        }
+        selector.close();
+        server.close();
+    }
+
+    private void handle(SelectionKey key) {
+        if (!key.isValid()) return;
+        if (key.isAcceptable()) {
+            accept();
+            return;
+        }
+        Connection c = (Connection) key.attachment();
+        try {
+            if (key.isReadable()) c.read();
+            if (key.isValid() && key.isWritable()) c.flush();
+        } catch (IOException | RuntimeException e) {
+            c.close();
+        }
+    }
+
+    private void accept() {
+        SocketChannel channel;
+        try {
+            channel = server.accept();
+            if (channel == null) return;
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        } catch (IOException e) {
+            System.out.println("Accept failed: " + e.getMessage());
+            return;
+        }
+        Room room = null;
+        for (Room r : rooms) {
+            if (r.playerCount < roomSize) {
+                room = r;
+                break;
+            }
+        }
+        if (room == null) {
+            room = new Room(seed + roomsCreated++);
+            rooms.add(room);
+        }
+        Connection c;
+        try {
+            c = new Connection(channel, channel.register(selector, SelectionKey.OP_READ));
+        } catch (IOException e) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+            return;
+        }
+        try {
+            room.join(c);
+        } catch (IOException e) {
+            c.close();
+        }
+    }
+
+    private void printStats() {
+        int players = 0;
+        for (Room r : rooms) players += r.playerCount;
+        double perPlayer = playerTicks == 0 ? 0 : payloadBytes / (playerTicks * tickMs / 1000.0);
+        System.out.println(String.format(Locale.ROOT, "%d rooms, %d players | room tick %s | %.0f B/s per player",
+            rooms.size(), players, tickTimes.summary(), perPlayer));
+        tickTimes.reset();
+        payloadBytes = 0;
+        playerTicks = 0;
+    }
+
+    /** One arena and the players steering its agents. */
+    final class Room {
+        final ArenaEngine arena;
+        final Connection[] players;
+        int playerCount = 0;
+
+        // Which agents were alive going into the step being encoded
+        private final boolean[] aliveBefore;
+        private final ByteBuffer payload;
+        private final ByteBuffer frame;
+
+        Room(long seed) {
+            arena = new ArenaEngine(cols, rows, roomSize, seed, false);
+            players = new Connection[roomSize];
+            aliveBefore = new boolean[roomSize];
+            int deltaSize = 32 + roomSize / 4 + roomSize * 15 + arena.appleCount * 5;
+            payload = ByteBuffer.allocate(deltaSize);
+            frame = ByteBuffer.allocate(deltaSize + 5);
+        }
+
+        void join(Connection c) throws IOException {
+            int agent = 0;
+            while (players[agent] != null) agent++;
+            players[agent] = c;
+            playerCount++;
+            arena.setControlled(agent, true);
+            c.room = this;
+            c.agent = agent;
+
+            ByteBuffer welcome = ByteBuffer.allocate(64);
+            welcome.put(NetProtocol.WELCOME);
+            welcome.putInt(NetProtocol.MAGIC);
+            NetProtocol.putVarint(welcome, NetProtocol.VERSION);
+            NetProtocol.putVarint(welcome, agent);
+            NetProtocol.putVarint(welcome, cols);
+            NetProtocol.putVarint(welcome, rows);
+            NetProtocol.putVarint(welcome, tickMs);
+            NetProtocol.putVarint(welcome, roomSize);
+            c.send(framed(welcome));
+            c.send(framed(snapshot()));
+        }
+
+        void leave(Connection c) {
+            players[c.agent] = null;
+            playerCount--;
+            arena.setControlled(c.agent, false);
+        }
+
+        /** Applies each player's next queued turn, steps the arena and sends every player the delta. */
+        void tick(long now) {
+            for (Connection c : players) {
+                if (c == null) continue;
+                char turn = c.turns.poll(arena.getDirection(c.agent), now);
+                if (turn != 0) arena.steer(c.agent, turn);
+            }
+            for (int i = 0; i < roomSize; i++) {
+                aliveBefore[i] = arena.isAlive(i);
+            }
+            arena.step();
+
+            payload.clear();
+            payload.put(NetProtocol.DELTA);
+            NetProtocol.putVarint(payload, arena.getTick());
+            NetProtocol.CodeWriter moves = new NetProtocol.CodeWriter(payload);
+            for (int i = 0; i < roomSize; i++) {
+                // An agent that died has a meaningless code here; the client skips it
+                if (aliveBefore[i]) moves.put(NetProtocol.directionCode(arena.getDirection(i)));
+            }
+            moves.flush();
+            NetProtocol.putVarint(payload, arena.diedCount);
+            for (int i = 0; i < arena.diedCount; i++) {
+                NetProtocol.putVarint(payload, arena.died[i]);
+            }
+            NetProtocol.putVarint(payload, arena.spawnedCount);
+            for (int i = 0; i < arena.spawnedCount; i++) {
+                int agent = arena.spawned[i];
+                NetProtocol.putVarint(payload, agent);
+                NetProtocol.putVarint(payload, arena.getBody(agent).head());
+            }
+            NetProtocol.putVarint(payload, arena.applesPlacedCount);
+            for (int i = 0; i < arena.applesPlacedCount; i++) {
+                NetProtocol.putVarint(payload, arena.applesPlaced[i]);
+            }
+            if (arena.getTick() % NetProtocol.CHECK_INTERVAL == 0) {
+                payload.putInt(NetProtocol.checksum(arena.grid, arena.scores));
+            }
+
+            frame.clear();
+            NetProtocol.putFrame(frame, payload);
+            frame.flip();
+            for (Connection c : players) {
+                if (c == null) continue;
+                try {
+                    c.send(frame.duplicate());
+                } catch (IOException e) {
+                    c.close();
+                }
+            }
+            payloadBytes += (long) frame.limit() * playerCount;
+            playerTicks += playerCount;
+        }
+
+        /** The whole board, for a player who just joined. */
+        private ByteBuffer snapshot() {
+            int cells = cols * rows;
+            ByteBuffer out = ByteBuffer.allocate(32 + roomSize * 16 + cells / 4 + arena.appleCount * 5);
+            out.put(NetProtocol.SNAPSHOT);
+            NetProtocol.putVarint(out, arena.getTick());
+            for (int i = 0; i < roomSize; i++) {
+                NetProtocol.putVarint(out, arena.getScore(i));
+                SnakeBody body = arena.getBody(i);
+                int size = arena.isAlive(i) ? body.size() : 0;
+                NetProtocol.putVarint(out, size);
+                if (size == 0) continue;
+                NetProtocol.putVarint(out, body.head());
+                NetProtocol.CodeWriter steps = new NetProtocol.CodeWriter(out);
+                for (int s = 1; s < size; s++) {
+                    steps.put(NetProtocol.codeBetween(body.get(s - 1), body.get(s), cols, rows));
+                }
+                steps.flush();
+            }
+            int apples = 0;
+            for (int cell = 0; cell < cells; cell++) {
+                if (arena.ownerAt(cell) == ArenaEngine.APPLE) apples++;
+            }
+            NetProtocol.putVarint(out, apples);
+            for (int cell = 0; cell < cells; cell++) {
+                if (arena.ownerAt(cell) == ArenaEngine.APPLE) NetProtocol.putVarint(out, cell);
+            }
+            return out;
+        }
+
+        private ByteBuffer framed(ByteBuffer body) {
+            ByteBuffer out = ByteBuffer.allocate(body.position() + 5);
+            NetProtocol.putFrame(out, body);
+            out.flip();
+            return out;
+        }
+    }
+
+    /** One client: its socket, the agent it steers, its queued turns and unsent bytes. */
+    final class Connection {
+        final SocketChannel channel;
+        final SelectionKey key;
+        final InputQueue turns = new InputQueue();
+        Room room;
+        int agent;
+        private boolean closed = false;
+
+        private final ByteBuffer in = ByteBuffer.allocate(256);
+        private ByteBuffer backlog = ByteBuffer.allocate(0); // write mode
+
+        Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+            key.attach(this);
+        }
+
+        void read() throws IOException {
+            if (channel.read(in) < 0) {
+                close();
+                return;
+            }
+            in.flip();
+            ByteBuffer frame;
+            while ((frame = NetProtocol.nextFrame(in)) != null) {
+                if (frame.remaining() < 2 || frame.get() != NetProtocol.TURN) {
+                    throw new IOException("Unexpected message");
+                }
+                turns.offer(NetProtocol.direction(frame.get()), System.nanoTime());
+            }
+            in.compact();
+            if (!in.hasRemaining()) throw new IOException("Frame too large");
+        }
+
+        /** Writes {@code frame} (read mode) now if the socket takes it, queueing whatever it does not. */
+        void send(ByteBuffer frame) throws IOException {
+            if (backlog.position() == 0) {
+                channel.write(frame);
+                if (!frame.hasRemaining()) return;
+            }
+            if (backlog.remaining() < frame.remaining()) {
+                int needed = backlog.position() + frame.remaining();
+                if (needed > MAX_BACKLOG) throw new IOException("Client too slow");
+                ByteBuffer bigger = ByteBuffer.allocate(Math.min(MAX_BACKLOG, Math.max(needed, backlog.capacity() * 2)));
+                backlog.flip();
+                bigger.put(backlog);
+                backlog = bigger;
+            }
+            backlog.put(frame);
+            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+
+        void flush() throws IOException {
+            backlog.flip();
+            channel.write(backlog);
+            backlog.compact();
+            if (backlog.position() == 0) key.interestOps(SelectionKey.OP_READ);
+        }
+
+        void close() {
+            if (closed) return;
+            closed = true;
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+            if (room != null) {
+                room.leave(this);
+                room = null;
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = DEFAULT_PORT;
+        int roomSize = 64;
+        int cols = 96;
+        int rows = 96;
+        int tickMs = 60;
+        long seed = System.nanoTime();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-port": port = Integer.parseInt(args[++i]); break;
+                    case "-room": roomSize = Math.max(1, Integer.parseInt(args[++i])); break;
+                    case "-tick": tickMs = Math.max(1, Integer.parseInt(args[++i])); break;
+                    case "-seed": seed = Long.parseLong(args[++i]); break;
+                    case "-board": {
+                        String[] size = args[++i].toLowerCase(Locale.ROOT).split("x");
+                        cols = Integer.parseInt(size[0]);
+                        rows = Integer.parseInt(size[size.length - 1]);
+                        break;
+                    }
+                    default: throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+        } catch (RuntimeException e) {
+            System.out.println(e.getMessage());
+            System.out.println("Usage: java GameServer [-port n] [-room n] [-board COLSxROWS] [-tick ms] [-seed n]");
+            System.exit(2);
+            return;
+        }
+        GameServer server = new GameServer(port, roomSize, cols, rows, tickMs, seed);
+        System.out.println(String.format(Locale.ROOT, "Serving on port %d: %d players per room, %dx%d board, %d ms ticks",
+            server.getPort(), roomSize, cols, rows, tickMs));
+        server.run();
+    }
+}
@@ -0,0 +1,258 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Versioned binary snapshot of a whole game: level, status, clock, scores,
+ * both snakes, food, bomb, the ticks left on every scheduled timer, the
+ * engine's random stream and the AI's path state. An engine restored from
+ * it plays on exactly as the original would have. Save/resume, network
+ * sync and debugging dumps can all use the same bytes.
+ *
+ * Layout: "SNKS", version, cols, rows (varints), level, status, cause,
+ * a flag byte (time up, apple visible, multiplier apple, multiplier
+ * active, bomb visible, AI active), the player's and the AI's direction
+ * packed into one byte, the random generator's 48-bit state (6 bytes, big
+ * endian), then varints for tick, elapsed ms, ms per tick,
+ * time limit, score, AI score, next AI move time, events, food + 1 and
+ * bomb + 1 (0 = none), a byte with a bit per scheduled timer followed by
+ * the ticks left on each, and finally each snake as its length, its head
+ * cell and the 2-bit direction (U, D, L, R = 0..3, four per byte, low bits
+ * first) from every segment to the next one towards the tail; while the
+ * AI is alive, what its current distance field was built from follows
+ * (see {@link AIPathfinder#writeField}). A 24x24 opening position takes
+ * about 40 bytes; a snake costs a quarter of a byte per segment.
+ *
+ * Nothing else is needed to resume: spawns pick from the free cells by
+ * rank ({@link FreeCellIndex}), not by the order they were freed in, so
+ * the free cells are simply rebuilt from the entities.
+ * {@link #encode} and {@link #decode} work straight on the caller's
+ * buffer and the engine's own arrays, allocating nothing.
+ */
+public final class GameSnapshot {
+    public static final int MAGIC = 0x534E4B53; // "SNKS"
+    public static final int VERSION = 2;
+
+    private static final int TIME_UP = 1;
+    private static final int APPLE_VISIBLE = 1 << 1;
+    private static final int MULTIPLIER_FOOD = 1 << 2;
+    private static final int MULTIPLIER_ACTIVE = 1 << 3;
+    private static final int BOMB_VISIBLE = 1 << 4;
+    private static final int AI_ACTIVE = 1 << 5;
+
+    private GameSnapshot() {
+    }
+
+    /** Most bytes a snapshot of a {@code cols} x {@code rows} game can take. */
+    public static int maxBytes(int cols, int rows) {
+        long cells = (long) cols * rows;
+        int cellBytes = (64 - Long.numberOfLeadingZeros(cells) + 6) / 7;
+        // Header, fields and timers stay under 256 bytes; each snake adds two varints and its codes;
+        // the AI's field adds four varints and its walls, each next to one of at most FIELD_BUDGET cells
+        long field = 4 * 5 + Math.min(cells, 4L * AIPathfinder.FIELD_BUDGET) * cellBytes;
+        return (int) Math.min(Integer.MAX_VALUE, 256 + 2 * (10 + (cells + 3) / 4) + field);
+    }
+
+    /**
+     * Writes a snapshot of {@code engine}'s game at {@code out}'s position
+     * and returns its length; throws {@link java.nio.BufferOverflowException}
+     * when {@code out} has less room than {@link #maxBytes} may need.
+     */
+    public static int encode(GameEngine engine, ByteBuffer out) {
+        GameState s = engine.getState();
+        int start = out.position();
+        out.putInt(MAGIC);
+        out.put((byte) VERSION);
+        NetProtocol.putVarint(out, s.cols);
+        NetProtocol.putVarint(out, s.rows);
+        out.put((byte) s.level);
+        out.put((byte) s.status.ordinal());
+        out.put((byte) s.cause.ordinal());
+        int flags = (s.timeUp ? TIME_UP : 0)
+            | (s.appleVisible ? APPLE_VISIBLE : 0)
+            | (s.foodType.equals("multiplier") ? MULTIPLIER_FOOD : 0)
+            | (s.scoreMultiplierActive ? MULTIPLIER_ACTIVE : 0)
+            | (s.bombVisible ? BOMB_VISIBLE : 0)
+            | (s.aiSnakeActive ? AI_ACTIVE : 0);
+        out.put((byte) flags);
+        out.put((byte) (NetProtocol.directionCode(s.direction) | NetProtocol.directionCode(s.aiDirection) << 2));
+        long random = engine.random().getState();
+        out.putShort((short) (random >>> 32));
+        out.putInt((int) random);
+        NetProtocol.putVarint(out, s.tick);
+        NetProtocol.putVarint(out, s.elapsedMs);
+        NetProtocol.putVarint(out, s.tickMs);
+        NetProtocol.putVarint(out, s.levelTimeLimit);
+        NetProtocol.putVarint(out, s.score);
+        NetProtocol.putVarint(out, s.aiScore);
+        NetProtocol.putVarint(out, s.aiMoveAtMs);
+        NetProtocol.putVarint(out, s.events);
+        NetProtocol.putVarint(out, s.food + 1);
+        NetProtocol.putVarint(out, s.bomb + 1);
+
+        int scheduled = 0;
+        for (int id = 0; id < GameEngine.TIMER_COUNT; id++) {
+            if (s.timers.isScheduled(id)) scheduled |= 1 << id;
+        }
+        out.put((byte) scheduled);
+        for (int id = 0; id < GameEngine.TIMER_COUNT; id++) {
+            if (s.timers.isScheduled(id)) NetProtocol.putVarint(out, s.timers.remainingTicks(id));
+        }
+
+        putSnake(out, s.snake, s.cols, s.rows);
+        putSnake(out, s.aiSnake, s.cols, s.rows);
+        if (s.aiSnakeActive) engine.aiPath().writeField(out);
+        return out.position() - start;
+    }
+
+    /**
+     * Reads the snapshot at {@code in}'s position into {@code engine}, which
+     * must have the same board size, and rebuilds the free-cell index, the
+     * player's trail and the AI's distance field from it. Throws
+     * {@link IllegalArgumentException} (or
+     * {@link java.nio.BufferUnderflowException} when truncated) on bytes that
+     * are not a snapshot; the game is then left half-written and should be
+     * reset.
+     */
+    public static void decode(ByteBuffer in, GameEngine engine) {
+        GameState s = engine.getState();
+        if (in.getInt() != MAGIC) throw new IllegalArgumentException("Not a game snapshot");
+        int version = in.get();
+        if (version != VERSION) throw new IllegalArgumentException("Unsupported snapshot version " + version);
+        int cols = NetProtocol.getVarintInt(in);
+        int rows = NetProtocol.getVarintInt(in);
+        if (cols != s.cols || rows != s.rows) {
+            throw new IllegalArgumentException("Snapshot is of a " + cols + "x" + rows + " board, not " + s.cols + "x" + s.rows);
+        }
+        s.level = in.get();
+        s.status = enumAt(GameState.Status.values(), in.get());
+        s.cause = enumAt(GameState.Cause.values(), in.get());
+        int flags = in.get();
+        s.timeUp = (flags & TIME_UP) != 0;
+        s.appleVisible = (flags & APPLE_VISIBLE) != 0;
+        s.foodType = (flags & MULTIPLIER_FOOD) != 0 ? "multiplier" : "apple";
+        s.scoreMultiplierActive = (flags & MULTIPLIER_ACTIVE) != 0;
+        s.bombVisible = (flags & BOMB_VISIBLE) != 0;
+        s.aiSnakeActive = (flags & AI_ACTIVE) != 0;
+        int directions = in.get();
+        s.direction = NetProtocol.direction(directions);
+        s.aiDirection = NetProtocol.direction(directions >> 2);
+        long random = (long) (in.getShort() & 0xFFFF) << 32 | in.getInt() & 0xFFFFFFFFL;
+        s.tick = NetProtocol.getVarint(in);
+        s.elapsedMs = NetProtocol.getVarint(in);
+        s.tickMs = NetProtocol.getVarintInt(in);
+        s.levelTimeLimit = NetProtocol.getVarint(in);
+        s.score = NetProtocol.getVarintInt(in);
+        s.aiScore = NetProtocol.getVarintInt(in);
+        s.aiMoveAtMs = NetProtocol.getVarint(in);
+        s.events = NetProtocol.getVarintInt(in);
+        s.food = cellAt(in, s) - 1;
+        s.bomb = cellAt(in, s) - 1;
+
+        s.timers.clear();
+        int scheduled = in.get();
+        for (int id = 0; id < GameEngine.TIMER_COUNT; id++) {
+            if ((scheduled & 1 << id) != 0) s.timers.schedule(id, NetProtocol.getVarint(in));
+        }
+
+        getSnake(in, s, s.snake, s.trail);
+        getSnake(in, s, s.aiSnake, null);
+        if (s.aiSnakeActive) engine.aiPath().readField(in);
+        engine.random().setState(random);
+
+        // Every entity holds its cells, exactly as the engine occupies them
+        s.freeCells.reset();
+        occupy(s, s.snake);
+        occupy(s, s.aiSnake);
+        if (s.food != GameState.NO_CELL) s.freeCells.occupy(s.food);
+        if (s.bomb != GameState.NO_CELL) s.freeCells.occupy(s.bomb);
+        s.dirty.markAll();
+    }
+
+    private static void putSnake(ByteBuffer out, SnakeBody body, int cols, int rows) {
+        int size = body.size();
+        NetProtocol.putVarint(out, size);
+        if (size == 0) return;
+        NetProtocol.putVarint(out, body.head());
+        int bits = 0;
+        int used = 0;
+        int from = body.head();
+        for (int i = 1; i < size; i++) {
+            int to = body.get(i);
+            bits |= codeBetween(from, to, cols, rows) << (used * 2);
+            if (++used == 4) {
+                out.put((byte) bits);
+                bits = 0;
+                used = 0;
+            }
+            from = to;
+        }
+        if (used > 0) out.put((byte) bits);
+    }
+
+    /** Lays out the body; when {@code trail} is given, also the direction from each segment to the one behind it. */
+    private static void getSnake(ByteBuffer in, GameState s, SnakeBody body, byte[] trail) {
+        body.clear();
+        int size = NetProtocol.getVarintInt(in);
+        if (size == 0) return;
+        if (size > s.cols * s.rows + 1) throw new IllegalArgumentException("Snake longer than the board: " + size);
+        int cell = cellAt(in, s);
+        if (cell >= s.cols * s.rows) throw new IllegalArgumentException("Cell off the board: " + cell);
+        int x = cell % s.cols;
+        int y = cell / s.cols;
+        body.addTail(cell);
+        int head = cell;
+        int headTrail = -1;
+        int bits = 0;
+        int code = NetProtocol.directionCode(GameEngine.getOppositeDirection(s.direction)); // a lone head points back
+        for (int i = 1; i < size; i++) {
+            if (((i - 1) & 3) == 0) bits = in.get() & 0xFF;
+            code = bits & 3;
+            bits >>>= 2;
+            switch (code) {
+                case 0: y = y == 0 ? s.rows - 1 : y - 1; break;
+                case 1: y = y == s.rows - 1 ? 0 : y + 1; break;
+                case 2: x = x == 0 ? s.cols - 1 : x - 1; break;
+                default: x = x == s.cols - 1 ? 0 : x + 1; break;
+            }
+            if (trail != null) trail[cell] = (byte) NetProtocol.direction(code);
+            if (headTrail < 0) headTrail = code;
+            cell = y * s.cols + x;
+            body.addTail(cell);
+        }
+        // The tail's own trail is only ever drawn from the vacated cell, so any direction will do
+        if (trail != null) {
+            trail[cell] = (byte) NetProtocol.direction(code);
+            // After a self collision the head shares a cell with a segment; the head's trail was written last
+            if (headTrail >= 0) trail[head] = (byte) NetProtocol.direction(headTrail);
+        }
+    }
+
+    /**
+     * Code of the step from {@code from} to its neighbour {@code to}, from
+     * the cell id difference alone (wrapping steps differ by a whole row or
+     * column less one).
+     */
+    private static int codeBetween(int from, int to, int cols, int rows) {
+        int d = to - from;
+        if (d == -cols || d == (rows - 1) * cols) return 0;
+        if (d == cols || d == -(rows - 1) * cols) return 1;
+        if (d == -1 || d == cols - 1) return 2;
+        return 3;
+    }
+
+    private static void occupy(GameState s, SnakeBody body) {
+        for (int i = 0; i < body.size(); i++) {
+            s.freeCells.occupy(body.get(i));
+        }
+    }
+
+    private static int cellAt(ByteBuffer in, GameState s) {
+        int cell = NetProtocol.getVarintInt(in);
+        if (cell > s.cols * s.rows) throw new IllegalArgumentException("Cell off the board: " + cell);
+        return cell;
+    }
+
+    private static <E extends Enum<E>> E enumAt(E[] values, int ordinal) {
+        if (ordinal < 0 || ordinal >= values.length) throw new IllegalArgumentException("Bad enum value " + ordinal);
+        return values[ordinal];
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * Plain snapshot of everything the simulation needs for one game. Positions
+ * are packed cell ids ({@code y * cols + x}), not pixels; the view unpacks
+ * them with {@link #cellX(int)}/{@link #cellY(int)} and multiplies by its
+ * unit size when drawing. Mutated only by {@link GameEngine}.
+ */
+public class GameState {
+    public enum Status { RUNNING, GAME_OVER, LEVEL_COMPLETE, LEVEL_FAILED }
+
+    /** What ended a {@link Status#GAME_OVER}: the player's own body, the bomb or the AI snake. */
+    public enum Cause { NONE, SELF, BOMB, AI_SNAKE }
+
+    public static final int NO_CELL = -1;
+
+    // Board sizes the game accepts, from -Dsnake.board or a replay header.
+    // Every cell costs a few dozen bytes across the state, free-cell index, snake rings and AI path; 2048x2048 takes about 180 MB
+    static final int MIN_BOARD_SIZE = 8;
+    static final long MAX_BOARD_CELLS = 2048L * 2048;
+
+    final int cols;
+    final int rows;
+
+    int level = 1;
+    Status status = Status.RUNNING;
+    long tick = 0;
+    long elapsedMs = 0;
+    int tickMs = 100; // simulated milliseconds per tick on this level
+    long levelTimeLimit = 0;
+    boolean timeUp = false;
+    Cause cause = Cause.NONE;
+
+    // Player snake, head first
+    final SnakeBody snake;
+    // For each player segment, the direction ('U', 'D', 'L', 'R') of the segment behind it,
+    // so the view can interpolate any visible segment without walking the body
+    final byte[] trail;
+    char direction = 'R';
+    int score = 0;
+
+    // Food
+    int food = NO_CELL;
+    String foodType = "apple"; // "apple" or "multiplier"
+    boolean appleVisible = true;
+
+    // Score multiplier
+    boolean scoreMultiplierActive = false;
+
+    // Bomb (levels 4 and 5)
+    int bomb = NO_CELL;
+    boolean bombVisible = false;
+
+    // AI snake (level 5), head first
+    final SnakeBody aiSnake;
+    char aiDirection = 'L';
+    boolean aiSnakeActive = false;
+    int aiScore = 0;
+
+    // Simulated time of the AI snake's next move
+    long aiMoveAtMs = 0;
+
+    // All timed events, one wheel slot per tick (ids are GameEngine.TIMER_*)
+    final TimingWheel timers = new TimingWheel(GameEngine.TIMER_COUNT, 256);
+
+    // Cells not covered by any snake, the food or the bomb
+    final FreeCellIndex freeCells;
+
+    // Cells to redraw; filled by the engine, cleared by whoever paints
+    final DirtyCells dirty = new DirtyCells();
+
+    // GameEngine.EVENT_* flags raised during the last step
+    int events = 0;
+
+    public GameState(int cols, int rows) {
+        this.cols = cols;
+        this.rows = rows;
+        this.snake = new SnakeBody(cols * rows);
+        this.trail = new byte[cols * rows];
+        this.aiSnake = new SnakeBody(cols * rows);
+        this.freeCells = new FreeCellIndex(cols * rows);
+    }
+
+    public int cell(int x, int y) {
+        return y * cols + x;
+    }
+
+    public int cellX(int cell) {
+        return cell % cols;
+    }
+
+    public int cellY(int cell) {
+        return cell / cols;
+    }
+
+    public int getCols() { return cols; }
+    public int getRows() { return rows; }
+    public int getLevel() { return level; }
+    public Status getStatus() { return status; }
+    public Cause getCause() { return cause; }
+    public boolean isRunning() { return status == Status.RUNNING; }
+    public long getTick() { return tick; }
+    public long getElapsedMs() { return elapsedMs; }
+    public int getScore() { return score; }
+    public int getAiScore() { return aiScore; }
+    public int getEvents() { return events; }
+
+    /** Time left on the score multiplier, rounded to whole ticks. */
+    public long getMultiplierRemainingMs() {
+        return timers.remainingTicks(GameEngine.TIMER_MULTIPLIER_END) * tickMs;
+    }
+
+    public long getRemainingTimeMs() {
+        return levelTimeLimit > 0 ? Math.max(0, levelTimeLimit - elapsedMs) : 0;
+    }
+}
@@ -0,0 +1,161 @@
+import javax.swing.JComponent;
+import javax.swing.UIManager;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+
+/**
+ * The strip above the board: level (with the level 1 clock), player score,
+ * AI score, high score and the multiplier countdown. Each field keeps the
+ * value it last showed and its text pre-rendered into an image; setting an
+ * unchanged value is a single comparison, and a changed one re-renders only
+ * that field and repaints only its rectangle. The component has a fixed
+ * size and no children, so nothing here ever triggers a layout pass.
+ *
+ * Must be used on the EDT, like any Swing component.
+ */
+public class Hud extends JComponent {
+    /** Value for fields that should not be shown. */
+    public static final int HIDDEN = -1;
+
+    private static final int HEIGHT = 32;
+    private static final String[] LEVEL_NAMES = {"", "", "Grass", "Ocean", "Forest", "Space"};
+
+    private final Field level;
+    private final Field score;
+    private final Field aiScore;
+    private final Field highScore;
+    private final Field multiplier;
+    private final Field[] fields;
+
+    private final int width;
+
+    public Hud(int width) {
+        this.width = width;
+        Color text = UIManager.getColor("Label.foreground");
+        if (text == null) text = Color.BLACK;
+        level = new Field(new Font("Arial", Font.BOLD, 14), text, 10, false);
+        score = new Field(new Font("Arial", Font.BOLD, 16), text, width * 43 / 100, true);
+        aiScore = new Field(new Font("Arial", Font.BOLD, 16), text, width * 59 / 100, true);
+        highScore = new Field(new Font("Arial", Font.BOLD, 14), text, width * 70 / 100, false);
+        multiplier = new Field(new Font("Arial", Font.BOLD, 12), new Color(0, 255, 127), width * 86 / 100, false);
+        fields = new Field[] {level, score, aiScore, highScore, multiplier};
+        setOpaque(true);
+        Color background = UIManager.getColor("Panel.background");
+        setBackground(background != null ? background : Color.LIGHT_GRAY);
+    }
+
+    /**
+     * Level number ({@link #HIDDEN} for none) and, on the timed level, whole
+     * seconds left; pass a negative time for untimed levels.
+     */
+    public void setLevel(int levelNumber, long remainingSeconds) {
+        long key = levelNumber == HIDDEN ? HIDDEN : levelNumber * 100_000L + Math.max(remainingSeconds, -1) + 1;
+        if (key == level.key) return;
+        String text = null;
+        if (levelNumber != HIDDEN) {
+            text = "Level " + levelNumber;
+            if (remainingSeconds >= 0) {
+                text += "  •  Time " + twoDigits(remainingSeconds / 60) + ":" + twoDigits(remainingSeconds % 60);
+            } else if (levelNumber < LEVEL_NAMES.length && !LEVEL_NAMES[levelNumber].isEmpty()) {
+                text += "  •  " + LEVEL_NAMES[levelNumber];
+            }
+        }
+        update(level, key, text);
+    }
+
+    public void setScore(int value) {
+        if (value != score.key) update(score, value, value == HIDDEN ? null : "You: " + value);
+    }
+
+    public void setAiScore(int value) {
+        if (value != aiScore.key) update(aiScore, value, value == HIDDEN ? null : "AI: " + value);
+    }
+
+    public void setHighScore(int value) {
+        if (value != highScore.key) update(highScore, value, value == HIDDEN ? null : "High: " + value);
+    }
+
+    /** Seconds left on the score multiplier, or {@link #HIDDEN} while it is off. */
+    public void setMultiplierSeconds(long seconds) {
+        if (seconds != multiplier.key) update(multiplier, seconds, seconds == HIDDEN ? null : "2x: " + seconds + "s");
+    }
+
+    private static String twoDigits(long n) {
+        return n < 10 ? "0" + n : String.valueOf(n);
+    }
+
+    /** Re-renders {@code field} with {@code text} (null hides it) and repaints the area it covered and covers now. */
+    private void update(Field field, long key, String text) {
+        field.key = key;
+        Rectangle before = field.bounds;
+        field.render(text);
+        if (before != null) repaint(before);
+        if (field.bounds != null) repaint(field.bounds);
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        return new Dimension(width, HEIGHT);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Rectangle clip = g.getClipBounds();
+        g.setColor(getBackground());
+        if (clip != null) {
+            g.fillRect(clip.x, clip.y, clip.width, clip.height);
+        } else {
+            g.fillRect(0, 0, getWidth(), getHeight());
+        }
+        for (Field field : fields) {
+            if (field.image != null && (clip == null || clip.intersects(field.bounds))) {
+                g.drawImage(field.image, field.bounds.x, field.bounds.y, null);
+            }
+        }
+    }
+
+    /** One text slot: its style, anchor, last value and last rendering. */
+    private final class Field {
+        final Font font;
+        final Color color;
+        final int anchorX;
+        final boolean centred;
+        long key = Long.MIN_VALUE;
+        BufferedImage image;
+        Rectangle bounds;
+
+        Field(Font font, Color color, int anchorX, boolean centred) {
+            this.font = font;
+            this.color = color;
+            this.anchorX = anchorX;
+            this.centred = centred;
+        }
+
+        void render(String text) {
+            if (text == null || text.isEmpty()) {
+                image = null;
+                bounds = null;
+                return;
+            }
+            FontMetrics fm = getFontMetrics(font);
+            int w = fm.stringWidth(text) + 2;
+            int h = fm.getHeight();
+            image = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = image.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.setFont(font);
+            g.setColor(color);
+            g.drawString(text, 1, fm.getAscent());
+            g.dispose();
+            int x = centred ? anchorX - w / 2 : anchorX;
+            bounds = new Rectangle(x, (HEIGHT - h) / 2, w, h);
+        }
+    }
+}
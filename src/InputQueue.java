@@ -0,0 +1,78 @@
+/**
+ * Small bounded queue of direction key presses, filled by the key listener
+ * on the EDT and drained by the game tick one turn at a time. Each press is
+ * timestamped with {@link System#nanoTime()} when it arrives.
+ *
+ * Validation happens when a turn is taken, against the direction the snake
+ * is actually moving: presses that repeat it or would reverse onto the body
+ * are dropped, so a quick Up-then-Left while moving right turns twice over
+ * two ticks instead of losing the Up or reversing.
+ */
+public class InputQueue {
+    public static final int DEFAULT_CAPACITY = 3;
+
+    // Presses older than this (e.g. queued behind a dialog) are discarded
+    private static final long MAX_AGE_NANOS = 500_000_000L;
+
+    private final char[] directions;
+    private final long[] timestamps;
+    private int head = 0;
+    private int size = 0;
+    private long lastLatencyNanos = 0;
+
+    public InputQueue() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public InputQueue(int capacity) {
+        directions = new char[capacity];
+        timestamps = new long[capacity];
+    }
+
+    /** Queues a press; returns false (and drops it) when the queue is full. */
+    public synchronized boolean offer(char direction, long nanoTime) {
+        if (size == directions.length) {
+            return false;
+        }
+        int idx = (head + size) % directions.length;
+        directions[idx] = direction;
+        timestamps[idx] = nanoTime;
+        size++;
+        return true;
+    }
+
+    /**
+     * Removes presses until one is a legal turn from {@code current} and
+     * returns it, or returns 0 if none is queued.
+     */
+    public synchronized char poll(char current, long nowNanos) {
+        while (size > 0) {
+            char dir = directions[head];
+            long when = timestamps[head];
+            head = (head + 1) % directions.length;
+            size--;
+            if (nowNanos - when > MAX_AGE_NANOS) {
+                continue;
+            }
+            if (dir != current && dir != GameEngine.getOppositeDirection(current)) {
+                lastLatencyNanos = nowNanos - when;
+                return dir;
+            }
+        }
+        return 0;
+    }
+
+    public synchronized void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /** Time between arrival and application of the most recently applied turn. */
+    public synchronized long getLastLatencyNanos() {
+        return lastLatencyNanos;
+    }
+}
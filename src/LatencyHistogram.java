@@ -0,0 +1,96 @@
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Fixed-size latency histogram in the style of HdrHistogram: values below
+ * {@code 2^SUB_BITS} nanoseconds are counted exactly, larger ones in
+ * {@code 2^SUB_BITS} linear sub-buckets per power of two, so every recorded
+ * value is kept to within about 1.6% from a nanosecond up to centuries.
+ * Recording is a couple of shifts and an array increment; nothing is
+ * allocated after construction.
+ *
+ * Meant for one writing thread. Readers on other threads (the overlay, the
+ * exit summary) may see a sample or two out of date, which is fine for
+ * display.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 6;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+
+    private final long[] counts = new long[(64 - SUB_BITS) * SUB_COUNT];
+    private long total = 0;
+    private long max = 0;
+    private long sum = 0;
+
+    /** Counts one sample of {@code nanos}; negative values count as 0. */
+    public void record(long nanos) {
+        long v = Math.max(nanos, 0);
+        counts[index(v)]++;
+        total++;
+        sum += v;
+        if (v > max) max = v;
+    }
+
+    public void reset() {
+        Arrays.fill(counts, 0);
+        total = 0;
+        max = 0;
+        sum = 0;
+    }
+
+    /** Adds every sample of {@code other} to this histogram. */
+    public void merge(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+        sum += other.sum;
+        max = Math.max(max, other.max);
+    }
+
+    public long getCount() {
+        return total;
+    }
+
+    public long getMaxNanos() {
+        return max;
+    }
+
+    public double getMeanNanos() {
+        return total == 0 ? 0 : (double) sum / total;
+    }
+
+    /** Smallest recorded value (to bucket precision) that {@code p} (0..1) of the samples do not exceed. */
+    public long percentileNanos(double p) {
+        long n = total;
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(p * n));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) return Math.min(highestEquivalent(i), max);
+        }
+        return max;
+    }
+
+    /** "n=…, p50/p90/p99/p99.9/max" in milliseconds. */
+    public String summary() {
+        return String.format(Locale.ROOT, "n=%d mean=%.3fms p50=%.3fms p90=%.3fms p99=%.3fms p99.9=%.3fms max=%.3fms",
+            total, getMeanNanos() / 1e6, percentileNanos(0.5) / 1e6, percentileNanos(0.9) / 1e6,
+            percentileNanos(0.99) / 1e6, percentileNanos(0.999) / 1e6, max / 1e6);
+    }
+
+    private static int index(long v) {
+        if (v < SUB_COUNT) return (int) v;
+        int shift = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS;
+        return shift * SUB_COUNT + (int) (v >>> shift); // v >>> shift is in [SUB_COUNT, 2 * SUB_COUNT)
+    }
+
+    /** Largest value that lands in bucket {@code i}. */
+    private static long highestEquivalent(int i) {
+        if (i < SUB_COUNT) return i;
+        int shift = i / SUB_COUNT - 1;
+        long mantissa = i - (long) shift * SUB_COUNT;
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
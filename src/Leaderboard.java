@@ -0,0 +1,228 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Every finished game, appended as a fixed-width record to a memory-mapped
+ * file, with the top {@link #TOP} of each level kept in an index in the
+ * file's header. Opening maps the file and reads the header only, so the
+ * menu can show each level's top scores at once however many games have
+ * been recorded; the records themselves are paged in only when a top
+ * entry is read.
+ *
+ * Layout: a {@value #HEADER_SIZE}-byte header holding "SNKL", the
+ * version, the record count, how many records the index covers, and per
+ * level the entry count and up to {@link #TOP} (score, record number)
+ * pairs, best first; then {@value #RECORD_SIZE}-byte records of level,
+ * status ordinal, two spare bytes, score, AI score, duration in ms, seed
+ * and end time (epoch ms), all big endian. The file grows by doubling and
+ * the count says how much of it is used.
+ *
+ * A record is written before the count that includes it, and the index is
+ * marked current only after it has been updated, so if the process dies
+ * mid-append the next open either ignores the partial record or rebuilds
+ * the index with one scan of the records. Writes go to the page cache;
+ * they survive the game crashing but not the machine losing power before
+ * the OS flushes them. One game instance at a time holds the file.
+ */
+public class Leaderboard implements Closeable {
+    public static final int TOP = 100;
+    public static final int LEVELS = 5;
+
+    static final int RECORD_SIZE = 32;
+    static final int HEADER_SIZE = 4096;
+
+    private static final int MAGIC = 0x534E4B4C; // "SNKL"
+    private static final int VERSION = 1;
+    private static final int COUNT_AT = 8;
+    private static final int INDEXED_AT = 16;
+    private static final int TABLES_AT = 24;
+    private static final int TABLE_SIZE = 4 + TOP * 8;
+    private static final int INITIAL_RECORDS = 1 << 15; // 1 MiB of records
+    private static final int MAX_RECORDS = (Integer.MAX_VALUE - HEADER_SIZE) / RECORD_SIZE;
+
+    /** One finished game. */
+    public static final class Entry {
+        public final int level;
+        public final GameState.Status status;
+        public final int score;
+        public final int aiScore;
+        public final int durationMs;
+        public final long seed;
+        public final long timestamp;
+
+        public Entry(int level, GameState.Status status, int score, int aiScore, int durationMs, long seed, long timestamp) {
+            this.level = level;
+            this.status = status;
+            this.score = score;
+            this.aiScore = aiScore;
+            this.durationMs = durationMs;
+            this.seed = seed;
+            this.timestamp = timestamp;
+        }
+    }
+
+    private final FileChannel channel;
+    private final FileLock lock;
+    private MappedByteBuffer map;
+    private int count;
+
+    private Leaderboard(FileChannel channel, FileLock lock) throws IOException {
+        this.channel = channel;
+        this.lock = lock;
+        long size = channel.size();
+        boolean fresh = size < HEADER_SIZE;
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+            Math.min(Integer.MAX_VALUE, Math.max(size, HEADER_SIZE + (long) INITIAL_RECORDS * RECORD_SIZE)));
+        if (fresh) {
+            map.putInt(0, MAGIC);
+            map.putInt(4, VERSION);
+            map.putLong(COUNT_AT, 0);
+            clearIndex();
+            map.putLong(INDEXED_AT, 0);
+        } else if (map.getInt(0) != MAGIC || map.getInt(4) != VERSION) {
+            throw new IOException("Not a leaderboard file (version " + VERSION + ")");
+        }
+        count = (int) Math.max(0, Math.min(map.getLong(COUNT_AT), (map.capacity() - HEADER_SIZE) / RECORD_SIZE));
+        if (map.getLong(INDEXED_AT) != count) {
+            rebuildIndex();
+        }
+    }
+
+    /**
+     * Opens (or creates) the leaderboard in {@code file}. Fails if another
+     * game instance has it open or the file is not a leaderboard.
+     */
+    public static Leaderboard open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            FileLock lock = channel.tryLock();
+            if (lock == null) throw new IOException(file + " is in use by another instance");
+            return new Leaderboard(channel, lock);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /** Number of games recorded. */
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * Appends {@code entry} and returns its rank on its level (1 is best),
+     * or 0 when it did not make the top {@link #TOP}.
+     */
+    public synchronized int record(Entry entry) throws IOException {
+        if (count == MAX_RECORDS) throw new IOException("Leaderboard is full");
+        int at = recordAt(count);
+        if (at + RECORD_SIZE > map.capacity()) {
+            grow();
+        }
+        map.put(at, (byte) entry.level);
+        map.put(at + 1, (byte) entry.status.ordinal());
+        map.putShort(at + 2, (short) 0);
+        map.putInt(at + 4, entry.score);
+        map.putInt(at + 8, entry.aiScore);
+        map.putInt(at + 12, entry.durationMs);
+        map.putLong(at + 16, entry.seed);
+        map.putLong(at + 24, entry.timestamp);
+        int record = count++;
+        map.putLong(COUNT_AT, count);
+        int rank = index(entry.level, entry.score, record);
+        map.putLong(INDEXED_AT, count);
+        return rank;
+    }
+
+    /** The best {@code limit} (at most {@link #TOP}) games on {@code level}, best first; ties keep the earlier game first. */
+    public synchronized List<Entry> top(int level, int limit) {
+        List<Entry> top = new ArrayList<>();
+        if (level < 1 || level > LEVELS) return top;
+        int table = tableAt(level);
+        int n = Math.min(limit, map.getInt(table));
+        for (int i = 0; i < n; i++) {
+            top.add(read(map.getInt(entryAt(table, i) + 4)));
+        }
+        return top;
+    }
+
+    /** Writes the mapped pages out and releases the file. */
+    @Override
+    public synchronized void close() throws IOException {
+        map.force();
+        lock.release();
+        channel.close();
+    }
+
+    private Entry read(int record) {
+        int at = recordAt(record);
+        GameState.Status[] statuses = GameState.Status.values();
+        int status = map.get(at + 1);
+        return new Entry(map.get(at), status >= 0 && status < statuses.length ? statuses[status] : GameState.Status.GAME_OVER,
+            map.getInt(at + 4), map.getInt(at + 8), map.getInt(at + 12), map.getLong(at + 16), map.getLong(at + 24));
+    }
+
+    /**
+     * Puts (score, record) into the level's table if it belongs there and
+     * returns its rank, 0 if not. Scanning from the worst entry makes the
+     * usual case, a score below a full table, a single comparison.
+     */
+    private int index(int level, int score, int record) {
+        if (level < 1 || level > LEVELS) return 0;
+        int table = tableAt(level);
+        int n = map.getInt(table);
+        int pos = n;
+        while (pos > 0 && map.getInt(entryAt(table, pos - 1)) < score) {
+            pos--;
+        }
+        if (pos == TOP) return 0;
+        for (int i = Math.min(n, TOP - 1); i > pos; i--) {
+            map.putLong(entryAt(table, i), map.getLong(entryAt(table, i - 1)));
+        }
+        map.putInt(entryAt(table, pos), score);
+        map.putInt(entryAt(table, pos) + 4, record);
+        if (n < TOP) map.putInt(table, n + 1);
+        return pos + 1;
+    }
+
+    /** After a crash mid-append: rebuilds every level's table from the records. */
+    private void rebuildIndex() {
+        clearIndex();
+        for (int r = 0; r < count; r++) {
+            int at = recordAt(r);
+            index(map.get(at), map.getInt(at + 4), r);
+        }
+        map.putLong(COUNT_AT, count);
+        map.putLong(INDEXED_AT, count);
+    }
+
+    private void clearIndex() {
+        for (int level = 1; level <= LEVELS; level++) {
+            map.putInt(tableAt(level), 0);
+        }
+    }
+
+    private void grow() throws IOException {
+        long capacity = Math.min((long) HEADER_SIZE + (long) MAX_RECORDS * RECORD_SIZE, 2L * map.capacity());
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    private static int recordAt(int record) {
+        return HEADER_SIZE + record * RECORD_SIZE;
+    }
+
+    private static int tableAt(int level) {
+        return TABLES_AT + (level - 1) * TABLE_SIZE;
+    }
+
+    private static int entryAt(int table, int i) {
+        return table + 4 + i * 8;
+    }
+}
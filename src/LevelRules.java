@@ -0,0 +1,107 @@
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * The tunable numbers behind the five levels: win score, level 1 time
+ * limit, tick delay per level, item timers, multiplier odds and the AI
+ * cadence. A fresh instance holds the values the game ships with; the
+ * balance runner copies and changes them to try out other settings.
+ *
+ * Parameters can also be set by name ({@link #set(String, String)}), which
+ * is how command-line sweeps address them; {@link #NAMES} lists them.
+ */
+public class LevelRules {
+    public static final String[] NAMES = {
+        "winScore", "level1TimeMs", "delay1", "delay2", "delay3", "delay4", "delay5",
+        "appleVisibleMs", "bombVisibleMs", "respawnMs", "multiplierMs", "multiplierChance", "aiMoveMs"
+    };
+
+    int winScore = GameEngine.WIN_SCORE;
+    long level1TimeLimitMs = GameEngine.LEVEL1_TIME_LIMIT;
+    final int[] delays = new int[5];
+    long appleVisibleMs = GameEngine.APPLE_VISIBLE_MS;
+    long bombVisibleMs = GameEngine.BOMB_VISIBLE_MS;
+    long respawnDelayMs = GameEngine.RESPAWN_DELAY_MS;
+    long multiplierDurationMs = GameEngine.MULTIPLIER_DURATION_MS;
+    double multiplierChance = GameEngine.MULTIPLIER_CHANCE;
+    long aiMoveDelayMs = GameEngine.AI_MOVE_DELAY_MS;
+
+    public LevelRules() {
+        for (int level = 1; level <= delays.length; level++) {
+            delays[level - 1] = GameEngine.getGameDelay(level);
+        }
+    }
+
+    public LevelRules copy() {
+        LevelRules r = new LevelRules();
+        r.winScore = winScore;
+        r.level1TimeLimitMs = level1TimeLimitMs;
+        System.arraycopy(delays, 0, r.delays, 0, delays.length);
+        r.appleVisibleMs = appleVisibleMs;
+        r.bombVisibleMs = bombVisibleMs;
+        r.respawnDelayMs = respawnDelayMs;
+        r.multiplierDurationMs = multiplierDurationMs;
+        r.multiplierChance = multiplierChance;
+        r.aiMoveDelayMs = aiMoveDelayMs;
+        return r;
+    }
+
+    public int getWinScore() {
+        return winScore;
+    }
+
+    public int getGameDelay(int level) {
+        return level >= 1 && level <= delays.length ? delays[level - 1] : GameEngine.getGameDelay(level);
+    }
+
+    public long getLevelTimeLimit(int level) {
+        return level == 1 ? level1TimeLimitMs : 0; // Only level 1 is timed
+    }
+
+    /** Number of ticks on {@code level} needed to cover {@code ms}, rounded up. */
+    public long msToTicks(long ms, int level) {
+        long delay = getGameDelay(level);
+        return (ms + delay - 1) / delay;
+    }
+
+    /** Sets the parameter called {@code name} (one of {@link #NAMES}); returns this. */
+    public LevelRules set(String name, String value) {
+        switch (name) {
+            case "winScore": winScore = Integer.parseInt(value); break;
+            case "level1TimeMs": level1TimeLimitMs = Long.parseLong(value); break;
+            case "delay1": case "delay2": case "delay3": case "delay4": case "delay5":
+                int delay = Integer.parseInt(value);
+                if (delay <= 0) throw new IllegalArgumentException(name + " must be positive");
+                delays[name.charAt(5) - '1'] = delay;
+                break;
+            case "appleVisibleMs": appleVisibleMs = Long.parseLong(value); break;
+            case "bombVisibleMs": bombVisibleMs = Long.parseLong(value); break;
+            case "respawnMs": respawnDelayMs = Long.parseLong(value); break;
+            case "multiplierMs": multiplierDurationMs = Long.parseLong(value); break;
+            case "multiplierChance": multiplierChance = Double.parseDouble(value); break;
+            case "aiMoveMs":
+                aiMoveDelayMs = Long.parseLong(value);
+                if (aiMoveDelayMs <= 0) throw new IllegalArgumentException(name + " must be positive");
+                break;
+            default: throw new IllegalArgumentException("Unknown rule '" + name + "', expected one of " + Arrays.toString(NAMES));
+        }
+        return this;
+    }
+
+    /** Current value of the parameter called {@code name}, formatted as {@link #set} accepts it. */
+    public String get(String name) {
+        switch (name) {
+            case "winScore": return String.valueOf(winScore);
+            case "level1TimeMs": return String.valueOf(level1TimeLimitMs);
+            case "delay1": case "delay2": case "delay3": case "delay4": case "delay5":
+                return String.valueOf(delays[name.charAt(5) - '1']);
+            case "appleVisibleMs": return String.valueOf(appleVisibleMs);
+            case "bombVisibleMs": return String.valueOf(bombVisibleMs);
+            case "respawnMs": return String.valueOf(respawnDelayMs);
+            case "multiplierMs": return String.valueOf(multiplierDurationMs);
+            case "multiplierChance": return String.format(Locale.ROOT, "%s", multiplierChance);
+            case "aiMoveMs": return String.valueOf(aiMoveDelayMs);
+            default: throw new IllegalArgumentException("Unknown rule '" + name + "', expected one of " + Arrays.toString(NAMES));
+        }
+    }
+}
@@ -0,0 +1,423 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Client side of {@link GameServer}. After the welcome and the board
+ * snapshot it keeps a mirror of the server's arena by applying each delta
+ * the way {@link ArenaEngine} resolves a step: tails of snakes not about to
+ * eat are dropped, the dead are removed, the rest move in (eating apples
+ * where they land), then spawns and new apples are placed. Every
+ * {@link NetProtocol#CHECK_INTERVAL} ticks the mirror is compared against
+ * the server's checksum.
+ *
+ * One thread ({@code net-client}) waits on a selector, applies deltas
+ * while holding this object's lock and writes queued turns; readers of the
+ * mirror (the game panel) take the same lock, and {@link #sendTurn} only
+ * queues, so neither ever waits on the socket.
+ *
+ * Usage (loopback load test): java -cp bin NetClient [-connect host:port]
+ *        [-clients n] [-seconds n]
+ */
+public class NetClient implements Closeable {
+    /** Called on the reader thread. */
+    public interface Listener {
+        void ticked(NetClient client);
+
+        void disconnected(NetClient client, String reason);
+    }
+
+    // Length, type and direction
+    private static final int TURN_FRAME = 3;
+
+    private final SocketChannel channel;
+    private ByteBuffer in = ByteBuffer.allocate(64 * 1024); // write mode between reads
+    // TURN frames not written yet, guarded by itself; the server queues no more than this either
+    private final ByteBuffer outgoing = ByteBuffer.allocate(InputQueue.DEFAULT_CAPACITY * TURN_FRAME);
+    private Selector selector;
+    private SelectionKey key;
+    private Thread reader;
+    private volatile boolean closed = false;
+
+    // Mirror of the server's arena; set up by the welcome, guarded by this
+    private int agent;
+    private int cols;
+    private int rows;
+    private int tickMs;
+    private int[] grid;
+    private SnakeBody[] bodies;
+    private char[] directions;
+    private boolean[] alive;
+    private int[] scores;
+    private long tick = -1;
+    private int[] newHeads;
+    private char[] moves;
+
+    // Traffic and consistency
+    private long bytesReceived = 0;
+    private long handshakeBytes = 0;
+    private long readyAt = 0;
+    private long lastDeltaAt = 0;
+    private int checksums = 0;
+    private int checksumMismatches = 0;
+    private final LatencyHistogram deltaGaps = new LatencyHistogram();
+
+    private NetClient(SocketChannel channel) {
+        this.channel = channel;
+    }
+
+    /** Connects and waits for the welcome and the snapshot. */
+    public static NetClient connect(String host, int port) throws IOException {
+        SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port));
+        NetClient client = new NetClient(channel);
+        try {
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            while (client.tick < 0) {
+                client.receive();
+            }
+            client.handshakeBytes = client.bytesReceived;
+            client.readyAt = System.nanoTime();
+            channel.configureBlocking(false);
+            client.selector = Selector.open();
+            client.key = channel.register(client.selector, SelectionKey.OP_READ);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            if (client.selector != null) client.selector.close();
+            throw e;
+        }
+        return client;
+    }
+
+    /** Starts applying deltas and sending turns on a network thread, telling {@code listener} after each delta. */
+    public void start(Listener listener) {
+        reader = new Thread(() -> {
+            String reason = "Connection closed by server";
+            try {
+                while (!closed) {
+                    selector.select();
+                    selector.selectedKeys().clear();
+                    writeTurns();
+                    if (receive()) listener.ticked(this);
+                }
+            } catch (IOException | RuntimeException e) {
+                reason = e.getMessage() != null ? e.getMessage() : e.toString();
+            }
+            if (!closed) {
+                close();
+                listener.disconnected(this, reason);
+            }
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+            }
+        }, "net-client");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Asks the server to turn this player's snake on its next tick. Only
+     * queues the turn for the network thread, so it never blocks; turns
+     * beyond what the server would queue are dropped.
+     */
+    public void sendTurn(char direction) {
+        synchronized (outgoing) {
+            if (outgoing.remaining() < TURN_FRAME) return;
+            outgoing.put((byte) 2).put(NetProtocol.TURN).put((byte) NetProtocol.directionCode(direction));
+        }
+        selector.wakeup();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+        selector.wakeup();
+    }
+
+    public synchronized int getAgent() { return agent; }
+    public synchronized int getCols() { return cols; }
+    public synchronized int getRows() { return rows; }
+    public synchronized int getTickMs() { return tickMs; }
+    public synchronized int getAgentCount() { return alive.length; }
+    public synchronized long getTick() { return tick; }
+    public synchronized boolean isAlive(int a) { return alive[a]; }
+    public synchronized SnakeBody getBody(int a) { return bodies[a]; }
+    public synchronized char getDirection(int a) { return directions[a]; }
+    public synchronized int getScore(int a) { return scores[a]; }
+
+    /** An agent id, {@link ArenaEngine#EMPTY} or {@link ArenaEngine#APPLE}. */
+    public synchronized int ownerAt(int cell) {
+        return grid[cell];
+    }
+
+    public synchronized int getChecksumMismatches() {
+        return checksumMismatches;
+    }
+
+    /**
+     * Writes as many queued turns as the socket takes without waiting; the
+     * rest go once the selector reports it writable.
+     */
+    private void writeTurns() throws IOException {
+        synchronized (outgoing) {
+            outgoing.flip();
+            channel.write(outgoing);
+            outgoing.compact();
+            key.interestOps(outgoing.position() > 0 ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+        }
+    }
+
+    /**
+     * Reads what the socket has and handles every whole frame in it;
+     * returns true if a delta was applied.
+     */
+    private boolean receive() throws IOException {
+        int n = channel.read(in);
+        if (n < 0) throw new IOException("Connection closed by server");
+        boolean ticked = false;
+        synchronized (this) {
+            bytesReceived += n;
+            in.flip();
+            ByteBuffer frame;
+            while ((frame = NetProtocol.nextFrame(in)) != null) {
+                ticked |= handle(frame);
+            }
+            in.compact();
+        }
+        if (!in.hasRemaining()) {
+            // A frame larger than the buffer (a big snapshot); nextFrame has already checked it against MAX_FRAME
+            ByteBuffer bigger = ByteBuffer.allocate(Math.min(in.capacity() * 2, NetProtocol.MAX_FRAME + 8));
+            if (bigger.capacity() == in.capacity()) throw new IOException("Frame too large");
+            in.flip();
+            bigger.put(in);
+            in = bigger;
+        }
+        return ticked;
+    }
+
+    private boolean handle(ByteBuffer frame) throws IOException {
+        byte type = frame.get();
+        switch (type) {
+            case NetProtocol.WELCOME:
+                welcome(frame);
+                return false;
+            case NetProtocol.SNAPSHOT:
+                snapshot(frame);
+                return false;
+            case NetProtocol.DELTA:
+                if (tick < 0) throw new IOException("Delta before snapshot");
+                delta(frame);
+                return true;
+            default:
+                throw new IOException("Unknown message type " + type);
+        }
+    }
+
+    private void welcome(ByteBuffer p) throws IOException {
+        if (p.getInt() != NetProtocol.MAGIC) throw new IOException("Not a snake server");
+        int version = NetProtocol.getVarintInt(p);
+        if (version != NetProtocol.VERSION) throw new IOException("Server speaks protocol " + version + ", not " + NetProtocol.VERSION);
+        agent = NetProtocol.getVarintInt(p);
+        cols = NetProtocol.getVarintInt(p);
+        rows = NetProtocol.getVarintInt(p);
+        tickMs = NetProtocol.getVarintInt(p);
+        int agents = NetProtocol.getVarintInt(p);
+        int cells = cols * rows;
+        grid = new int[cells];
+        bodies = new SnakeBody[agents];
+        for (int i = 0; i < agents; i++) {
+            bodies[i] = new SnakeBody(cells);
+        }
+        directions = new char[agents];
+        alive = new boolean[agents];
+        scores = new int[agents];
+        newHeads = new int[agents];
+        moves = new char[agents];
+    }
+
+    private void snapshot(ByteBuffer p) {
+        java.util.Arrays.fill(grid, ArenaEngine.EMPTY);
+        tick = NetProtocol.getVarint(p);
+        for (int a = 0; a < bodies.length; a++) {
+            scores[a] = NetProtocol.getVarintInt(p);
+            int size = NetProtocol.getVarintInt(p);
+            SnakeBody body = bodies[a];
+            body.clear();
+            alive[a] = size > 0;
+            if (size == 0) continue;
+            int cell = NetProtocol.getVarintInt(p);
+            body.addTail(cell);
+            grid[cell] = a;
+            NetProtocol.CodeReader steps = new NetProtocol.CodeReader(p);
+            char heading = 'R';
+            for (int s = 1; s < size; s++) {
+                int code = steps.get();
+                // The snake last moved away from the segment behind its head
+                if (s == 1) heading = GameEngine.getOppositeDirection(NetProtocol.direction(code));
+                cell = NetProtocol.neighbor(cell, code, cols, rows);
+                body.addTail(cell);
+                grid[cell] = a;
+            }
+            directions[a] = heading;
+        }
+        int apples = NetProtocol.getVarintInt(p);
+        for (int i = 0; i < apples; i++) {
+            grid[NetProtocol.getVarintInt(p)] = ArenaEngine.APPLE;
+        }
+    }
+
+    private void delta(ByteBuffer p) {
+        long now = System.nanoTime();
+        if (lastDeltaAt != 0) deltaGaps.record(now - lastDeltaAt);
+        lastDeltaAt = now;
+
+        tick = NetProtocol.getVarint(p);
+        int agents = bodies.length;
+        NetProtocol.CodeReader codes = new NetProtocol.CodeReader(p);
+        for (int a = 0; a < agents; a++) {
+            if (!alive[a]) continue;
+            int code = codes.get();
+            moves[a] = NetProtocol.direction(code);
+            newHeads[a] = NetProtocol.neighbor(bodies[a].head(), code, cols, rows);
+        }
+        // As in ArenaEngine.resolve(): tails first, then deaths, then survivors move in
+        for (int a = 0; a < agents; a++) {
+            if (alive[a] && grid[newHeads[a]] != ArenaEngine.APPLE) {
+                grid[bodies[a].popTail()] = ArenaEngine.EMPTY;
+            }
+        }
+        int died = NetProtocol.getVarintInt(p);
+        for (int i = 0; i < died; i++) {
+            kill(NetProtocol.getVarintInt(p));
+        }
+        for (int a = 0; a < agents; a++) {
+            if (!alive[a]) continue;
+            int next = newHeads[a];
+            if (grid[next] == ArenaEngine.APPLE) scores[a] += 10;
+            bodies[a].pushHead(next);
+            grid[next] = a;
+            directions[a] = moves[a];
+        }
+        int spawned = NetProtocol.getVarintInt(p);
+        for (int i = 0; i < spawned; i++) {
+            int a = NetProtocol.getVarintInt(p);
+            int cell = NetProtocol.getVarintInt(p);
+            for (int s = 0; s < ArenaEngine.START_LENGTH; s++) {
+                bodies[a].addTail(cell);
+                grid[cell] = a;
+                cell = NetProtocol.neighbor(cell, NetProtocol.directionCode('L'), cols, rows);
+            }
+            directions[a] = 'R';
+            alive[a] = true;
+        }
+        int apples = NetProtocol.getVarintInt(p);
+        for (int i = 0; i < apples; i++) {
+            grid[NetProtocol.getVarintInt(p)] = ArenaEngine.APPLE;
+        }
+        if (tick % NetProtocol.CHECK_INTERVAL == 0) {
+            checksums++;
+            if (p.getInt() != NetProtocol.checksum(grid, scores)) checksumMismatches++;
+        }
+    }
+
+    private void kill(int a) {
+        SnakeBody body = bodies[a];
+        for (int i = 0; i < body.size(); i++) {
+            int cell = body.get(i);
+            if (grid[cell] == a) grid[cell] = ArenaEngine.EMPTY;
+        }
+        body.clear();
+        alive[a] = false;
+    }
+
+    /** Loopback load test: many headless clients turning at random, then traffic and consistency per client. */
+    public static void main(String[] args) throws Exception {
+        String host = "localhost";
+        int port = GameServer.DEFAULT_PORT;
+        int count = 64;
+        int seconds = 30;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-connect": {
+                        String[] address = args[++i].split(":");
+                        host = address[0];
+                        if (address.length > 1) port = Integer.parseInt(address[1]);
+                        break;
+                    }
+                    case "-clients": count = Math.max(1, Integer.parseInt(args[++i])); break;
+                    case "-seconds": seconds = Math.max(1, Integer.parseInt(args[++i])); break;
+                    default: throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+        } catch (RuntimeException e) {
+            System.out.println(e.getMessage());
+            System.out.println("Usage: java NetClient [-connect host:port] [-clients n] [-seconds n]");
+            System.exit(2);
+            return;
+        }
+
+        List<NetClient> clients = new ArrayList<>();
+        int[] disconnects = new int[1];
+        for (int i = 0; i < count; i++) {
+            NetClient client = connect(host, port);
+            Random random = new Random(i);
+            client.start(new Listener() {
+                @Override
+                public void ticked(NetClient c) {
+                    if (random.nextInt(6) == 0) c.sendTurn(NetProtocol.direction(random.nextInt(4)));
+                }
+
+                @Override
+                public void disconnected(NetClient c, String reason) {
+                    synchronized (disconnects) {
+                        disconnects[0]++;
+                    }
+                    System.out.println("Client disconnected: " + reason);
+                }
+            });
+            clients.add(client);
+        }
+        System.out.println(String.format(Locale.ROOT, "%d clients connected to %s:%d, running %d s", count, host, port, seconds));
+        Thread.sleep(seconds * 1000L);
+
+        LatencyHistogram gaps = new LatencyHistogram();
+        long checks = 0;
+        long mismatches = 0;
+        double minRate = Double.MAX_VALUE;
+        double maxRate = 0;
+        double sumRate = 0;
+        long now = System.nanoTime();
+        for (NetClient c : clients) {
+            synchronized (c) {
+                double rate = (c.bytesReceived - c.handshakeBytes) / ((now - c.readyAt) / 1e9);
+                minRate = Math.min(minRate, rate);
+                maxRate = Math.max(maxRate, rate);
+                sumRate += rate;
+                checks += c.checksums;
+                mismatches += c.checksumMismatches;
+                gaps.merge(c.deltaGaps);
+            }
+            c.close();
+        }
+        System.out.println(String.format(Locale.ROOT, "Received per client: mean %.0f B/s, min %.0f, max %.0f (after the snapshot)",
+            sumRate / count, minRate, maxRate));
+        System.out.println("Time between deltas: " + gaps.summary());
+        System.out.println(String.format(Locale.ROOT, "Checksums: %d checked, %d mismatched; %d disconnects",
+            checks, mismatches, disconnects[0]));
+        System.exit(mismatches == 0 && disconnects[0] == 0 ? 0 : 1);
+    }
+}
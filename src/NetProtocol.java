@@ -0,0 +1,196 @@
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Wire format shared by {@link GameServer} and {@link NetClient}. Every
+ * message is a frame: payload length (varint), then the payload, whose
+ * first byte is the message type. Numbers are unsigned LEB128 varints
+ * unless noted; directions are 2-bit codes (U, D, L, R = 0..3), packed
+ * four to a byte, low bits first.
+ *
+ * Server to client:
+ *   WELCOME   magic (4 bytes "SNKN"), version, your agent id, cols, rows,
+ *             tick length in ms, agent count
+ *   SNAPSHOT  tick, then per agent: score, length (0 = dead) and, if
+ *             alive, head cell and the packed direction from each segment
+ *             to the next one towards the tail; then apple count and cells
+ *   DELTA     tick, the packed direction each agent that was alive before
+ *             the step moved in (in agent order), the agents that died,
+ *             the agents spawned with their head cells, the cells where
+ *             apples appeared, then on every {@link #CHECK_INTERVAL}th tick
+ *             a 4-byte board checksum
+ *
+ * Client to server:
+ *   TURN      direction code
+ *
+ * A client that applies each delta the same way the arena resolves a step
+ * (see {@link NetClient}) ends up with the server's board, so a tick costs
+ * about two bits per snake plus the few deaths, spawns and apples.
+ */
+final class NetProtocol {
+    static final int MAGIC = 0x534E4B4E; // "SNKN"
+    static final int VERSION = 1;
+
+    static final byte WELCOME = 1;
+    static final byte SNAPSHOT = 2;
+    static final byte DELTA = 3;
+    static final byte TURN = 4;
+
+    // Ticks between board checksums in deltas
+    static final int CHECK_INTERVAL = 20;
+
+    // Largest frame either side accepts; a snapshot of a full 1000x1000 board fits
+    static final int MAX_FRAME = 1 << 20;
+
+    private static final char[] DIRECTIONS = {'U', 'D', 'L', 'R'};
+
+    private NetProtocol() {
+    }
+
+    static char direction(int code) {
+        return DIRECTIONS[code & 3];
+    }
+
+    static int directionCode(char direction) {
+        switch (direction) {
+            case 'U': return 0;
+            case 'D': return 1;
+            case 'L': return 2;
+            default: return 3;
+        }
+    }
+
+    /** The cell next to {@code cell} in direction {@code code} on a wrap-around board. */
+    static int neighbor(int cell, int code, int cols, int rows) {
+        int x = cell % cols;
+        int y = cell / cols;
+        switch (code & 3) {
+            case 0: return (y == 0 ? rows - 1 : y - 1) * cols + x;
+            case 1: return (y == rows - 1 ? 0 : y + 1) * cols + x;
+            case 2: return y * cols + (x == 0 ? cols - 1 : x - 1);
+            default: return y * cols + (x == cols - 1 ? 0 : x + 1);
+        }
+    }
+
+    /** Code of the direction leading from {@code from} to the adjacent cell {@code to}. */
+    static int codeBetween(int from, int to, int cols, int rows) {
+        for (int code = 0; code < 3; code++) {
+            if (neighbor(from, code, cols, rows) == to) return code;
+        }
+        return 3;
+    }
+
+    /** Hash of the owner of every cell (agent id, empty or apple) and every score; equal boards hash equal. */
+    static int checksum(int[] grid, int[] scores) {
+        int h = 1;
+        for (int owner : grid) {
+            h = 31 * h + owner;
+        }
+        for (int score : scores) {
+            h = 31 * h + score;
+        }
+        return h;
+    }
+
+    static void putVarint(ByteBuffer buf, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buf.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buf.put((byte) value);
+    }
+
+    static long getVarint(ByteBuffer buf) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buf.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    static int getVarintInt(ByteBuffer buf) {
+        long value = getVarint(buf);
+        if (value > Integer.MAX_VALUE) throw new IllegalArgumentException("Value out of range: " + value);
+        return (int) value;
+    }
+
+    /**
+     * Writes the frame holding {@code payload} (from 0 to its position)
+     * into {@code out}, which must have room.
+     */
+    static void putFrame(ByteBuffer out, ByteBuffer payload) {
+        putVarint(out, payload.position());
+        out.put(payload.array(), payload.arrayOffset(), payload.position());
+    }
+
+    /**
+     * If {@code in} (in read mode) starts with a whole frame, returns its
+     * payload as a slice and moves past it; otherwise leaves {@code in}
+     * where it was and returns null.
+     */
+    static ByteBuffer nextFrame(ByteBuffer in) {
+        int start = in.position();
+        long length;
+        try {
+            length = getVarint(in);
+        } catch (BufferUnderflowException e) {
+            in.position(start);
+            return null;
+        }
+        if (length > MAX_FRAME) throw new IllegalArgumentException("Frame too large: " + length);
+        if (in.remaining() < length) {
+            in.position(start);
+            return null;
+        }
+        ByteBuffer payload = in.slice();
+        payload.limit((int) length);
+        in.position(in.position() + (int) length);
+        return payload;
+    }
+
+    /** Packs 2-bit codes four to a byte. */
+    static final class CodeWriter {
+        private final ByteBuffer out;
+        private int bits = 0;
+        private int used = 0;
+
+        CodeWriter(ByteBuffer out) {
+            this.out = out;
+        }
+
+        void put(int code) {
+            bits |= (code & 3) << (used * 2);
+            if (++used == 4) flush();
+        }
+
+        void flush() {
+            if (used > 0) out.put((byte) bits);
+            bits = 0;
+            used = 0;
+        }
+    }
+
+    /** Reads codes written by {@link CodeWriter}. */
+    static final class CodeReader {
+        private final ByteBuffer in;
+        private int bits = 0;
+        private int left = 0;
+
+        CodeReader(ByteBuffer in) {
+            this.in = in;
+        }
+
+        int get() {
+            if (left == 0) {
+                bits = in.get() & 0xFF;
+                left = 4;
+            }
+            int code = bits & 3;
+            bits >>>= 2;
+            left--;
+            return code;
+        }
+    }
+}
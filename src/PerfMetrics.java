@@ -0,0 +1,179 @@
+import java.awt.Color;
+import java.awt.EventQueue;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.util.Locale;
+
+/**
+ * Timing for the running game: how long a tick and a paint take, how far
+ * each tick ran from when it was due, and how long a runnable waits in the
+ * Swing event queue, each in a {@link LatencyHistogram}; plus frames and
+ * ticks per second over the last minute. The game loop feeds it, the F3
+ * overlay draws it with {@link #drawOverlay} and the summary is printed on
+ * exit.
+ *
+ * Apart from the event-queue probe, everything is recorded by the thread
+ * running the game loop (the EDT with the Swing timer, the loop thread in
+ * fixed-step mode), so nothing here needs locking.
+ */
+public class PerfMetrics {
+    public static final int OVERLAY_WIDTH = 250;
+    public static final int OVERLAY_HEIGHT = 142;
+
+    private static final int GRAPH_SECONDS = 60;
+    private static final long SECOND = 1_000_000_000L;
+
+    private final LatencyHistogram tick = new LatencyHistogram();
+    private final LatencyHistogram paint = new LatencyHistogram();
+    private final LatencyHistogram timerJitter = new LatencyHistogram();
+    private final LatencyHistogram edtDelay = new LatencyHistogram();
+
+    // Frames and ticks completed in each of the last GRAPH_SECONDS whole seconds, oldest at historyHead
+    private final int[] fpsHistory = new int[GRAPH_SECONDS];
+    private final int[] tpsHistory = new int[GRAPH_SECONDS];
+    private int historyHead = 0;
+    private int framesThisSecond = 0;
+    private int ticksThisSecond = 0;
+    private long secondStart = System.nanoTime();
+
+    // When the Swing timer last fired, 0 before the first tick of a loop
+    private long lastTimerFire = 0;
+
+    // Set while an event-queue probe is waiting to run, so at most one is queued
+    private volatile boolean probeQueued = false;
+
+    /** Call when a game loop starts, so the pause since the last one does not count as jitter. */
+    public void loopStarted() {
+        lastTimerFire = 0;
+    }
+
+    /** Records a tick that started at {@code startNanos} and has just finished. */
+    public void tickDone(long startNanos) {
+        long now = System.nanoTime();
+        tick.record(now - startNanos);
+        ticksThisSecond++;
+        roll(now);
+    }
+
+    /** Records how long one paint (or one active-rendering frame) took. */
+    public void paintDone(long startNanos) {
+        paint.record(System.nanoTime() - startNanos);
+    }
+
+    /** Counts one frame shown on screen. */
+    public void frameShown() {
+        framesThisSecond++;
+        roll(System.nanoTime());
+    }
+
+    /**
+     * Swing timer mode: records how far the interval since the previous
+     * firing was from {@code delayMs}, early or late.
+     */
+    public void timerFired(long nowNanos, int delayMs) {
+        if (lastTimerFire != 0) {
+            timerJitter.record(Math.abs(nowNanos - lastTimerFire - delayMs * 1_000_000L));
+        }
+        lastTimerFire = nowNanos;
+    }
+
+    /** Fixed-step mode: records how late a tick ran relative to when it was due. */
+    public void tickLate(long lateNanos) {
+        timerJitter.record(lateNanos);
+    }
+
+    /**
+     * Posts an empty runnable to the event queue and records how long it
+     * waited there before running; does nothing while one is still queued.
+     */
+    public void probeEventQueue() {
+        if (probeQueued) return;
+        probeQueued = true;
+        long posted = System.nanoTime();
+        EventQueue.invokeLater(() -> {
+            edtDelay.record(System.nanoTime() - posted);
+            probeQueued = false;
+        });
+    }
+
+    public boolean hasSamples() {
+        return tick.getCount() > 0;
+    }
+
+    /** Moves the per-second counters into the history once a second has passed. */
+    private void roll(long now) {
+        if (now - secondStart < SECOND) return;
+        long seconds = (now - secondStart) / SECOND;
+        for (long s = 0; s < Math.min(seconds, GRAPH_SECONDS); s++) {
+            fpsHistory[historyHead] = s == 0 ? framesThisSecond : 0;
+            tpsHistory[historyHead] = s == 0 ? ticksThisSecond : 0;
+            historyHead = (historyHead + 1) % GRAPH_SECONDS;
+        }
+        framesThisSecond = 0;
+        ticksThisSecond = 0;
+        secondStart += seconds * SECOND;
+    }
+
+    public String summary() {
+        return "Tick:         " + tick.summary()
+            + "\nPaint:        " + paint.summary()
+            + "\nTimer jitter: " + timerJitter.summary()
+            + "\nEDT delay:    " + edtDelay.summary();
+    }
+
+    /** Draws the p50/p99/max table and the FPS/TPS graph with its top-left corner at (x, y). */
+    public void drawOverlay(Graphics2D g, int x, int y) {
+        Graphics2D g2d = (Graphics2D) g.create();
+        g2d.setColor(new Color(0, 0, 0, 170));
+        g2d.fillRoundRect(x, y, OVERLAY_WIDTH, OVERLAY_HEIGHT, 8, 8);
+        g2d.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 11));
+        g2d.setColor(Color.WHITE);
+        int line = y + 14;
+        g2d.drawString("ms          p50    p99    max", x + 8, line);
+        line = drawRow(g2d, "tick", tick, x + 8, line + 13);
+        line = drawRow(g2d, "paint", paint, x + 8, line);
+        line = drawRow(g2d, "jitter", timerJitter, x + 8, line);
+        line = drawRow(g2d, "edt", edtDelay, x + 8, line);
+
+        int last = (historyHead + GRAPH_SECONDS - 1) % GRAPH_SECONDS;
+        g2d.setColor(new Color(0, 255, 127));
+        g2d.drawString("fps " + fpsHistory[last], x + 8, line + 2);
+        g2d.setColor(new Color(255, 200, 0));
+        g2d.drawString("tps " + tpsHistory[last], x + 70, line + 2);
+
+        // Graph: one column per second, oldest on the left, scaled to the busiest second
+        int gx = x + 8;
+        int gy = line + 8;
+        int gw = OVERLAY_WIDTH - 16;
+        int gh = y + OVERLAY_HEIGHT - 6 - gy;
+        int scale = 1;
+        for (int i = 0; i < GRAPH_SECONDS; i++) {
+            scale = Math.max(scale, Math.max(fpsHistory[i], tpsHistory[i]));
+        }
+        g2d.setColor(new Color(255, 255, 255, 60));
+        g2d.drawRect(gx, gy, gw, gh);
+        drawSeries(g2d, fpsHistory, scale, gx, gy, gw, gh, new Color(0, 255, 127));
+        drawSeries(g2d, tpsHistory, scale, gx, gy, gw, gh, new Color(255, 200, 0));
+        g2d.dispose();
+    }
+
+    private static int drawRow(Graphics2D g, String name, LatencyHistogram h, int x, int y) {
+        g.drawString(String.format(Locale.ROOT, "%-8s %6.2f %6.2f %6.2f", name,
+            h.percentileNanos(0.5) / 1e6, h.percentileNanos(0.99) / 1e6, h.getMaxNanos() / 1e6), x, y);
+        return y + 13;
+    }
+
+    private void drawSeries(Graphics2D g, int[] history, int scale, int gx, int gy, int gw, int gh, Color color) {
+        g.setColor(color);
+        int prevX = 0;
+        int prevY = 0;
+        for (int i = 0; i < GRAPH_SECONDS; i++) {
+            int value = history[(historyHead + i) % GRAPH_SECONDS];
+            int px = gx + i * gw / (GRAPH_SECONDS - 1);
+            int py = gy + gh - value * gh / scale;
+            if (i > 0) g.drawLine(prevX, prevY, px, py);
+            prevX = px;
+            prevY = py;
+        }
+    }
+}
@@ -0,0 +1,416 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Replay file (format version 3) that can be opened at any tick. Next to
+ * the turns it stores a keyframe, a full {@link GameSnapshot}, every
+ * {@code interval} ticks, and ends with an
+ * index of where each keyframe is. Seeking restores the keyframe at or
+ * before the target and re-simulates at most {@code interval - 1} ticks;
+ * only the index and the block being played are held in memory.
+ *
+ * A snapshot resumes the game exactly, so recording only reads the engine
+ * and playback only restores a keyframe to seek. Replays in earlier
+ * formats were recorded under earlier rules for the level 4 and 5 apple
+ * and bomb, which they would no longer reproduce, so they are refused.
+ *
+ * Layout: "SNKR", version 3, level, cols, rows (varints), seed (8 bytes),
+ * keyframe interval (varint); then one block per interval: keyframe length
+ * (varint) and snapshot of the game at the start
+ * of the block's first tick, turn count and turns (varints: ticks since the
+ * previous turn, or the block's first tick, shifted left by two with the
+ * direction in the low two bits); then
+ * end tick, status ordinal, score and AI score (varints); then the offset
+ * of every block, the block count, the offset of the outcome (fixed width,
+ * big endian) and "SNKI". A {@link Writer} streams blocks to disk as they
+ * complete.
+ */
+public class ReplayFile implements Closeable {
+    static final int VERSION = 3;
+
+    private static final int MAGIC = 0x534E4B52; // "SNKR"
+    private static final int INDEX_MAGIC = 0x534E4B49; // "SNKI"
+    private static final int FOOTER_SIZE = 4 + 8 + 4;
+    private static final int MAX_HEADER = 4 + 1 + 3 * 5 + 8 + 5;
+
+    final int cols;
+    final int rows;
+    final int level;
+    final long seed;
+    final int interval;
+
+    // Outcome of the recorded run
+    final long endTick;
+    final GameState.Status status;
+    final int score;
+    final int aiScore;
+
+    private final FileChannel channel;
+    private final long[] blockOffsets;
+    private final long outcomeOffset;
+
+    // The block last read, and its turns
+    private ByteBuffer block = ByteBuffer.allocate(4096);
+    private int turnsBlock = -1;
+    private long[] turnTicks = new long[64];
+    private byte[] turnDirections = new byte[64];
+    private int turnCount = 0;
+    private int next = 0;
+
+    private ReplayFile(FileChannel channel) throws IOException {
+        this.channel = channel;
+        ByteBuffer header = read(0, (int) Math.min(MAX_HEADER, channel.size()));
+        if (header.remaining() < 5 || header.getInt() != MAGIC) throw new IOException("Not a replay file");
+        int version = header.get();
+        if (version != VERSION) {
+            throw new IOException("Replay format " + version + " was recorded under earlier rules and no longer plays back");
+        }
+        level = NetProtocol.getVarintInt(header);
+        cols = NetProtocol.getVarintInt(header);
+        rows = NetProtocol.getVarintInt(header);
+        seed = header.getLong();
+        interval = NetProtocol.getVarintInt(header);
+        if (interval < 1 || cols < GameState.MIN_BOARD_SIZE || rows < GameState.MIN_BOARD_SIZE
+                || (long) cols * rows > GameState.MAX_BOARD_CELLS) {
+            throw new IOException("Replay header is damaged");
+        }
+
+        long size = channel.size();
+        ByteBuffer footer = read(size - FOOTER_SIZE, FOOTER_SIZE);
+        int blocks = footer.getInt();
+        outcomeOffset = footer.getLong();
+        if (footer.getInt() != INDEX_MAGIC || blocks < 1 || size - FOOTER_SIZE - blocks * 8L < outcomeOffset) {
+            throw new IOException("Replay index is missing or damaged");
+        }
+        ByteBuffer index = read(size - FOOTER_SIZE - blocks * 8L, blocks * 8);
+        blockOffsets = new long[blocks];
+        for (int i = 0; i < blocks; i++) {
+            blockOffsets[i] = index.getLong();
+        }
+        ByteBuffer outcome = read(outcomeOffset, (int) Math.min(4 * 10, size - outcomeOffset));
+        endTick = NetProtocol.getVarint(outcome);
+        int statusOrdinal = NetProtocol.getVarintInt(outcome);
+        if (statusOrdinal >= GameState.Status.values().length) throw new IOException("Bad replay status " + statusOrdinal);
+        status = GameState.Status.values()[statusOrdinal];
+        score = NetProtocol.getVarintInt(outcome);
+        aiScore = NetProtocol.getVarintInt(outcome);
+    }
+
+    /** Opens a replay for seeking. */
+    public static ReplayFile open(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            return new ReplayFile(channel);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        } catch (RuntimeException e) {
+            channel.close();
+            throw new IOException("Damaged replay: " + e, e);
+        }
+    }
+
+    public long getEndTick() { return endTick; }
+    public int getLevel() { return level; }
+    public int getKeyframeCount() { return blockOffsets.length; }
+
+    /** True when {@code state} ended exactly as the recording did. */
+    public boolean matches(GameState state) {
+        return state.tick == endTick && state.status == status
+            && state.score == score && state.aiScore == aiScore;
+    }
+
+    /**
+     * True once {@code state} has played the whole recording: the level
+     * ended, or it reached the recorded end tick (past it, when the
+     * recording ended with the level, whose last step does not advance the tick).
+     */
+    public boolean isAtEnd(GameState state) {
+        return !state.isRunning() || state.tick >= (status == GameState.Status.RUNNING ? endTick : endTick + 1);
+    }
+
+    /**
+     * Puts {@code engine} at the start of {@code tick}, or at the end of the
+     * recording if {@code tick} is past it: restores the nearest keyframe at
+     * or before it and replays the turns from there.
+     */
+    public void seek(GameEngine engine, long tick) throws IOException {
+        int k = blockOf(Math.max(0, tick));
+        loadBlock(k, engine);
+        GameState state = engine.getState();
+        while (!isAtEnd(state) && state.tick < tick) {
+            engine.step(inputFor(state.tick));
+        }
+    }
+
+    /** Plays the recorded step {@code engine} (positioned by {@link #seek}) is at. */
+    public void step(GameEngine engine) throws IOException {
+        engine.step(inputFor(engine.getState().tick));
+    }
+
+    /** Direction recorded for the step starting at {@code tick}, or 0. */
+    private char inputFor(long tick) throws IOException {
+        int k = blockOf(tick);
+        if (k != turnsBlock) {
+            loadBlock(k, null);
+        }
+        while (next < turnCount && turnTicks[next] < tick) {
+            next++;
+        }
+        if (next < turnCount && turnTicks[next] == tick) {
+            return NetProtocol.direction(turnDirections[next++]);
+        }
+        return 0;
+    }
+
+    /**
+     * Plays every block from its keyframe and checks where it gets to
+     * against the next keyframe; returns the number of the first keyframe
+     * that differs, or -1 when all match.
+     */
+    public int verifyKeyframes() throws IOException {
+        GameEngine engine = new GameEngine(cols, rows, seed);
+        GameState state = engine.getState();
+        ByteBuffer simulated = ByteBuffer.allocate(GameSnapshot.maxBytes(cols, rows));
+        for (int k = 1; k < blockOffsets.length; k++) {
+            seek(engine, (long) k * interval - 1);
+            if (!isAtEnd(state)) {
+                engine.step(inputFor(state.tick));
+            }
+            simulated.clear();
+            engine.snapshot(simulated);
+            simulated.flip();
+            ByteBuffer stored = readBlock(k);
+            int keyframeLength = NetProtocol.getVarintInt(stored);
+            stored.limit(stored.position() + keyframeLength);
+            if (!stored.equals(simulated)) return k;
+        }
+        return -1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private int blockOf(long tick) {
+        return (int) Math.min(tick / interval, blockOffsets.length - 1);
+    }
+
+    /** Reads block {@code k}'s turns, and restores its keyframe into {@code engine} unless that is null. */
+    private void loadBlock(int k, GameEngine engine) throws IOException {
+        ByteBuffer in = readBlock(k);
+        try {
+            int keyframeLength = NetProtocol.getVarintInt(in);
+            int keyframeEnd = in.position() + keyframeLength;
+            if (engine != null) {
+                ByteBuffer snapshot = in.slice();
+                snapshot.limit(keyframeEnd - in.position());
+                engine.restore(snapshot);
+            }
+            in.position(keyframeEnd);
+            turnCount = NetProtocol.getVarintInt(in);
+            if (turnCount > turnTicks.length) {
+                turnTicks = Arrays.copyOf(turnTicks, turnCount);
+                turnDirections = Arrays.copyOf(turnDirections, turnCount);
+            }
+            long tick = (long) k * interval;
+            for (int i = 0; i < turnCount; i++) {
+                long packed = NetProtocol.getVarint(in);
+                tick += packed >>> 2;
+                turnTicks[i] = tick;
+                turnDirections[i] = (byte) (packed & 3);
+            }
+        } catch (RuntimeException e) {
+            turnsBlock = -1;
+            throw new IOException("Damaged replay block " + k + ": " + e, e);
+        }
+        turnsBlock = k;
+        next = 0;
+    }
+
+    private ByteBuffer readBlock(int k) throws IOException {
+        long start = blockOffsets[k];
+        long end = k + 1 < blockOffsets.length ? blockOffsets[k + 1] : outcomeOffset;
+        if (end < start || end - start > Integer.MAX_VALUE) throw new IOException("Damaged replay index");
+        int length = (int) (end - start);
+        if (block.capacity() < length) {
+            block = ByteBuffer.allocate(Math.max(length, block.capacity() * 2));
+        }
+        block.clear();
+        block.limit(length);
+        readFully(start, block);
+        block.flip();
+        return block;
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        readFully(position, buf);
+        buf.flip();
+        return buf;
+    }
+
+    private void readFully(long position, ByteBuffer buf) throws IOException {
+        if (position < 0) throw new IOException("Damaged replay index");
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, position + buf.position()) < 0) throw new IOException("Truncated replay");
+        }
+    }
+
+    /**
+     * Records a level as it is played: call {@link #step} with each input
+     * before passing it to the engine and {@link #finish} when the level
+     * ends; the engine is only read. Each block goes to disk when the next
+     * one starts, into a {@code .part} file renamed over the target by
+     * {@link #finish}.
+     */
+    public static final class Writer {
+        static final int DEFAULT_INTERVAL = 100;
+
+        private final File target;
+        private final Path part;
+        private final FileChannel channel;
+        private final int interval;
+        private final ByteBuffer keyframe;
+        private ByteBuffer turns = ByteBuffer.allocate(256);
+        private final ByteBuffer scratch = ByteBuffer.allocate(64);
+        private long[] blockOffsets = new long[16];
+        private int blocks = 0;
+        private int turnCount = 0;
+        private long lastTurnTick;
+        private long nextBlockTick = 0;
+        private long position = 0;
+
+        private Writer(File target, int cols, int rows, int interval) throws IOException {
+            this.target = target;
+            this.part = new File(target.getPath() + ".part").toPath();
+            this.interval = interval;
+            this.keyframe = ByteBuffer.allocate(GameSnapshot.maxBytes(cols, rows));
+            this.channel = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        /** Starts recording a level played on {@code cols} x {@code rows} from {@code seed}, with a keyframe every {@code interval} ticks. */
+        public static Writer create(File file, int cols, int rows, int level, long seed, int interval) throws IOException {
+            if (interval < 1) throw new IllegalArgumentException("Keyframe interval must be at least 1 tick");
+            Writer writer = new Writer(file, cols, rows, interval);
+            try {
+                ByteBuffer header = writer.scratch;
+                header.clear();
+                header.putInt(MAGIC);
+                header.put((byte) VERSION);
+                NetProtocol.putVarint(header, level);
+                NetProtocol.putVarint(header, cols);
+                NetProtocol.putVarint(header, rows);
+                header.putLong(seed);
+                NetProtocol.putVarint(header, interval);
+                header.flip();
+                writer.write(header);
+            } catch (IOException | RuntimeException e) {
+                writer.abort();
+                throw e;
+            }
+            return writer;
+        }
+
+        /** Records {@code input} (0 for none) for the step {@code engine} is about to take, first writing a keyframe when one is due. */
+        public void step(GameEngine engine, char input) throws IOException {
+            GameState state = engine.getState();
+            if (state.tick >= nextBlockTick) {
+                flushBlock();
+                if (blocks == blockOffsets.length) {
+                    blockOffsets = Arrays.copyOf(blockOffsets, blocks * 2);
+                }
+                blockOffsets[blocks++] = position;
+                keyframe.clear();
+                engine.snapshot(keyframe);
+                keyframe.flip();
+                lastTurnTick = nextBlockTick;
+                nextBlockTick += interval;
+            }
+            if (input != 0) {
+                if (turns.remaining() < 10) {
+                    ByteBuffer bigger = ByteBuffer.allocate(turns.capacity() * 2);
+                    turns.flip();
+                    turns = bigger.put(turns);
+                }
+                NetProtocol.putVarint(turns, (state.tick - lastTurnTick) << 2 | NetProtocol.directionCode(input));
+                lastTurnTick = state.tick;
+                turnCount++;
+            }
+        }
+
+        /** Ends the recording with {@code state}'s outcome and moves it into place; returns the file. */
+        public File finish(GameState state) throws IOException {
+            try {
+                flushBlock();
+                long outcomeOffset = position;
+                ByteBuffer outcome = scratch;
+                outcome.clear();
+                NetProtocol.putVarint(outcome, state.tick);
+                NetProtocol.putVarint(outcome, state.status.ordinal());
+                NetProtocol.putVarint(outcome, state.score);
+                NetProtocol.putVarint(outcome, state.aiScore);
+                outcome.flip();
+                write(outcome);
+                ByteBuffer index = ByteBuffer.allocate(blocks * 8 + FOOTER_SIZE);
+                for (int i = 0; i < blocks; i++) {
+                    index.putLong(blockOffsets[i]);
+                }
+                index.putInt(blocks);
+                index.putLong(outcomeOffset);
+                index.putInt(INDEX_MAGIC);
+                index.flip();
+                write(index);
+                channel.close();
+                Files.move(part, target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                return target;
+            } catch (IOException | RuntimeException e) {
+                abort();
+                throw e;
+            }
+        }
+
+        /** Drops the recording. */
+        public void abort() {
+            try {
+                channel.close();
+                Files.deleteIfExists(part);
+            } catch (IOException e) {
+                System.out.println("Failed to discard replay: " + e.getMessage());
+            }
+        }
+
+        private void flushBlock() throws IOException {
+            if (blocks == 0) return;
+            scratch.clear();
+            NetProtocol.putVarint(scratch, keyframe.remaining());
+            scratch.flip();
+            write(scratch);
+            write(keyframe);
+            scratch.clear();
+            NetProtocol.putVarint(scratch, turnCount);
+            scratch.flip();
+            write(scratch);
+            turns.flip();
+            write(turns);
+            turns.clear();
+            turnCount = 0;
+        }
+
+        private void write(ByteBuffer buf) throws IOException {
+            while (buf.hasRemaining()) {
+                position += channel.write(buf);
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Re-runs recorded {@link ReplayFile}s headless as fast as the engine goes
+ * and checks each one reproduces its recorded outcome and every keyframe;
+ * the game view plays the same files on screen.
+ *
+ * Usage: java -cp bin ReplayPlayer file.snkr... (exits with 1 if any replay
+ * cannot be read or does not match its recording)
+ */
+public class ReplayPlayer {
+    private ReplayPlayer() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.out.println("Usage: java ReplayPlayer file.snkr...");
+            System.exit(2);
+        }
+        boolean allMatch = true;
+        for (String path : args) {
+            File file = new File(path);
+            try {
+                allMatch &= check(file);
+            } catch (IOException e) {
+                System.out.println(file.getName() + ": " + e.getMessage());
+                allMatch = false;
+            }
+        }
+        System.exit(allMatch ? 0 : 1);
+    }
+
+    /** Plays a replay through and checks its outcome and every keyframe. */
+    private static boolean check(File file) throws IOException {
+        try (ReplayFile replay = ReplayFile.open(file)) {
+            long start = System.nanoTime();
+            GameEngine engine = new GameEngine(replay.cols, replay.rows, replay.seed);
+            GameState state = engine.getState();
+            replay.seek(engine, 0);
+            while (!replay.isAtEnd(state)) {
+                replay.step(engine);
+            }
+            double ms = (System.nanoTime() - start) / 1e6;
+            int badKeyframe = replay.verifyKeyframes();
+            boolean match = replay.matches(state) && badKeyframe < 0;
+            System.out.println(String.format(Locale.ROOT,
+                "%s: level %d, %d bytes, %d keyframes, %d ticks in %.2f ms -> %s, score %d (recorded %s, score %d)%s %s",
+                file.getName(), replay.level, file.length(), replay.getKeyframeCount(), state.tick, ms,
+                state.status, state.score, replay.status, replay.score,
+                badKeyframe < 0 ? "" : ", keyframe " + badKeyframe + " differs", match ? "OK" : "MISMATCH"));
+            return match;
+        }
+    }
+}
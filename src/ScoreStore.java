@@ -0,0 +1,167 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The high score file, written by a background thread so the game never
+ * waits on the disk. {@link #submit} and {@link #reset} only record what
+ * should be written and return; the writer picks up the latest request,
+ * so a burst of updates costs one write.
+ *
+ * Each write holds an exclusive {@link FileLock} on a {@code .lock} file
+ * next to the score file, so several game instances can share it: under
+ * the lock the writer reads the current score, keeps the higher of that
+ * and its own, writes it to a temporary file, forces it to disk and
+ * renames it over the old one. A crash at any point leaves either the old
+ * or the new file, never a truncated one.
+ */
+public class ScoreStore {
+    private static final int NONE = -1;
+
+    private final Path file;
+    private final Path lockFile;
+    private final Thread writer;
+
+    // Requests not yet written; guarded by this
+    private int pendingScore = NONE;
+    private boolean pendingReset = false;
+    private boolean writing = false;
+    private boolean closed = false;
+
+    public ScoreStore(Path file) {
+        this.file = file.toAbsolutePath();
+        this.lockFile = this.file.resolveSibling(this.file.getFileName() + ".lock");
+        writer = new Thread(this::run, "score-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /** Records {@code score}; the file ends up holding it unless it already holds something higher. */
+    public synchronized void submit(int score) {
+        if (score <= pendingScore) return;
+        pendingScore = score;
+        notifyAll();
+    }
+
+    /** Sets the stored score back to 0, discarding scores submitted before this call. */
+    public synchronized void reset() {
+        pendingReset = true;
+        pendingScore = NONE;
+        notifyAll();
+    }
+
+    /** Reads the stored score, 0 when there is no file or it cannot be read. Blocks on the disk. */
+    public int read() {
+        try {
+            return parse(Files.readAllBytes(file));
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Waits up to {@code timeoutMs} for every request so far to be written;
+     * returns false if some are still pending.
+     */
+    public synchronized boolean flush(long timeoutMs) {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (pendingScore != NONE || pendingReset || writing) {
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0) return false;
+            try {
+                wait(left);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Writes what is pending (waiting up to {@code timeoutMs}) and stops the writer. */
+    public void close(long timeoutMs) {
+        flush(timeoutMs);
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            boolean reset;
+            int score;
+            synchronized (this) {
+                while (pendingScore == NONE && !pendingReset && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pendingScore == NONE && !pendingReset) return; // closed with nothing left to write
+                reset = pendingReset;
+                score = pendingScore;
+                pendingReset = false;
+                pendingScore = NONE;
+                writing = true;
+            }
+            try {
+                write(reset, score);
+            } catch (IOException | RuntimeException e) {
+                System.out.println("Failed to save high score: " + e.getMessage());
+            } finally {
+                synchronized (this) {
+                    writing = false;
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    private void write(boolean reset, int score) throws IOException {
+        try (FileChannel lockChannel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            FileLock lock = lockChannel.lock();
+            try {
+                int stored = Files.exists(file) ? read() : NONE;
+                int value = Math.max(reset ? 0 : stored, score);
+                if (value == stored) return;
+
+                Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+                try {
+                    try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                        ByteBuffer bytes = ByteBuffer.wrap((value + System.lineSeparator()).getBytes(StandardCharsets.US_ASCII));
+                        while (bytes.hasRemaining()) {
+                            out.write(bytes);
+                        }
+                        out.force(true);
+                    }
+                    try {
+                        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                    } catch (AtomicMoveNotSupportedException e) {
+                        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    private static int parse(byte[] bytes) {
+        try {
+            return Math.max(0, Integer.parseInt(new String(bytes, StandardCharsets.US_ASCII).trim()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
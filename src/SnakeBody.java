@@ -0,0 +1,99 @@
+import java.util.Arrays;
+
+/**
+ * Snake body stored as a ring buffer of packed cell ids ({@code y * cols + x}),
+ * head first, plus a {@code long[]} occupancy bitset over the whole board.
+ * Pushing a head, popping the tail and "is this cell part of me" are all O(1)
+ * and allocation-free; the ring only grows (doubling) when the snake outgrows it.
+ *
+ * A snake is dead as soon as its head lands on its own body, so callers must
+ * check {@link #contains(int)} before {@link #pushHead(int)}; occupancy is not
+ * reference-counted and is only exact while no two segments share a cell.
+ */
+public class SnakeBody {
+    private int[] ring = new int[16];
+    private int mask = ring.length - 1;
+    private int head = 0;
+    private int size = 0;
+    private final long[] occupied;
+
+    public SnakeBody(int cellCount) {
+        occupied = new long[(cellCount + 63) >>> 6];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** Cell of the {@code i}-th segment counted from the head (0 = head). */
+    public int get(int i) {
+        return ring[(head + i) & mask];
+    }
+
+    public int head() {
+        return ring[head];
+    }
+
+    public int tail() {
+        return ring[(head + size - 1) & mask];
+    }
+
+    public boolean contains(int cell) {
+        return (occupied[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    public void pushHead(int cell) {
+        if (size == ring.length) grow();
+        head = (head - 1) & mask;
+        ring[head] = cell;
+        size++;
+        occupied[cell >>> 6] |= 1L << cell;
+    }
+
+    /** Appends behind the current tail; used to lay out the starting body. */
+    public void addTail(int cell) {
+        if (size == ring.length) grow();
+        ring[(head + size) & mask] = cell;
+        size++;
+        occupied[cell >>> 6] |= 1L << cell;
+    }
+
+    public int popTail() {
+        int idx = (head + size - 1) & mask;
+        int cell = ring[idx];
+        size--;
+        occupied[cell >>> 6] &= ~(1L << cell);
+        return cell;
+    }
+
+    public void clear() {
+        // Clear only the bits we set so resetting a short snake on a huge board stays cheap
+        for (int i = 0; i < size; i++) {
+            int cell = ring[(head + i) & mask];
+            occupied[cell >>> 6] &= ~(1L << cell);
+        }
+        head = 0;
+        size = 0;
+    }
+
+    private void grow() {
+        int[] bigger = new int[ring.length << 1];
+        for (int i = 0; i < size; i++) {
+            bigger[i] = ring[(head + i) & mask];
+        }
+        ring = bigger;
+        mask = bigger.length - 1;
+        head = 0;
+    }
+
+    @Override
+    public String toString() {
+        int[] cells = new int[size];
+        for (int i = 0; i < size; i++) cells[i] = get(i);
+        return Arrays.toString(cells);
+    }
+}
@@ -1,11 +1,19 @@
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.image.BufferStrategy;
+import java.awt.image.VolatileImage;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Locale;
 import java.util.Random;
-import java.io.File;
-import java.io.PrintWriter;
-import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.sound.sampled.*;
 
 public class SnakeGame extends JFrame {
@@ -14,68 +22,85 @@ public class SnakeGame extends JFrame {
     private static final int UNIT_SIZE = 25;
     private static final int GAME_UNITS = (WINDOW_WIDTH * WINDOW_HEIGHT) / (UNIT_SIZE * UNIT_SIZE);
     private static final int DELAY = 100;
+    // -Dsnake.fixedStep=true: fixed-timestep loop thread with BufferStrategy rendering and interpolation
+    private static final boolean FIXED_STEP = Boolean.getBoolean("snake.fixedStep");
+    // -Dsnake.record=<dir>: write a replay of every finished level into <dir>
+    private static final String RECORD_DIR = System.getProperty("snake.record");
+    // -Dsnake.keyframeTicks=<n>: ticks between replay keyframes (at least 1); seeking re-simulates at most this many
+    private static final int KEYFRAME_TICKS = Math.max(1, Integer.getInteger("snake.keyframeTicks", ReplayFile.Writer.DEFAULT_INTERVAL));
+    private static final int MAX_REPLAY_SPEED = 64;
+    private static final long NO_SEEK = -1;
+    // Multiplayer rooms are drawn over level 5's space theme
+    private static final int ARENA_THEME_LEVEL = 5;
+    // -Dsnake.board=<cols>x<rows>: board size in cells; a board bigger than the panel scrolls with the player
+    private static final Dimension BOARD = parseBoardSize(System.getProperty("snake.board"));
     
-    private final ArrayList<Point> snake = new ArrayList<>();
-    private Point food;
-    private String foodType = "apple"; // "apple" or "multiplier"
-    private char direction = 'R';
+    private final GameEngine engine = new GameEngine(BOARD.width, BOARD.height);
+    private final GameState state = engine.getState();
+    private final InputQueue inputQueue = new InputQueue(); // key presses, one turn applied per tick
+    private final Random seeds = new Random(); // one engine seed per level start
+    private ReplayFile.Writer recording; // the level being played, streamed to disk when recording
+    private long levelSeed; // engine seed of the level being played
+    private ReplayFile playback; // replay driving the level instead of the keyboard
+    // Replay viewer controls, set on the EDT and applied by whichever thread runs the ticks
+    private volatile boolean replayPaused = false;
+    private volatile int replaySpeed = 1; // recorded ticks played per game tick, 1 to MAX_REPLAY_SPEED
+    private final AtomicLong replaySeek = new AtomicLong(NO_SEEK); // tick to jump to
+    private final AtomicInteger replayNudge = new AtomicInteger(); // ticks to step forward (+) or back (-)
+    private volatile boolean replaySmooth = false; // the last tick played exactly one step, so it can be interpolated
+    private boolean replayEndShown = false;
+    private volatile NetClient net; // server connection while playing online, otherwise null
+    private final AtomicBoolean netFramePending = new AtomicBoolean(); // a net tick is queued on the EDT
     private boolean running = false;
     private boolean inMenu = true;
-    private int score = 0;
     private int highScore = 0;
-    private boolean scoreMultiplierActive = false;
-    private long multiplierStartTime = 0;
-    private final Random random = new Random();
+    private final ScoreStore scores = new ScoreStore(new File("highscore.txt").toPath()); // written on its own thread
+    private volatile Leaderboard leaderboard; // every finished game; set once the asset loader has opened it
     private final GamePanel gamePanel;
     private final JLabel scoreLabel;
     private final JPanel menuPanel;
     private Timer timer;
-    private Timer multiplierTimer;
+    private FixedStepLoop fixedLoop;
+    private final PerfMetrics metrics = new PerfMetrics(); // tick/paint/jitter histograms for the F3 overlay
+    private volatile boolean perfOverlay = false;
     
     // Level system
     private int currentLevel = 1;
-    private long gameStartTime;
-    private long levelTimeLimit = 180000; // 3 minutes in milliseconds
-    private Timer appleTimer; // For level 3+ apple disappearing
-    private boolean appleVisible = true;
-    
-    // Bomb system for level 4
-    private Point bomb;
-    private Timer bombTimer;
-    private boolean bombVisible = false;
-    
-    // AI Snake system for level 5
-    private ArrayList<Point> aiSnake;
-    private char aiDirection = 'L';
-    private Timer aiMoveTimer;
-    private boolean aiSnakeActive = false;
-	private int aiScore = 0;
 
-	// HUD components (separate, smoother UI)
-	private JPanel hudPanel;
-	private JLabel levelLabel;
-	private JLabel playerScoreLabel;
-	private JLabel aiScoreLabel;
-	private JLabel highScoreLabel;
-	private JLabel multiplierLabel;
+	// HUD strip above the board; only repaints the fields whose values change
+	private final Hud hud = new Hud(WINDOW_WIDTH);
+	
+	// HUD values last handed to the EDT by the fixed-step loop thread, so unchanged ticks post nothing
+	private int postedScore = Hud.HIDDEN;
+	private int postedAiScore = Hud.HIDDEN;
+	private long postedTimerSecond = Hud.HIDDEN;
+	private long postedMultiplierSecond = Hud.HIDDEN;
     
-    // Audio components
-    private Clip backgroundMusic;
-    private Clip eatingSound;
-    private Clip multiplierSound;
+    // Audio: one mixer thread plays every sound; the game only queues triggers
+    // -Dsnake.audioBuffer=<frames>: mixer buffer size, smaller is lower latency but more prone to crackle
+    private static final int AUDIO_BUFFER_FRAMES = Integer.getInteger("snake.audioBuffer", AudioMixer.DEFAULT_BUFFER_FRAMES);
+    private static final int MUSIC_CHANNEL = 1;
+    private static final float MUSIC_GAIN = 0.7f;
+    private final AudioMixer audio = new AudioMixer(AUDIO_BUFFER_FRAMES);
+    // Set by the asset loader threads as each sound finishes decoding; NO_SAMPLE plays nothing until then
+    private volatile int backgroundMusic = AudioMixer.NO_SAMPLE;
+    private volatile int eatingSound = AudioMixer.NO_SAMPLE;
+    private volatile int multiplierSound = AudioMixer.NO_SAMPLE;
+    
+    // Startup: everything the menu does not need loads on these threads while the menu paints
+    private static final int ASSET_THREADS = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private CompletableFuture<SpriteAtlas> spriteLoad;
     
     public SnakeGame() {
         setTitle("Snake Game");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setResizable(false);
         
-        // Load high score
-        loadHighScore();
 		// Reset high score on every run as requested
-		resetHighScoreOnStartup();
-        
-        // Initialize audio
-        initializeAudio();
+		scores.reset();
+		
+        // Audio and sprites load in the background
+        loadAssetsAsync();
         
 		// Create legacy score label (kept but not added to layout)
 		scoreLabel = new JLabel("Score: 0 | High Score: " + highScore);
@@ -83,38 +108,6 @@ public class SnakeGame extends JFrame {
 		scoreLabel.setHorizontalAlignment(SwingConstants.CENTER);
 		scoreLabel.setBorder(BorderFactory.createEmptyBorder(10, 0, 10, 0));
 
-		// Create modern HUD panel with separate labels
-		hudPanel = new JPanel(new GridBagLayout());
-		hudPanel.setOpaque(false);
-		GridBagConstraints gbc = new GridBagConstraints();
-		gbc.insets = new Insets(6, 10, 6, 10);
-		gbc.gridy = 0;
-
-		levelLabel = new JLabel();
-		levelLabel.setFont(new Font("Arial", Font.BOLD, 14));
-		gbc.gridx = 0; gbc.anchor = GridBagConstraints.WEST;
-		hudPanel.add(levelLabel, gbc);
-
-		playerScoreLabel = new JLabel();
-		playerScoreLabel.setFont(new Font("Arial", Font.BOLD, 16));
-		gbc.gridx = 1; gbc.anchor = GridBagConstraints.CENTER;
-		hudPanel.add(playerScoreLabel, gbc);
-
-		aiScoreLabel = new JLabel();
-		aiScoreLabel.setFont(new Font("Arial", Font.BOLD, 16));
-		gbc.gridx = 2; gbc.anchor = GridBagConstraints.CENTER;
-		hudPanel.add(aiScoreLabel, gbc);
-
-		highScoreLabel = new JLabel();
-		highScoreLabel.setFont(new Font("Arial", Font.BOLD, 14));
-		gbc.gridx = 3; gbc.anchor = GridBagConstraints.EAST;
-		hudPanel.add(highScoreLabel, gbc);
-
-		multiplierLabel = new JLabel();
-		multiplierLabel.setFont(new Font("Arial", Font.BOLD, 12));
-		multiplierLabel.setForeground(new Color(0, 255, 127));
-		gbc.gridx = 4; gbc.anchor = GridBagConstraints.EAST;
-		hudPanel.add(multiplierLabel, gbc);
         
         // Create menu panel with buttons
         menuPanel = createMenuPanel();
@@ -124,7 +117,7 @@ public class SnakeGame extends JFrame {
         
         // Layout
 		setLayout(new BorderLayout());
-		add(hudPanel, BorderLayout.NORTH);
+		add(hud, BorderLayout.NORTH);
         add(menuPanel, BorderLayout.CENTER);
         
         // Size the frame to preferred sizes of components (ensures 600x600 game area)
@@ -137,6 +130,43 @@ public class SnakeGame extends JFrame {
         
         // Show main menu first
         showMainMenu();
+        
+        // Percentile summary of the whole session on exit
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            if (metrics.hasSamples()) {
+                System.out.println("Timing summary:\n" + metrics.summary());
+            }
+        }, "perf-summary"));
+        
+        // A score submitted just before the window closed still reaches the file
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            scores.close(2000);
+            closeLeaderboard();
+        }, "score-flush"));
+    }
+    
+    /**
+     * Parses "<cols>x<rows>"; anything missing, invalid or over
+     * {@link GameState#MAX_BOARD_CELLS} cells gives the classic board that exactly
+     * fills the panel.
+     */
+    private static Dimension parseBoardSize(String spec) {
+        Dimension classic = new Dimension(WINDOW_WIDTH / UNIT_SIZE, WINDOW_HEIGHT / UNIT_SIZE);
+        if (spec == null) {
+            return classic;
+        }
+        try {
+            String[] parts = spec.toLowerCase().split("x");
+            int cols = Integer.parseInt(parts[0].trim());
+            int rows = Integer.parseInt(parts[1].trim());
+            if (parts.length == 2 && cols >= GameState.MIN_BOARD_SIZE && rows >= GameState.MIN_BOARD_SIZE
+                    && (long) cols * rows <= GameState.MAX_BOARD_CELLS) {
+                return new Dimension(cols, rows);
+            }
+        } catch (Exception ignored) {
+        }
+        System.out.println("Invalid board size '" + spec + "', using " + classic.width + "x" + classic.height);
+        return classic;
     }
     
     private JPanel createMenuPanel() {
@@ -169,6 +199,7 @@ public class SnakeGame extends JFrame {
                 }
                 
                 g2d.dispose();
+                StartupTimer.framePainted();
             }
         };
         panel.setLayout(new BorderLayout());
@@ -243,6 +274,9 @@ public class SnakeGame extends JFrame {
         JButton level5Button = createStyledButton("LEVEL 5 - Space AI Snake Battle + Bomb", new Color(255, 20, 147), new Color(199, 21, 133));
         level5Button.addActionListener(e -> startLevel(5));
         
+        JButton leaderboardButton = createStyledButton("LEADERBOARD", new Color(218, 165, 32), new Color(184, 134, 11));
+        leaderboardButton.addActionListener(e -> showLeaderboard());
+        
         // Quit button with modern styling
         JButton quitButton = createStyledButton("QUIT", new Color(128, 128, 128), new Color(100, 100, 100));
         quitButton.addActionListener(e -> System.exit(0));
@@ -258,6 +292,8 @@ public class SnakeGame extends JFrame {
         buttonsPanel.add(level4Button);
         buttonsPanel.add(Box.createVerticalStrut(20));
         buttonsPanel.add(level5Button);
+        buttonsPanel.add(Box.createVerticalStrut(20));
+        buttonsPanel.add(leaderboardButton);
         buttonsPanel.add(Box.createVerticalStrut(30));
         buttonsPanel.add(quitButton);
         buttonsPanel.add(Box.createVerticalGlue());
@@ -327,10 +363,109 @@ public class SnakeGame extends JFrame {
         return button;
     }
     
+    /**
+     * Starts every startup load that the menu can do without on a small pool
+     * of daemon threads, one task each so they run in parallel: opening the
+     * audio line, decoding the three sounds, painting the sprite atlas and
+     * opening the leaderboard. Sounds are silent until their own load
+     * finishes; the game panel waits for the sprites only if a level starts
+     * before they are ready.
+     */
+    private void loadAssetsAsync() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService loader = Executors.newFixedThreadPool(ASSET_THREADS, task -> {
+            Thread thread = new Thread(task, "asset-loader-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        spriteLoad = CompletableFuture.supplyAsync(() -> new SpriteAtlas(UNIT_SIZE), loader);
+        CompletableFuture<?>[] loads = {
+            spriteLoad,
+            CompletableFuture.runAsync(this::initializeAudio, loader),
+            CompletableFuture.runAsync(this::loadBackgroundMusic, loader),
+            CompletableFuture.runAsync(this::loadEatingSound, loader),
+            CompletableFuture.runAsync(this::loadMultiplierSound, loader),
+            CompletableFuture.runAsync(this::openLeaderboard, loader),
+        };
+        loader.shutdown(); // the threads exit once the queued loads are done
+        CompletableFuture.allOf(loads).whenComplete((done, error) -> StartupTimer.assetsLoaded());
+    }
+    
+    private void openLeaderboard() {
+        try {
+            leaderboard = Leaderboard.open(new File("leaderboard.dat").toPath());
+        } catch (Exception e) {
+            System.out.println("Leaderboard unavailable: " + e.getMessage());
+        }
+    }
+    
+    private void closeLeaderboard() {
+        Leaderboard board = leaderboard;
+        if (board == null) return;
+        try {
+            board.close();
+        } catch (Exception e) {
+            System.out.println("Failed to close leaderboard: " + e.getMessage());
+        }
+    }
+    
+    /** Appends the level just finished to the leaderboard; returns its placing for the end-of-level dialog, or "". */
+    private String recordGame() {
+        Leaderboard board = leaderboard;
+        if (board == null) return "";
+        try {
+            int rank = board.record(new Leaderboard.Entry(currentLevel, state.status, state.score, state.aiScore,
+                (int) Math.min(Integer.MAX_VALUE, state.getElapsedMs()), levelSeed, System.currentTimeMillis()));
+            return rank > 0 ? "\nLeaderboard: #" + rank + " on level " + currentLevel : "";
+        } catch (Exception e) {
+            System.out.println("Failed to record game: " + e.getMessage());
+            return "";
+        }
+    }
+    
+    /** The top scores of every level, one tab each, read straight from the leaderboard's index. */
+    private void showLeaderboard() {
+        Leaderboard board = leaderboard;
+        if (board == null) {
+            JOptionPane.showMessageDialog(this, "The leaderboard is not available.", "Leaderboard", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        String[] columns = {"#", "Score", "AI", "Result", "Time", "Played", "Seed"};
+        java.text.SimpleDateFormat played = new java.text.SimpleDateFormat("yyyy-MM-dd HH:mm");
+        JTabbedPane tabs = new JTabbedPane();
+        for (int level = 1; level <= Leaderboard.LEVELS; level++) {
+            java.util.List<Leaderboard.Entry> top = board.top(level, Leaderboard.TOP);
+            Object[][] rows = new Object[top.size()][];
+            for (int i = 0; i < rows.length; i++) {
+                Leaderboard.Entry e = top.get(i);
+                long seconds = e.durationMs / 1000;
+                rows[i] = new Object[] {
+                    i + 1, e.score, level == 5 ? String.valueOf(e.aiScore) : "",
+                    e.status == GameState.Status.LEVEL_COMPLETE ? "Won" : e.status == GameState.Status.LEVEL_FAILED ? "Time up" : "Game over",
+                    seconds / 60 + ":" + (seconds % 60 < 10 ? "0" : "") + seconds % 60,
+                    played.format(new java.util.Date(e.timestamp)), String.format("%016x", e.seed)
+                };
+            }
+            JTable table = new JTable(rows, columns) {
+                @Override
+                public boolean isCellEditable(int row, int column) {
+                    return false;
+                }
+            };
+            table.getColumnModel().getColumn(0).setPreferredWidth(30);
+            table.getColumnModel().getColumn(5).setPreferredWidth(120);
+            table.getColumnModel().getColumn(6).setPreferredWidth(130);
+            tabs.addTab("Level " + level, new JScrollPane(table));
+        }
+        tabs.setPreferredSize(new Dimension(560, 380));
+        JOptionPane.showMessageDialog(this, tabs, "Leaderboard (" + board.size() + " games)", JOptionPane.PLAIN_MESSAGE);
+    }
+    
     private void initializeAudio() {
-        loadBackgroundMusic();
-        loadEatingSound();
-        loadMultiplierSound();
+        if (audio.start()) {
+            System.out.println(String.format(java.util.Locale.ROOT, "Audio mixer started (%d-frame buffer, ~%.0f ms latency)",
+                audio.getBufferFrames(), audio.getLatencyMillis()));
+        }
     }
 
 	private AudioInputStream loadAudioFromResourcesOrFile(String relativePath) throws Exception {
@@ -357,13 +492,13 @@ public class SnakeGame extends JFrame {
 	private void loadBackgroundMusic() {
         try {
 			AudioInputStream audioIn = loadAudioFromResourcesOrFile("sounds/background.wav");
-            backgroundMusic = AudioSystem.getClip();
-            backgroundMusic.open(audioIn);
-            backgroundMusic.setFramePosition(0); // start at beginning
+            backgroundMusic = audio.load(audioIn);
+            // A level started before the music was ready gets it now
+            SwingUtilities.invokeLater(() -> {
+                if (running && !inMenu) startBackgroundMusic();
+            });
         } catch (UnsupportedAudioFileException e) {
             System.out.println("Unsupported audio file: " + e.getMessage());
-        } catch (LineUnavailableException e) {
-            System.out.println("Audio line unavailable: " + e.getMessage());
         } catch (Exception e) {
             System.out.println("I/O error: " + e.getMessage());
         }
@@ -372,8 +507,7 @@ public class SnakeGame extends JFrame {
 	private void loadEatingSound() {
         try {
 			AudioInputStream audioIn = loadAudioFromResourcesOrFile("sounds/eat.wav");
-			eatingSound = AudioSystem.getClip();
-			eatingSound.open(audioIn);
+			eatingSound = audio.load(audioIn);
 			System.out.println("Eating sound loaded");
         } catch (Exception e) {
             System.out.println("Failed to load eating sound: " + e.getMessage());
@@ -383,56 +517,52 @@ public class SnakeGame extends JFrame {
 	private void loadMultiplierSound() {
         try {
 			AudioInputStream audioIn = loadAudioFromResourcesOrFile("sounds/multiplier.wav");
-			multiplierSound = AudioSystem.getClip();
-			multiplierSound.open(audioIn);
+			multiplierSound = audio.load(audioIn);
 			System.out.println("Multiplier sound loaded");
         } catch (Exception e) {
             System.out.println("Failed to load multiplier sound: " + e.getMessage());
         }
     }
     
+    // Triggers only queue a command for the mixer thread, so they are safe and cheap from the game loop
     private void playEatingSound() {
-        if (eatingSound != null) {
-            eatingSound.setFramePosition(0); // rewind
-            eatingSound.start();
-        }
+        audio.play(eatingSound, 1f);
     }
     
     private void playMultiplierSound() {
-        if (multiplierSound != null) {
-            multiplierSound.setFramePosition(0);
-            multiplierSound.start();
-        }
+        audio.play(multiplierSound, 1f);
     }
     
     private void startBackgroundMusic() {
-        if (backgroundMusic != null) {
-            backgroundMusic.setFramePosition(0); // rewind
-            backgroundMusic.loop(Clip.LOOP_CONTINUOUSLY);
-            backgroundMusic.start();
+        if (backgroundMusic != AudioMixer.NO_SAMPLE) {
+            audio.stop(MUSIC_CHANNEL); // restart from the beginning
+            audio.loop(backgroundMusic, MUSIC_GAIN, MUSIC_CHANNEL);
             System.out.println("Background music started");
         } else {
-            System.out.println("Background music Clip is null");
+            System.out.println("Background music not loaded");
         }
     }
     
     private void stopBackgroundMusic() {
-        if (backgroundMusic != null && backgroundMusic.isRunning()) {
-            backgroundMusic.stop();
-        }
+        audio.stop(MUSIC_CHANNEL);
     }
     
     private void showMainMenu() {
         inMenu = true;
         running = false;
-        if (timer != null) {
-            timer.stop();
+        stopGameLoop();
+        if (recording != null) {
+            recording.abort();
+            recording = null;
         }
-        if (appleTimer != null) {
-            appleTimer.stop();
+        if (playback != null) {
+            closeReplay(playback);
+            playback = null;
         }
-        if (aiMoveTimer != null) {
-            aiMoveTimer.stop();
+        NetClient client = net;
+        if (client != null) {
+            net = null;
+            client.close();
         }
         
         // Stop background music
@@ -445,11 +575,11 @@ public class SnakeGame extends JFrame {
         menuPanel.repaint();
         
 		// Update HUD to show high score prominently in menu
-		levelLabel.setText("");
-		playerScoreLabel.setText("");
-		aiScoreLabel.setText("");
-		highScoreLabel.setText("High: " + highScore);
-		multiplierLabel.setText("");
+		hud.setLevel(Hud.HIDDEN, Hud.HIDDEN);
+		hud.setScore(Hud.HIDDEN);
+		hud.setAiScore(Hud.HIDDEN);
+		hud.setHighScore(highScore);
+		hud.setMultiplierSeconds(Hud.HIDDEN);
     }
     
     private void startLevel(int level) {
@@ -465,445 +595,378 @@ public class SnakeGame extends JFrame {
         initGame();
     }
     
-    private void loadHighScore() {
+    /**
+     * Joins the {@link GameServer} at {@code address} ("host" or
+     * "host:port"). Connecting happens off the EDT; once the server's board
+     * has arrived the game panel shows it, the arrow keys steer this
+     * player's snake and Escape leaves.
+     */
+    public void joinServer(String address) {
+        int colon = address.lastIndexOf(':');
+        String host = colon < 0 ? address : address.substring(0, colon);
+        int port;
         try {
-            File scoreFile = new File("highscore.txt");
-            if (scoreFile.exists()) {
-                Scanner scanner = new Scanner(scoreFile);
-                if (scanner.hasNextInt()) {
-                    highScore = scanner.nextInt();
-                }
-                scanner.close();
-            }
-        } catch (Exception e) {
-            // If there's any error, just use default high score of 0
-            highScore = 0;
-        }
-    }
-    
-    private void saveHighScore() {
-        try {
-            File scoreFile = new File("highscore.txt");
-            PrintWriter writer = new PrintWriter(scoreFile);
-            writer.println(highScore);
-            writer.close();
-        } catch (Exception e) {
-            // If there's any error saving, just ignore it
+            port = colon < 0 ? GameServer.DEFAULT_PORT : Integer.parseInt(address.substring(colon + 1));
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(this, "Bad server address: " + address, "Multiplayer", JOptionPane.ERROR_MESSAGE);
+            return;
         }
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                return NetClient.connect(host, port);
+            } catch (java.io.IOException e) {
+                throw new java.io.UncheckedIOException(e);
+            }
+        }).whenComplete((client, error) -> SwingUtilities.invokeLater(() -> {
+            if (error != null) {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                JOptionPane.showMessageDialog(this, "Could not join " + address + ": " + cause.getMessage(),
+                    "Multiplayer", JOptionPane.ERROR_MESSAGE);
+            } else {
+                startNetGame(client);
+            }
+        }));
     }
     
-    private void initGame() {
-        snake.clear();
-        snake.add(new Point(WINDOW_WIDTH / 2, WINDOW_HEIGHT / 2));
-        snake.add(new Point(WINDOW_WIDTH / 2 - UNIT_SIZE, WINDOW_HEIGHT / 2));
-        snake.add(new Point(WINDOW_WIDTH / 2 - UNIT_SIZE * 2, WINDOW_HEIGHT / 2));
-        snake.add(new Point(WINDOW_WIDTH / 2 - UNIT_SIZE * 3, WINDOW_HEIGHT / 2));
-        
-        direction = 'R';
-        score = 0;
-		aiScore = 0;
-        scoreMultiplierActive = false;
-        if (multiplierTimer != null) {
-            multiplierTimer.stop();
+    private void startNetGame(NetClient client) {
+        if (!inMenu) {
+            showMainMenu();
         }
-        
-        // Set level-specific properties
-        setLevelProperties();
-        
-        gameStartTime = System.currentTimeMillis();
-        updateScoreLabel();
-        
-        spawnFood();
+        currentLevel = ARENA_THEME_LEVEL;
+        inMenu = false;
+        getContentPane().remove(menuPanel);
+        getContentPane().add(gamePanel, BorderLayout.CENTER);
+        gamePanel.revalidate();
+        gamePanel.repaint();
+        hud.setLevel(Hud.HIDDEN, Hud.HIDDEN);
+        hud.setAiScore(Hud.HIDDEN);
+        hud.setMultiplierSeconds(Hud.HIDDEN);
+        net = client;
         running = true;
-        
-        // Start background music
         startBackgroundMusic();
         
-        // Start game timer with level-specific speed
-        if (timer != null) {
-            timer.stop();
-        }
-        
-        int gameDelay = getGameDelay();
-        timer = new Timer(gameDelay, e -> gameLoop());
-        timer.start();
-        
-        // Start apple timer for level 3+
-        if (currentLevel >= 3) {
-            startAppleTimer();
-        }
-        
-        // Start bomb timer for level 4 and 5
-        if (currentLevel == 4 || currentLevel == 5) {
-            startBombTimer();
-        }
-        
-        // Start AI snake for level 5
-        if (currentLevel == 5) {
-            startAISnake();
-        }
+        // The server's ticks drive the frames; bursts of them collapse into one EDT update
+        client.start(new NetClient.Listener() {
+            @Override
+            public void ticked(NetClient c) {
+                if (netFramePending.compareAndSet(false, true)) {
+                    SwingUtilities.invokeLater(() -> {
+                        netFramePending.set(false);
+                        if (net == c) showNetFrame(c);
+                    });
+                }
+            }
+            
+            @Override
+            public void disconnected(NetClient c, String reason) {
+                SwingUtilities.invokeLater(() -> {
+                    if (net != c) return; // left on purpose
+                    showMainMenu();
+                    JOptionPane.showMessageDialog(SnakeGame.this, "Disconnected: " + reason,
+                        "Multiplayer", JOptionPane.INFORMATION_MESSAGE);
+                });
+            }
+        });
     }
     
-    private void setLevelProperties() {
-        switch (currentLevel) {
-            case 1:
-                levelTimeLimit = 180000; // 3 minutes
-                break;
-            case 2:
-                levelTimeLimit = 0; // No time limit
-                break;
-            case 3:
-                levelTimeLimit = 0; // No time limit
-                break;
-            case 4:
-                levelTimeLimit = 0; // No time limit
-                break;
-            case 5:
-                levelTimeLimit = 0; // No time limit
-                break;
+    /** Puts this player's score and the room's best in the HUD and redraws the arena. */
+    private void showNetFrame(NetClient client) {
+        int score;
+        int best = 0;
+        synchronized (client) {
+            score = client.getScore(client.getAgent());
+            for (int a = 0; a < client.getAgentCount(); a++) {
+                best = Math.max(best, client.getScore(a));
+            }
         }
+        hud.setScore(score);
+        hud.setHighScore(best);
+        gamePanel.showNetFrame();
     }
     
-    private int getGameDelay() {
-        switch (currentLevel) {
-            case 1:
-                return 100; // Normal speed
-            case 2:
-                return 80; // Slightly faster
-            case 3:
-                return 70; // Faster
-            case 4:
-                return 60; // Fast + bomb challenge
-            case 5:
-                return 70; // Same pace as level 3 + AI + bomb challenge
-            default:
-                return 100;
+    /**
+     * Shows the replay in {@code file} in the game panel, driven by its
+     * recorded turns instead of the keyboard. Space pauses, Left and Right
+     * step back and forward a tick, Up and Down change the speed (1x to
+     * 64x), Home and End jump to either end, and the timeline along the
+     * bottom can be clicked or dragged to scrub.
+     */
+    public void playReplay(File file) throws IOException {
+        ReplayFile replay = ReplayFile.open(file);
+        if (replay.cols != state.getCols() || replay.rows != state.getRows()) {
+            closeReplay(replay);
+            JOptionPane.showMessageDialog(this, "Replay was recorded on a " + replay.cols + "x" + replay.rows + " board",
+                "Replay", JOptionPane.ERROR_MESSAGE);
+            return;
         }
+        playback = replay;
+        replayPaused = false;
+        replaySpeed = 1;
+        replaySeek.set(NO_SEEK);
+        replayNudge.set(0);
+        replayEndShown = false;
+        startLevel(replay.level);
     }
     
-    private void startAppleTimer() {
-        if (appleTimer != null) {
-            appleTimer.stop();
-        }
-        appleTimer = new Timer(4000, e -> {
-            appleVisible = false;
-            // For level 3+, spawn new apple elsewhere after 1 second
-            if (currentLevel >= 3) {
-                Timer spawnTimer = new Timer(1000, evt -> {
-                    spawnFood();
-                    appleVisible = true;
-                });
-                spawnTimer.setRepeats(false);
-                spawnTimer.start();
-            }
-        });
-        appleTimer.setRepeats(false);
-        appleTimer.start();
-        appleVisible = true;
-    }
-    
-    private void startBombTimer() {
-        if (bombTimer != null) {
-            bombTimer.stop();
-        }
-        bombTimer = new Timer(4000, e -> {
-            bombVisible = false;
-            // Spawn new bomb elsewhere after 1 second
-            Timer spawnTimer = new Timer(1000, evt -> {
-                spawnBomb();
-                bombVisible = true;
-            });
-            spawnTimer.setRepeats(false);
-            spawnTimer.start();
-        });
-        bombTimer.setRepeats(false);
-        bombTimer.start();
-        spawnBomb();
-        bombVisible = true;
+    private void closeReplay(ReplayFile replay) {
+        try {
+            replay.close();
+        } catch (IOException e) {
+            System.out.println("Failed to close replay: " + e.getMessage());
+        }
     }
     
-    private void spawnBomb() {
-        int x, y;
-        do {
-            x = random.nextInt(WINDOW_WIDTH / UNIT_SIZE) * UNIT_SIZE;
-            y = random.nextInt(WINDOW_HEIGHT / UNIT_SIZE) * UNIT_SIZE;
-        } while (snake.contains(new Point(x, y)) && (food == null || !new Point(x, y).equals(food)));
-        
-        bomb = new Point(x, y);
+    /** Replay viewer: jumps to the start of {@code tick} (past the end: the end) on the next game tick. */
+    private void seekReplay(long tick) {
+        replayNudge.set(0);
+        replaySeek.set(Math.max(0, tick));
     }
     
-    private void startAISnake() {
-        // Initialize AI snake
-        aiSnake = new ArrayList<>();
-        aiSnake.add(new Point(WINDOW_WIDTH - UNIT_SIZE * 4, WINDOW_HEIGHT - UNIT_SIZE * 4));
-        aiSnake.add(new Point(WINDOW_WIDTH - UNIT_SIZE * 3, WINDOW_HEIGHT - UNIT_SIZE * 4));
-        aiSnake.add(new Point(WINDOW_WIDTH - UNIT_SIZE * 2, WINDOW_HEIGHT - UNIT_SIZE * 4));
-        aiSnake.add(new Point(WINDOW_WIDTH - UNIT_SIZE, WINDOW_HEIGHT - UNIT_SIZE * 4));
-        
-        aiDirection = 'L';
-        aiSnakeActive = true;
-        
-        // Start AI movement timer
-        if (aiMoveTimer != null) {
-            aiMoveTimer.stop();
-        }
-        aiMoveTimer = new Timer(150, e -> moveAISnake());
-        aiMoveTimer.start();
-    }
     
-    private void moveAISnake() {
-        if (!aiSnakeActive || aiSnake == null || aiSnake.isEmpty()) return;
-        
-        Point aiHead = aiSnake.get(0);
-        Point newAiHead = new Point(aiHead);
-        
-        // Simple AI: try to move towards food, avoid walls and obstacles
-        Point target = food != null ? food : new Point(WINDOW_WIDTH / 2, WINDOW_HEIGHT / 2);
-        
-        // Calculate direction to target
-        int dx = target.x - aiHead.x;
-        int dy = target.y - aiHead.y;
-        
-        // Try to move in the direction of the target, but avoid walls
-        char newDirection = aiDirection;
-        
-        if (Math.abs(dx) > Math.abs(dy)) {
-            // Move horizontally
-            if (dx > 0 && aiDirection != 'L') {
-                newDirection = 'R';
-            } else if (dx < 0 && aiDirection != 'R') {
-                newDirection = 'L';
-            }
-        } else {
-            // Move vertically
-            if (dy > 0 && aiDirection != 'U') {
-                newDirection = 'D';
-            } else if (dy < 0 && aiDirection != 'D') {
-                newDirection = 'U';
+    private void initGame() {
+        long seed = playback != null ? playback.seed : seeds.nextLong();
+        levelSeed = seed;
+        engine.reset(currentLevel, seed);
+        if (recording != null) {
+            recording.abort();
+            recording = null;
+        }
+        if (RECORD_DIR != null && playback == null) {
+            try {
+                File dir = new File(RECORD_DIR);
+                dir.mkdirs();
+                File file = new File(dir, String.format("level%d-%016x.snkr", currentLevel, seed));
+                recording = ReplayFile.Writer.create(file, state.getCols(), state.getRows(), currentLevel, seed, KEYFRAME_TICKS);
+            } catch (IOException e) {
+                System.out.println("Failed to record replay: " + e.getMessage());
             }
         }
+        inputQueue.clear();
+        gamePanel.notePlayerMoved(GameState.NO_CELL);
+        updateScoreLabel();
+        running = true;
         
-        // Check if the new direction is safe
-        Point testHead = new Point(aiHead);
-        switch (newDirection) {
-            case 'U':
-                testHead.y -= UNIT_SIZE;
-                break;
-            case 'D':
-                testHead.y += UNIT_SIZE;
-                break;
-            case 'L':
-                testHead.x -= UNIT_SIZE;
-                break;
-            case 'R':
-                testHead.x += UNIT_SIZE;
-                break;
-        }
-        
-        // Wrap around walls
-        if (testHead.x < 0) testHead.x = WINDOW_WIDTH - UNIT_SIZE;
-        if (testHead.x >= WINDOW_WIDTH) testHead.x = 0;
-        if (testHead.y < 0) testHead.y = WINDOW_HEIGHT - UNIT_SIZE;
-        if (testHead.y >= WINDOW_HEIGHT) testHead.y = 0;
+        // Start background music
+        startBackgroundMusic();
         
-        // Check if the new position is safe (not colliding with player snake or itself)
-        if (!snake.contains(testHead) && !aiSnake.contains(testHead)) {
-            aiDirection = newDirection;
-        } else {
-            // Try alternative directions
-            char[] alternatives = {'U', 'D', 'L', 'R'};
-            for (char alt : alternatives) {
-                if (alt != aiDirection && alt != getOppositeDirection(aiDirection)) {
-                    Point altHead = new Point(aiHead);
-                    switch (alt) {
-                        case 'U': altHead.y -= UNIT_SIZE; break;
-                        case 'D': altHead.y += UNIT_SIZE; break;
-                        case 'L': altHead.x -= UNIT_SIZE; break;
-                        case 'R': altHead.x += UNIT_SIZE; break;
+        // Start game timer with level-specific speed
+        stopGameLoop();
+        
+        int gameDelay = GameEngine.getGameDelay(currentLevel);
+        metrics.loopStarted();
+        if (FIXED_STEP) {
+            gamePanel.enableActiveRendering();
+            fixedLoop = new FixedStepLoop(new FixedStepLoop.Handler() {
+                @Override
+                public boolean tick() {
+                    metrics.probeEventQueue();
+                    if (!advanceTick()) {
+                        SwingUtilities.invokeLater(() -> handleGameEnd());
+                        return false;
                     }
-                    
-                    // Wrap around walls
-                    if (altHead.x < 0) altHead.x = WINDOW_WIDTH - UNIT_SIZE;
-                    if (altHead.x >= WINDOW_WIDTH) altHead.x = 0;
-                    if (altHead.y < 0) altHead.y = WINDOW_HEIGHT - UNIT_SIZE;
-                    if (altHead.y >= WINDOW_HEIGHT) altHead.y = 0;
-                    
-                    if (!snake.contains(altHead) && !aiSnake.contains(altHead)) {
-                        aiDirection = alt;
-                        break;
+                    if (hudChanged()) {
+                        SwingUtilities.invokeLater(() -> updateScoreLabel());
                     }
+                    return true;
                 }
-            }
-        }
-        
-        // Move AI snake
-        Point finalHead = new Point(aiHead);
-        switch (aiDirection) {
-            case 'U':
-                finalHead.y -= UNIT_SIZE;
-                break;
-            case 'D':
-                finalHead.y += UNIT_SIZE;
-                break;
-            case 'L':
-                finalHead.x -= UNIT_SIZE;
-                break;
-            case 'R':
-                finalHead.x += UNIT_SIZE;
-                break;
-        }
-        
-        // Wrap around walls
-        if (finalHead.x < 0) finalHead.x = WINDOW_WIDTH - UNIT_SIZE;
-        if (finalHead.x >= WINDOW_WIDTH) finalHead.x = 0;
-        if (finalHead.y < 0) finalHead.y = WINDOW_HEIGHT - UNIT_SIZE;
-        if (finalHead.y >= WINDOW_HEIGHT) finalHead.y = 0;
-        
-		aiSnake.add(0, finalHead);
-
-		// AI self-collision check (after moving)
-		for (int i = 1; i < aiSnake.size(); i++) {
-			if (finalHead.equals(aiSnake.get(i))) {
-				killAISnake(30); // Small reward for AI self-destruct
-				return;
-			}
-		}
-        
-		// Check if AI snake ate food
-		if (finalHead.equals(food) && appleVisible) {
-			// AI snake grows and scores
-			aiScore += 10;
-			spawnFood();
-			updateScoreLabel();
-		} else {
-            // Remove tail
-            aiSnake.remove(aiSnake.size() - 1);
+                
+                @Override
+                public void render(double alpha) {
+                    gamePanel.renderActive(playback != null && !replaySmooth ? 1.0 : alpha);
+                }
+            }, gameDelay, getRefreshRate());
+            fixedLoop.setMetrics(metrics);
+            fixedLoop.start();
+        } else {
+            timer = new Timer(gameDelay, e -> gameLoop());
+            timer.start();
         }
     }
-
-	private void killAISnake(int rewardPoints) {
-		aiSnakeActive = false;
-		if (aiMoveTimer != null) {
-			aiMoveTimer.stop();
-		}
-		score += Math.max(0, rewardPoints);
-		updateScoreLabel();
-	}
-
-	private void resetHighScoreOnStartup() {
-		try {
-			highScore = 0;
-			saveHighScore();
-		} catch (Exception ignored) {
-			// If saving fails, we still keep in-memory highScore at 0 for this run
-		}
-	}
     
-    private char getOppositeDirection(char dir) {
-        switch (dir) {
-            case 'U': return 'D';
-            case 'D': return 'U';
-            case 'L': return 'R';
-            case 'R': return 'L';
-            default: return dir;
+    private void stopGameLoop() {
+        if (timer != null) {
+            timer.stop();
+        }
+        if (fixedLoop != null) {
+            fixedLoop.stop();
+            System.out.println("Game loop: " + fixedLoop.summary());
+            fixedLoop = null;
         }
     }
     
-    private void spawnFood() {
-        int x, y;
-        do {
-            x = random.nextInt(WINDOW_WIDTH / UNIT_SIZE) * UNIT_SIZE;
-            y = random.nextInt(WINDOW_HEIGHT / UNIT_SIZE) * UNIT_SIZE;
-        } while (snake.contains(new Point(x, y)));
-        
-        food = new Point(x, y);
-        
-        // 20% chance to spawn a multiplier apple
-        if (random.nextDouble() < 0.2) {
-            foodType = "multiplier";
-        } else {
-            foodType = "apple";
-        }
-        
-        // For level 3, start apple timer
-        if (currentLevel == 3) {
-            startAppleTimer();
+    private int getRefreshRate() {
+        GraphicsConfiguration gc = getGraphicsConfiguration();
+        if (gc != null) {
+            int rate = gc.getDevice().getDisplayMode().getRefreshRate();
+            if (rate != DisplayMode.REFRESH_RATE_UNKNOWN) {
+                return rate;
+            }
         }
+        return 60;
     }
     
 	private void gameLoop() {
         if (!running) return;
+        metrics.timerFired(System.nanoTime(), timer.getDelay());
+        metrics.probeEventQueue();
         
-        // Check level-specific win/lose conditions
-        if (checkLevelConditions()) {
+        if (!advanceTick()) {
+            handleGameEnd();
             return;
         }
         
-        move();
-        checkCollision();
-        checkFood();
-        checkBombCollision();
-        checkAIBombCollision();
-        checkAICollision();
-        
 		// Update HUD each frame for smooth, separate UI (timer, scores, multiplier)
 		updateScoreLabel();
         
-        gamePanel.repaint();
+        gamePanel.repaintDirtyCells();
+        metrics.frameShown();
     }
     
-    private boolean checkLevelConditions() {
-        // Level 1: Check time limit and score
-        if (currentLevel == 1) {
-            long elapsedTime = System.currentTimeMillis() - gameStartTime;
-            if (elapsedTime >= levelTimeLimit) {
-                if (score >= 300) {
-                    levelComplete();
-                } else {
-                    levelFailed();
-                }
-                return true;
+    /**
+     * Runs one engine tick and plays its sounds. Returns false once the level
+     * has ended; the caller then shows the result via {@link #handleGameEnd()}
+     * on the EDT.
+     */
+    private boolean advanceTick() {
+        if (playback != null) {
+            return advanceReplay();
+        }
+        long start = System.nanoTime();
+        SnakeBody snake = state.snake;
+        int tailBefore = snake.tail();
+        int sizeBefore = snake.size();
+        
+        char input = inputQueue.poll(state.direction, System.nanoTime());
+        if (recording != null) {
+            try {
+                recording.step(engine, input);
+            } catch (IOException e) {
+                System.out.println("Failed to record replay: " + e.getMessage());
+                recording.abort();
+                recording = null;
             }
         }
-        
-        // Level 2, 3, 4 & 5: Check if score reaches 300
-        if (currentLevel == 2 || currentLevel == 3 || currentLevel == 4 || currentLevel == 5) {
-            if (score >= 300) {
-                levelComplete();
-                return true;
+        engine.step(input);
+        gamePanel.notePlayerMoved(snake.size() > sizeBefore ? snake.tail() : tailBefore);
+        playStepSounds();
+        metrics.tickDone(start);
+        return state.isRunning();
+    }
+    
+    /**
+     * Replay counterpart of {@link #advanceTick()}: carries out the latest
+     * seek or step request, otherwise plays {@code replaySpeed} recorded
+     * ticks unless paused. The viewer stays on the last frame at the end so
+     * it can be scrubbed back; only a read error ends it.
+     */
+    private boolean advanceReplay() {
+        long start = System.nanoTime();
+        ReplayFile replay = playback;
+        SnakeBody snake = state.snake;
+        int tailBefore = snake.tail();
+        int sizeBefore = snake.size();
+        int steps = 0;
+        try {
+            long target = replaySeek.getAndSet(NO_SEEK);
+            int nudge = replayNudge.getAndSet(0);
+            if (target != NO_SEEK || nudge != 0) {
+                // An ended level sits one step past the start of its last tick
+                long position = target != NO_SEEK ? target : state.isRunning() ? state.tick : state.tick + 1;
+                replay.seek(engine, Math.max(0, position + nudge));
+            } else if (!replayPaused) {
+                for (; steps < replaySpeed && !replay.isAtEnd(state); steps++) {
+                    replay.step(engine);
+                }
             }
+        } catch (IOException e) {
+            System.out.println("Failed to read replay: " + e.getMessage());
+            return false;
+        }
+        // Only a single step can be drawn sliding in from the previous frame
+        replaySmooth = steps == 1;
+        gamePanel.notePlayerMoved(steps != 1 ? GameState.NO_CELL : snake.size() > sizeBefore ? snake.tail() : tailBefore);
+        if (steps == 1 && replaySpeed == 1) {
+            playStepSounds();
+        }
+        if (replay.isAtEnd(state) && !replayEndShown) {
+            replayEndShown = true;
+            SwingUtilities.invokeLater(() -> replayFinished(replay));
+        }
+        metrics.tickDone(start);
+        return true;
+    }
+    
+    private void playStepSounds() {
+        int events = state.events;
+        if ((events & GameEngine.EVENT_ATE_MULTIPLIER) != 0) {
+            playMultiplierSound();
+        } else if ((events & GameEngine.EVENT_ATE_APPLE) != 0) {
+            playEatingSound();
         }
-        
-        return false;
     }
     
-    private void levelComplete() {
-        running = false;
-        timer.stop();
-        if (appleTimer != null) {
-            appleTimer.stop();
+    private void handleGameEnd() {
+        if (!running) return;
+        if (recording != null) {
+            saveRecording(recording);
+            recording = null;
         }
-        if (bombTimer != null) {
-            bombTimer.stop();
+        if (playback != null) {
+            showMainMenu(); // the replay could not be read
+            return;
         }
-        if (aiMoveTimer != null) {
-            aiMoveTimer.stop();
+        String placing = recordGame();
+        switch (state.status) {
+            case GAME_OVER:
+                gameOver(placing);
+                break;
+            case LEVEL_COMPLETE:
+                levelComplete(placing);
+                break;
+            case LEVEL_FAILED:
+                levelFailed(placing);
+                break;
+            default:
+                break;
         }
-        
-        // Stop multiplier timer
-        if (multiplierTimer != null) {
-            multiplierTimer.stop();
+    }
+    
+    private void saveRecording(ReplayFile.Writer replay) {
+        try {
+            File file = replay.finish(state);
+            System.out.println("Replay saved to " + file + " (" + file.length() + " bytes)");
+        } catch (Exception e) {
+            System.out.println("Failed to save replay: " + e.getMessage());
         }
+    }
+    
+    /** Reports, the first time the viewer reaches the end, whether the replay reproduced its recording. */
+    private void replayFinished(ReplayFile replay) {
+        if (playback != replay) return; // left the viewer meanwhile
+        JOptionPane.showMessageDialog(
+            this,
+            "Replay finished: " + state.status + ", score " + state.score
+                + "\nRecorded: " + replay.status + ", score " + replay.score
+                + (replay.matches(state) ? "\nReplay verified." : "\nReplay does NOT match the recording!")
+                + "\nScrub back with the timeline, Home or Left; Escape returns to the menu.",
+            "Replay",
+            JOptionPane.INFORMATION_MESSAGE
+        );
+    }
+    
+    private void levelComplete(String placing) {
+        running = false;
+        stopGameLoop();
         
         // Check if this is a new high score
-        if (score > highScore) {
-            highScore = score;
-            saveHighScore();
+        if (state.score > highScore) {
+            highScore = state.score;
+            scores.submit(highScore); // returns at once; the writer thread saves it
         }
         
         int choice = JOptionPane.showConfirmDialog(
             this,
-            "Level " + currentLevel + " Complete!\nYour score: " + score + "\nHigh Score: " + highScore + "\nWould you like to play again?",
+            "Level " + currentLevel + " Complete!\nYour score: " + state.score + "\nHigh Score: " + highScore + placing + "\nWould you like to play again?",
             "Level Complete!",
             JOptionPane.YES_NO_OPTION
         );
@@ -915,27 +978,13 @@ public class SnakeGame extends JFrame {
         }
     }
     
-    private void levelFailed() {
+    private void levelFailed(String placing) {
         running = false;
-        timer.stop();
-        if (appleTimer != null) {
-            appleTimer.stop();
-        }
-        if (bombTimer != null) {
-            bombTimer.stop();
-        }
-        if (aiMoveTimer != null) {
-            aiMoveTimer.stop();
-        }
-        
-        // Stop multiplier timer
-        if (multiplierTimer != null) {
-            multiplierTimer.stop();
-        }
+        stopGameLoop();
         
         int choice = JOptionPane.showConfirmDialog(
             this,
-            "Level " + currentLevel + " Failed!\nTime's up! Your score: " + score + "\nYou need 300 points to win!\nWould you like to try again?",
+            "Level " + currentLevel + " Failed!\nTime's up! Your score: " + state.score + "\nYou need 300 points to win!" + placing + "\nWould you like to try again?",
             "Level Failed!",
             JOptionPane.YES_NO_OPTION
         );
@@ -947,248 +996,294 @@ public class SnakeGame extends JFrame {
         }
     }
     
-    private void move() {
-        Point head = snake.get(0);
-        Point newHead = new Point(head);
+	/** Pushes the current level, time, scores and multiplier to the HUD, which ignores values it already shows. */
+	private void updateScoreLabel() {
+		hud.setLevel(currentLevel, currentLevel == 1 ? timerSecond() : -1);
+		hud.setScore(state.score);
+		hud.setAiScore(currentLevel == 5 ? state.aiScore : Hud.HIDDEN);
+		hud.setHighScore(highScore);
+		hud.setMultiplierSeconds(multiplierSecond());
+	}
+	
+	private long timerSecond() {
+		return state.getRemainingTimeMs() / 1000;
+	}
+	
+	private long multiplierSecond() {
+		return state.scoreMultiplierActive ? (state.getMultiplierRemainingMs() + 999) / 1000 : Hud.HIDDEN;
+	}
+	
+	/** Loop thread: true when a value the HUD shows differs from what was last posted to the EDT. */
+	private boolean hudChanged() {
+		long timer = currentLevel == 1 ? timerSecond() : Hud.HIDDEN;
+		long multiplier = multiplierSecond();
+		if (state.score == postedScore && state.aiScore == postedAiScore
+				&& timer == postedTimerSecond && multiplier == postedMultiplierSecond) {
+			return false;
+		}
+		postedScore = state.score;
+		postedAiScore = state.aiScore;
+		postedTimerSecond = timer;
+		postedMultiplierSecond = multiplier;
+		return true;
+	}
+    
+    private void gameOver(String placing) {
+        running = false;
+        stopGameLoop();
         
-        switch (direction) {
-            case 'U':
-                newHead.y -= UNIT_SIZE;
-                break;
-            case 'D':
-                newHead.y += UNIT_SIZE;
-                break;
-            case 'L':
-                newHead.x -= UNIT_SIZE;
-                break;
-            case 'R':
-                newHead.x += UNIT_SIZE;
-                break;
+        // Check if this is a new high score
+        if (state.score > highScore) {
+            highScore = state.score;
+            scores.submit(highScore); // returns at once; the writer thread saves it
         }
         
-        snake.add(0, newHead);
+        int choice = JOptionPane.showConfirmDialog(
+            this,
+            "Game Over! Your score: " + state.score + "\nHigh Score: " + highScore + placing + "\nWould you like to play again?",
+            "Game Over",
+            JOptionPane.YES_NO_OPTION
+        );
         
-        if (!checkFood()) {
-            snake.remove(snake.size() - 1);
+        if (choice == JOptionPane.YES_OPTION) {
+            startNewGame();
+        } else {
+            showMainMenu();
         }
     }
     
-    private boolean checkFood() {
-        if (snake.get(0).equals(food) && appleVisible) {
-            if (foodType.equals("multiplier")) {
-                // Activate score multiplier
-                activateScoreMultiplier();
-                playMultiplierSound();
-            } else {
-                // Regular apple
-                int points = scoreMultiplierActive ? 20 : 10; // Double points if multiplier active
-                score += points;
-                playEatingSound();
+    private void startNewGame() {
+        startLevel(currentLevel);
+    }
+    
+    private class GamePanel extends JPanel {
+        // Theme + vignette for the current level and size, rendered once and blitted every frame
+        private VolatileImage backgroundCache;
+        private GraphicsConfiguration backgroundConfig;
+        private int backgroundLevel = -1;
+        
+        // Pre-rendered snake, apple and bomb sprites, taken from spriteLoad on first use
+        private SpriteAtlas sprites;
+        
+        // Scratch list of merged repaint rectangles, reused every tick
+        private final ArrayList<Rectangle> dirtyRects = new ArrayList<>();
+        private Rectangle clip;
+        
+        // Top-left corner of the F3 performance overlay
+        private static final int OVERLAY_X = 8;
+        private static final int OVERLAY_Y = 8;
+        
+        // Replay timeline strip along the bottom of the panel; clicking or dragging in it seeks
+        private static final int TIMELINE_HEIGHT = 28;
+        private static final int TIMELINE_MARGIN = 10;
+        private final Font timelineFont = new Font(Font.SANS_SERIF, Font.BOLD, 11);
+        private final MouseAdapter timelineMouse = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                scrub(e);
             }
             
-            updateScoreLabel();
-            spawnFood();
-            return true;
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                scrub(e);
+            }
+        };
+        
+        GamePanel() {
+            addMouseListener(timelineMouse);
+            addMouseMotionListener(timelineMouse);
+        }
+        
+        // Panel size in cells; the board can be larger, in which case only this window of it is drawn
+        private final int viewCols = WINDOW_WIDTH / UNIT_SIZE;
+        private final int viewRows = WINDOW_HEIGHT / UNIT_SIZE;
+        
+        // Top-left corner of the viewport in board pixels, and the cell it was in at the last paint
+        private double cameraX;
+        private double cameraY;
+        private int paintedCameraCellX = -1;
+        private int paintedCameraCellY = -1;
+        
+        /**
+         * Repaints only the cells the engine reported as changed since the last
+         * call, or the whole panel after a reset or once the camera has moved
+         * to another cell. Each cell is grown by the sprite padding (sprites
+         * reach into neighbouring cells), overlapping rectangles are merged,
+         * and every remaining rectangle is painted right away so the
+         * RepaintManager cannot union distant cells (head and tail) into one
+         * near-full-panel region. The performance overlay, when shown, is
+         * repainted along with them.
+         */
+        void repaintDirtyCells() {
+            DirtyCells dirty = state.dirty;
+            updateCamera(1.0);
+            if (dirty.isAll() || cameraCellX() != paintedCameraCellX || cameraCellY() != paintedCameraCellY) {
+                dirty.clear();
+                repaint();
+                return;
+            }
+            int pad = sprites().getPadding();
+            int size = UNIT_SIZE + 2 * pad;
+            dirtyRects.clear();
+            if (perfOverlay) {
+                dirtyRects.add(new Rectangle(OVERLAY_X, OVERLAY_Y, PerfMetrics.OVERLAY_WIDTH, PerfMetrics.OVERLAY_HEIGHT));
+            }
+            if (playback != null) {
+                dirtyRects.add(new Rectangle(0, WINDOW_HEIGHT - TIMELINE_HEIGHT, WINDOW_WIDTH, TIMELINE_HEIGHT));
+            }
+            for (int i = 0; i < dirty.size(); i++) {
+                int cell = dirty.get(i);
+                Rectangle r = new Rectangle(screenX(state.cellX(cell) * UNIT_SIZE) - pad, screenY(state.cellY(cell) * UNIT_SIZE) - pad, size, size);
+                if (r.x >= WINDOW_WIDTH || r.x + size <= 0 || r.y >= WINDOW_HEIGHT || r.y + size <= 0) {
+                    continue; // off screen
+                }
+                // Fold in every rectangle this one touches; the union can in turn touch others
+                for (int j = dirtyRects.size() - 1; j >= 0; j--) {
+                    if (dirtyRects.get(j).intersects(r)) {
+                        r.add(dirtyRects.remove(j));
+                        j = dirtyRects.size();
+                    }
+                }
+                dirtyRects.add(r);
+            }
+            dirty.clear();
+            for (Rectangle r : dirtyRects) {
+                paintImmediately(r);
+            }
         }
-        return false;
-    }
-    
-    private void activateScoreMultiplier() {
-        scoreMultiplierActive = true;
-        multiplierStartTime = System.currentTimeMillis();
         
-        // Start multiplier timer
-        if (multiplierTimer != null) {
-            multiplierTimer.stop();
+        private boolean followsX() {
+            return boardCols() > viewCols;
         }
-        multiplierTimer = new Timer(10000, e -> deactivateScoreMultiplier()); // 10 seconds
-        multiplierTimer.setRepeats(false);
-        multiplierTimer.start();
         
-        // Update score label to show multiplier status
-        updateScoreLabel();
-    }
-    
-    private void deactivateScoreMultiplier() {
-        scoreMultiplierActive = false;
-        multiplierTimer.stop();
-        updateScoreLabel();
-    }
-    
-	private void updateScoreLabel() {
-		// Level and time (separate)
-		String levelText = "Level " + currentLevel;
-		if (currentLevel == 1) {
-			long elapsedTime = System.currentTimeMillis() - gameStartTime;
-			long remainingTime = Math.max(0, levelTimeLimit - elapsedTime);
-			long minutes = remainingTime / 60000;
-			long seconds = (remainingTime % 60000) / 1000;
-			levelText += "  •  Time " + String.format("%02d:%02d", minutes, seconds);
-		} else if (currentLevel == 2) {
-			levelText += "  •  Grass";
-		} else if (currentLevel == 3) {
-			levelText += "  •  Ocean";
-		} else if (currentLevel == 4) {
-			levelText += "  •  Forest";
-		} else if (currentLevel == 5) {
-			levelText += "  •  Space";
-		}
-		levelLabel.setText(levelText);
-
-		// Player score (separate)
-		playerScoreLabel.setText("You: " + score);
-
-		// AI score (separate, only visible in level 5)
-		if (currentLevel == 5) {
-			aiScoreLabel.setText("AI: " + aiScore);
-			aiScoreLabel.setVisible(true);
-		} else {
-			aiScoreLabel.setText("");
-			aiScoreLabel.setVisible(false);
-		}
-
-		// High score (separate)
-		highScoreLabel.setText("High: " + highScore);
-
-		// Multiplier status (separate)
-		if (scoreMultiplierActive) {
-			long remainingSecs = Math.max(0, 10 - ((System.currentTimeMillis() - multiplierStartTime) / 1000));
-			multiplierLabel.setText("2x: " + remainingSecs + "s");
-			multiplierLabel.setVisible(true);
-		} else {
-			multiplierLabel.setText("");
-			multiplierLabel.setVisible(false);
-		}
-	}
-    
-    private void checkCollision() {
-        Point head = snake.get(0);
+        private boolean followsY() {
+            return boardRows() > viewRows;
+        }
         
-        // Wrap around walls instead of dying
-        if (head.x < 0) {
-            head.x = WINDOW_WIDTH - UNIT_SIZE;
-        } else if (head.x >= WINDOW_WIDTH) {
-            head.x = 0;
+        /** Width of the board being shown: the server's when playing online, otherwise the engine's. */
+        private int boardCols() {
+            NetClient client = net;
+            return client != null ? client.getCols() : state.getCols();
         }
         
-        if (head.y < 0) {
-            head.y = WINDOW_HEIGHT - UNIT_SIZE;
-        } else if (head.y >= WINDOW_HEIGHT) {
-            head.y = 0;
+        private int boardRows() {
+            NetClient client = net;
+            return client != null ? client.getRows() : state.getRows();
         }
         
-        // Check self collision
-        for (int i = 1; i < snake.size(); i++) {
-            if (head.equals(snake.get(i))) {
-                gameOver();
-                return;
-            }
+        /**
+         * Centres the viewport on the player's head, drawn {@code alpha} of
+         * the way from its previous cell, along each axis where the board is
+         * larger than the panel; on other axes the board stays at the origin.
+         */
+        private void updateCamera(double alpha) {
+            int head = state.snake.head();
+            int from = engine.neighbor(head, (char) state.trail[head]);
+            cameraX = followsX()
+                ? interpolate(state.cellX(from), state.cellX(head), state.getCols(), alpha) + (UNIT_SIZE - WINDOW_WIDTH) / 2.0
+                : 0;
+            cameraY = followsY()
+                ? interpolate(state.cellY(from), state.cellY(head), state.getRows(), alpha) + (UNIT_SIZE - WINDOW_HEIGHT) / 2.0
+                : 0;
         }
-    }
-    
-    private void checkBombCollision() {
-        if ((currentLevel == 4 || currentLevel == 5) && bomb != null && bombVisible) {
-            Point head = snake.get(0);
-            if (head.equals(bomb)) {
-                gameOver();
-            }
+        
+        private int cameraCellX() {
+            return (int) Math.floor(cameraX / UNIT_SIZE);
         }
-    }
-    
-    private void checkAIBombCollision() {
-        if ((currentLevel == 4 || currentLevel == 5) && bomb != null && bombVisible && aiSnakeActive && aiSnake != null) {
-            Point aiHead = aiSnake.get(0);
-            if (aiHead.equals(bomb)) {
-                // AI snake dies from bomb
-                aiSnakeActive = false;
-                if (aiMoveTimer != null) {
-                    aiMoveTimer.stop();
-                }
-                score += 30; // Bonus for AI dying from bomb
-                updateScoreLabel();
-            }
+        
+        private int cameraCellY() {
+            return (int) Math.floor(cameraY / UNIT_SIZE);
         }
-    }
-    
-	private void checkAICollision() {
-		if (currentLevel == 5 && aiSnakeActive && aiSnake != null) {
-			Point playerHead = snake.get(0);
-			Point aiHead = aiSnake.get(0);
-
-			// Head-on collision: prioritize resolving as AI elimination for fairness
-			if (playerHead.equals(aiHead)) {
-				killAISnake(50);
-				return;
-			}
-
-			// Player head hits AI body -> player dies
-			for (int i = 0; i < aiSnake.size(); i++) {
-				Point aiSegment = aiSnake.get(i);
-				if (playerHead.equals(aiSegment)) {
-					gameOver();
-					return;
-				}
-			}
-
-			// AI head hits any player segment -> AI dies
-			for (Point playerSegment : snake) {
-				if (aiHead.equals(playerSegment)) {
-					killAISnake(50);
-					return;
-				}
-			}
-		}
-	}
-    
-    private void gameOver() {
-        running = false;
-        timer.stop();
-        if (appleTimer != null) {
-            appleTimer.stop();
+        
+        /** Panel x of board pixel {@code px}, wrapped so cells just left of the viewport come out negative. */
+        private int screenX(int px) {
+            if (!followsX()) return px;
+            int margin = 2 * UNIT_SIZE;
+            return Math.floorMod((int) Math.round(px - cameraX) + margin, boardCols() * UNIT_SIZE) - margin;
         }
-        if (bombTimer != null) {
-            bombTimer.stop();
+        
+        private int screenY(int py) {
+            if (!followsY()) return py;
+            int margin = 2 * UNIT_SIZE;
+            return Math.floorMod((int) Math.round(py - cameraY) + margin, boardRows() * UNIT_SIZE) - margin;
         }
-        if (aiMoveTimer != null) {
-            aiMoveTimer.stop();
+        
+        // Active rendering (fixed-step mode): a heavyweight canvas covering the panel
+        private Canvas canvas;
+        
+        // Where the player's last segment was before the latest tick, for interpolation
+        private volatile int previousTail = GameState.NO_CELL;
+        
+        void notePlayerMoved(int previousTail) {
+            this.previousTail = previousTail;
         }
         
-        // Stop multiplier timer
-        if (multiplierTimer != null) {
-            multiplierTimer.stop();
+        void enableActiveRendering() {
+            if (canvas != null) return;
+            setLayout(new BorderLayout());
+            canvas = new Canvas();
+            canvas.setIgnoreRepaint(true);
+            canvas.setFocusable(false); // keys must keep going to the frame's listener
+            canvas.addMouseListener(timelineMouse); // the canvas covers the panel, so it gets the clicks
+            canvas.addMouseMotionListener(timelineMouse);
+            add(canvas, BorderLayout.CENTER);
+            setIgnoreRepaint(true);
+            revalidate();
         }
         
-        // Check if this is a new high score
-        if (score > highScore) {
-            highScore = score;
-            saveHighScore();
+        /** The sprite atlas, waiting for the asset loader only if a level starts before it has finished. */
+        private SpriteAtlas sprites() {
+            if (sprites == null) sprites = spriteLoad.join();
+            return sprites;
         }
         
-        int choice = JOptionPane.showConfirmDialog(
-            this,
-            "Game Over! Your score: " + score + "\nHigh Score: " + highScore + "\nWould you like to play again?",
-            "Game Over",
-            JOptionPane.YES_NO_OPTION
-        );
+        /** Redraws the online arena, straight to the canvas when a fixed-step game has put one up. */
+        void showNetFrame() {
+            if (canvas != null) {
+                renderActive(1.0);
+            } else {
+                repaint();
+            }
+        }
         
-        if (choice == JOptionPane.YES_OPTION) {
-            startNewGame();
-        } else {
-            showMainMenu();
+        /** Renders one frame straight to the canvas's back buffer; called on the loop thread. */
+        void renderActive(double alpha) {
+            if (canvas == null || !canvas.isDisplayable() || canvas.getWidth() <= 0) return;
+            BufferStrategy strategy = canvas.getBufferStrategy();
+            if (strategy == null) {
+                canvas.createBufferStrategy(2);
+                return;
+            }
+            do {
+                do {
+                    Graphics2D g2d = (Graphics2D) strategy.getDrawGraphics();
+                    renderFrame(g2d, alpha);
+                    g2d.dispose();
+                } while (strategy.contentsRestored());
+                strategy.show();
+            } while (strategy.contentsLost());
+            Toolkit.getDefaultToolkit().sync();
+            StartupTimer.framePainted();
         }
-    }
-    
-    private void startNewGame() {
-        startLevel(currentLevel);
-    }
-    
-    private class GamePanel extends JPanel {
+        
         @Override
         protected void paintComponent(Graphics g) {
             super.paintComponent(g);
-			
+            if (canvas == null) {
+                long start = System.nanoTime();
+                renderFrame((Graphics2D) g, 1.0);
+                metrics.paintDone(start);
+            }
+            StartupTimer.framePainted(); // a replay given on the command line opens straight into the game panel
+        }
+        
+        /**
+         * Draws the board. With {@code alpha < 1} the player snake is drawn
+         * that fraction of the way from its previous cells to its current ones.
+         */
+        private void renderFrame(Graphics2D g, double alpha) {
 			// Global high-quality rendering hints for smoother visuals
-			Graphics2D base2d = (Graphics2D) g;
+			Graphics2D base2d = g;
 			base2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
 			base2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 			base2d.setRenderingHint(RenderingHints.KEY_ALPHA_INTERPOLATION, RenderingHints.VALUE_ALPHA_INTERPOLATION_QUALITY);
@@ -1197,50 +1292,223 @@ public class SnakeGame extends JFrame {
 			base2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
 			
             if (running) {
-                // Draw level-specific background theme
-                drawBackgroundTheme(g);
-				// Add a soft vignette overlay for a more sophisticated look
-				drawVignetteOverlay((Graphics2D) g);
+                // Only sprites that touch the clip are drawn; dirty-cell repaints clip to a few cells
+                clip = g.getClipBounds();
                 
-                // Ensure food exists; spawn if missing
-                if (food == null) {
-                    spawnFood();
-                }
+                // Draw level-specific background theme (cached)
+                Object phase = GameEvents.beginPaint();
+                drawCachedBackground(base2d);
+                endPaintPhase(phase, "background");
                 
-                // Draw apple food only if visible (for level 3+)
-                if (appleVisible) {
-                    drawApple(g, food);
+                NetClient client = net;
+                if (client != null) {
+                    drawNetArena(g, client);
+                } else {
+                    drawEntities(g, alpha);
                 }
                 
-                // Draw bomb for level 4 and 5
-                if ((currentLevel == 4 || currentLevel == 5) && bomb != null && bombVisible) {
-                    drawBomb(g, bomb);
-                }
+				// In-game on-canvas text minimized; HUD handles info separately
+				// drawLevelUI(g);
                 
-                // Draw AI snake for level 5
-                if (currentLevel == 5 && aiSnakeActive && aiSnake != null) {
-                    drawAISnake(g);
+                ReplayFile replay = playback;
+                if (replay != null) {
+                    drawTimeline(g, replay);
                 }
                 
-                // Draw snake
-                for (int i = 0; i < snake.size(); i++) {
-                    if (i == 0) {
-                        // Draw snake head as diamond shape
-                        drawSnakeHead(g, snake.get(i));
-                    } else if (i == snake.size() - 1) {
-                        // Draw snake tail (last segment)
-                        drawSnakeTail(g, snake.get(i));
-                    } else {
-                        // Draw snake body as circles
-                        drawSnakeBody(g, snake.get(i));
+                if (perfOverlay) {
+                    phase = GameEvents.beginPaint();
+                    metrics.drawOverlay(g, OVERLAY_X, OVERLAY_Y);
+                    endPaintPhase(phase, "hud");
+                }
+            }
+        }
+        
+        /**
+         * The replay viewer's strip: a bar filled up to the current tick, with
+         * a mark at each keyframe, and the tick, speed and pause state.
+         */
+        private void drawTimeline(Graphics2D g, ReplayFile replay) {
+            int top = WINDOW_HEIGHT - TIMELINE_HEIGHT;
+            g.setColor(new Color(0, 0, 0, 150));
+            g.fillRect(0, top, WINDOW_WIDTH, TIMELINE_HEIGHT);
+            
+            long length = replay.getEndTick() + 1;
+            long position = state.isRunning() ? state.tick : state.tick + 1;
+            int barX = TIMELINE_MARGIN;
+            int barWidth = WINDOW_WIDTH - 2 * TIMELINE_MARGIN;
+            int barY = top + TIMELINE_HEIGHT - 9;
+            g.setColor(new Color(255, 255, 255, 60));
+            g.fillRect(barX, barY, barWidth, 4);
+            g.setColor(new Color(255, 215, 0));
+            g.fillRect(barX, barY, (int) (barWidth * Math.min(1.0, (double) position / length)), 4);
+            g.setColor(new Color(255, 255, 255, 120));
+            for (long tick = replay.interval; tick < length; tick += replay.interval) {
+                int x = barX + (int) (barWidth * tick / length);
+                g.drawLine(x, barY - 2, x, barY + 5);
+            }
+            
+            g.setFont(timelineFont);
+            g.setColor(Color.WHITE);
+            g.drawString(String.format(Locale.ROOT, "Tick %d / %d   %dx%s", Math.min(position, length), length, replaySpeed,
+                replayPaused ? "   paused" : ""), barX, top + 13);
+        }
+        
+        /** Seeks the replay to the tick under the mouse when it is on the timeline. */
+        private void scrub(MouseEvent e) {
+            ReplayFile replay = playback;
+            if (replay == null || e.getY() < WINDOW_HEIGHT - TIMELINE_HEIGHT) return;
+            double fraction = (e.getX() - TIMELINE_MARGIN) / (double) (WINDOW_WIDTH - 2 * TIMELINE_MARGIN);
+            seekReplay(Math.round(Math.max(0, Math.min(1, fraction)) * (replay.getEndTick() + 1)));
+        }
+        
+        /** The engine's apple, bomb and snakes; the player's snake {@code alpha} of the way into its latest move. */
+        private void drawEntities(Graphics2D g, double alpha) {
+            Object phase = GameEvents.beginPaint();
+            updateCamera(alpha);
+            paintedCameraCellX = cameraCellX();
+            paintedCameraCellY = cameraCellY();
+            
+            // Draw apple food only if visible (for level 3+)
+            if (state.appleVisible && state.food != GameState.NO_CELL) {
+                int apple = state.foodType.equals("multiplier") ? SpriteAtlas.MULTIPLIER_APPLE : SpriteAtlas.APPLE;
+                drawSprite(g, apple, state.food);
+            }
+            
+            // Draw bomb for level 4 and 5
+            if (state.bomb != GameState.NO_CELL && state.bombVisible) {
+                drawSprite(g, SpriteAtlas.BOMB, state.bomb);
+            }
+            
+            // Draw AI snake for level 5
+            if (state.aiSnakeActive) {
+                drawVisibleSnake(g, state.aiSnake, 1.0);
+            }
+            
+            // Draw snake
+            drawVisibleSnake(g, state.snake, alpha);
+            endPaintPhase(phase, "entities");
+        }
+        
+        /**
+         * Draws the server's arena as mirrored by {@code client}, centred on
+         * this player's head while it is alive, by scanning the visible cells
+         * for apples and snake segments.
+         */
+        private void drawNetArena(Graphics2D g, NetClient client) {
+            synchronized (client) {
+                int me = client.getAgent();
+                int cols = client.getCols();
+                int rows = client.getRows();
+                if (client.isAlive(me)) {
+                    int head = client.getBody(me).head();
+                    cameraX = followsX() ? (head % cols) * UNIT_SIZE + (UNIT_SIZE - WINDOW_WIDTH) / 2.0 : 0;
+                    cameraY = followsY() ? (head / cols) * UNIT_SIZE + (UNIT_SIZE - WINDOW_HEIGHT) / 2.0 : 0;
+                }
+                int x0 = followsX() ? cameraCellX() - 1 : 0;
+                int y0 = followsY() ? cameraCellY() - 1 : 0;
+                int spanX = followsX() ? Math.min(viewCols + 3, cols) : cols;
+                int spanY = followsY() ? Math.min(viewRows + 3, rows) : rows;
+                for (int vy = 0; vy < spanY; vy++) {
+                    int y = Math.floorMod(y0 + vy, rows);
+                    for (int vx = 0; vx < spanX; vx++) {
+                        int x = Math.floorMod(x0 + vx, cols);
+                        int cell = y * cols + x;
+                        int owner = client.ownerAt(cell);
+                        int sprite;
+                        if (owner == ArenaEngine.APPLE) {
+                            sprite = SpriteAtlas.APPLE;
+                        } else if (owner == ArenaEngine.EMPTY) {
+                            continue;
+                        } else if (owner != me) {
+                            sprite = cell == client.getBody(owner).head() ? SpriteAtlas.AI_HEAD : SpriteAtlas.AI_BODY;
+                        } else {
+                            SnakeBody body = client.getBody(me);
+                            sprite = cell == body.head() ? SpriteAtlas.headFor(client.getDirection(me))
+                                : cell == body.tail() ? SpriteAtlas.TAIL : SpriteAtlas.BODY;
+                        }
+                        drawSpriteAt(g, sprite, screenX(x * UNIT_SIZE), screenY(y * UNIT_SIZE));
                     }
                 }
-                
-				// In-game on-canvas text minimized; HUD handles info separately
-				// drawLevelUI(g);
             }
         }
         
+        /** Ends the JFR paint event for {@code phase} started by {@link GameEvents#beginPaint()}, if any. */
+        private void endPaintPhase(Object event, String phase) {
+            if (event != null) {
+                int clipArea = clip != null ? clip.width * clip.height : getWidth() * getHeight();
+                GameEvents.endPaint(event, phase, currentLevel, clipArea, state.snake.size());
+            }
+        }
+        
+        /**
+         * Draws the segments of {@code body} inside the viewport by scanning
+         * the visible cells instead of walking the body, so the cost depends
+         * on the panel size alone. With {@code alpha < 1} (player only) each
+         * segment slides from where it was a tick ago (the cell of the segment
+         * behind it, or the vacated tail cell for the last one) towards its
+         * current cell, taking the short way across the wrap-around edges.
+         */
+        private void drawVisibleSnake(Graphics g, SnakeBody body, double alpha) {
+            boolean player = body == state.snake;
+            int head = body.head();
+            int tail = body.tail();
+            int headSprite = player ? SpriteAtlas.headFor(state.direction) : SpriteAtlas.AI_HEAD;
+            int bodySprite = player ? SpriteAtlas.BODY : SpriteAtlas.AI_BODY;
+            int tailSprite = player ? SpriteAtlas.TAIL : SpriteAtlas.AI_BODY;
+            
+            // A cell of margin around the viewport catches segments sliding in from outside
+            int cols = state.getCols();
+            int rows = state.getRows();
+            int x0 = followsX() ? cameraCellX() - 1 : 0;
+            int y0 = followsY() ? cameraCellY() - 1 : 0;
+            int spanX = followsX() ? Math.min(viewCols + 3, cols) : cols;
+            int spanY = followsY() ? Math.min(viewRows + 3, rows) : rows;
+            for (int vy = 0; vy < spanY; vy++) {
+                int y = Math.floorMod(y0 + vy, rows);
+                for (int vx = 0; vx < spanX; vx++) {
+                    int cell = state.cell(Math.floorMod(x0 + vx, cols), y);
+                    if (!body.contains(cell)) continue;
+                    int sprite = cell == head ? headSprite : cell == tail ? tailSprite : bodySprite;
+                    if (alpha >= 1.0) {
+                        drawSprite(g, sprite, cell);
+                        continue;
+                    }
+                    int from = cell != tail ? engine.neighbor(cell, (char) state.trail[cell])
+                        : previousTail != GameState.NO_CELL ? previousTail : cell;
+                    int px = interpolate(state.cellX(from), state.cellX(cell), cols, alpha);
+                    int py = interpolate(state.cellY(from), state.cellY(cell), rows, alpha);
+                    sprites().draw(g, sprite, screenX(px), screenY(py));
+                }
+            }
+        }
+        
+        private int interpolate(int from, int to, int size, double alpha) {
+            int delta = to - from;
+            if (delta > 1) delta -= size;
+            else if (delta < -1) delta += size;
+            return (int) Math.round((from + delta * alpha) * UNIT_SIZE);
+        }
+        
+        private void drawSprite(Graphics g, int sprite, int cell) {
+            drawSpriteAt(g, sprite, screenX(state.cellX(cell) * UNIT_SIZE), screenY(state.cellY(cell) * UNIT_SIZE));
+        }
+        
+        /** Draws {@code sprite} with its cell's corner at panel ({@code x}, {@code y}), unless it misses the viewport or clip. */
+        private void drawSpriteAt(Graphics g, int sprite, int x, int y) {
+            int pad = sprites().getPadding();
+            int size = UNIT_SIZE + 2 * pad;
+            if (x - pad >= WINDOW_WIDTH || x - pad + size <= 0 || y - pad >= WINDOW_HEIGHT || y - pad + size <= 0) {
+                return; // outside the viewport
+            }
+            if (clip != null) {
+                if (x - pad >= clip.x + clip.width || x - pad + size <= clip.x
+                        || y - pad >= clip.y + clip.height || y - pad + size <= clip.y) {
+                    return;
+                }
+            }
+            sprites().draw(g, sprite, x, y);
+        }
+        
 		private void drawLevelUI(Graphics g) {
 			// Intentionally minimal; HUD displays information separately for a smoother UI
 		}
@@ -1250,6 +1518,53 @@ public class SnakeGame extends JFrame {
             return new Dimension(WINDOW_WIDTH, WINDOW_HEIGHT);
         }
         
+        /**
+         * Blits the pre-rendered background for the current level, rebuilding it
+         * when the level, panel size or screen changes, or when the accelerated
+         * surface was lost (e.g. display mode switch).
+         */
+        private void drawCachedBackground(Graphics2D g2d) {
+            int w = getWidth();
+            int h = getHeight();
+            GraphicsConfiguration gc = getGraphicsConfiguration();
+            if (w <= 0 || h <= 0 || gc == null) {
+                return;
+            }
+            do {
+                boolean stale = backgroundCache == null
+                    || backgroundLevel != currentLevel
+                    || backgroundConfig != gc
+                    || backgroundCache.getWidth() != w
+                    || backgroundCache.getHeight() != h;
+                if (!stale) {
+                    int status = backgroundCache.validate(gc);
+                    if (status == VolatileImage.IMAGE_INCOMPATIBLE) {
+                        stale = true;
+                    } else if (status == VolatileImage.IMAGE_RESTORED) {
+                        renderBackground(backgroundCache);
+                    }
+                }
+                if (stale) {
+                    if (backgroundCache != null) {
+                        backgroundCache.flush();
+                    }
+                    backgroundCache = gc.createCompatibleVolatileImage(w, h);
+                    backgroundConfig = gc;
+                    backgroundLevel = currentLevel;
+                    renderBackground(backgroundCache);
+                }
+                g2d.drawImage(backgroundCache, 0, 0, null);
+            } while (backgroundCache.contentsLost());
+        }
+        
+        private void renderBackground(VolatileImage target) {
+            Graphics2D g2d = target.createGraphics();
+            drawBackgroundTheme(g2d);
+			// Add a soft vignette overlay for a more sophisticated look
+			drawVignetteOverlay(g2d);
+            g2d.dispose();
+        }
+        
         private void drawBackgroundTheme(Graphics g) {
             Graphics2D g2d = (Graphics2D) g.create();
             g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
@@ -1430,328 +1745,81 @@ public class SnakeGame extends JFrame {
             g2d.setColor(new Color(34, 139, 34));
             g2d.fillOval(x - 8, y, 28, 25); // Leaves
         }
-        
-        private void drawSnakeHead(Graphics g, Point head) {
-            // Draw circular head with cool gradient effect and modern styling
-            Graphics2D g2d = (Graphics2D) g.create();
-            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-            
-            // Create gradient for head
-            GradientPaint headGradient = new GradientPaint(
-                head.x, head.y, new Color(0, 255, 127), // Spring green
-                head.x + UNIT_SIZE, head.y + UNIT_SIZE, new Color(0, 200, 100) // Darker green
-            );
-            g2d.setPaint(headGradient);
-            g2d.fillOval(head.x, head.y, UNIT_SIZE, UNIT_SIZE);
-            
-            // Draw head border with glow effect
-            g2d.setColor(new Color(0, 150, 75));
-            g2d.setStroke(new BasicStroke(2));
-            g2d.drawOval(head.x + 1, head.y + 1, UNIT_SIZE - 2, UNIT_SIZE - 2);
-            
-            // Draw black eyes based on direction
-            int eyeSize = UNIT_SIZE / 5;
-            int eyeOffset = UNIT_SIZE / 3;
-            
-            // Calculate eye positions based on direction
-            int leftEyeX, leftEyeY, rightEyeX, rightEyeY;
-            
-            switch (direction) {
-                case 'R': // Moving right
-                    leftEyeX = head.x + UNIT_SIZE - eyeOffset;
-                    leftEyeY = head.y + eyeOffset;
-                    rightEyeX = head.x + UNIT_SIZE - eyeOffset;
-                    rightEyeY = head.y + UNIT_SIZE - eyeOffset;
-                    break;
-                case 'L': // Moving left
-                    leftEyeX = head.x + eyeOffset;
-                    leftEyeY = head.y + eyeOffset;
-                    rightEyeX = head.x + eyeOffset;
-                    rightEyeY = head.y + UNIT_SIZE - eyeOffset;
-                    break;
-                case 'U': // Moving up
-                    leftEyeX = head.x + eyeOffset;
-                    leftEyeY = head.y + eyeOffset;
-                    rightEyeX = head.x + UNIT_SIZE - eyeOffset;
-                    rightEyeY = head.y + eyeOffset;
-                    break;
-                case 'D': // Moving down
-                    leftEyeX = head.x + eyeOffset;
-                    leftEyeY = head.y + UNIT_SIZE - eyeOffset;
-                    rightEyeX = head.x + UNIT_SIZE - eyeOffset;
-                    rightEyeY = head.y + UNIT_SIZE - eyeOffset;
-                    break;
-                default:
-                    leftEyeX = head.x + eyeOffset;
-                    leftEyeY = head.y + eyeOffset;
-                    rightEyeX = head.x + UNIT_SIZE - eyeOffset;
-                    rightEyeY = head.y + UNIT_SIZE - eyeOffset;
-            }
-            
-            // Draw black eyes directly (no white background)
-            g2d.setColor(Color.BLACK);
-            g2d.fillOval(leftEyeX, leftEyeY, eyeSize, eyeSize);
-            g2d.fillOval(rightEyeX, rightEyeY, eyeSize, eyeSize);
-            
-            g2d.dispose();
-        }
-        
-        private void drawSnakeBody(Graphics g, Point body) {
-            // Draw smaller circular body segments with overlap for intersection
-            int overlap = UNIT_SIZE / 4; // Reduced overlap for smaller circles
-            int circleSize = UNIT_SIZE - 4; // Make circles smaller
-            
-            Graphics2D g2d = (Graphics2D) g.create();
-            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-            
-            // Create gradient for body
-            GradientPaint bodyGradient = new GradientPaint(
-                body.x - overlap, body.y - overlap, new Color(30, 144, 255), // Dodger blue
-                body.x + circleSize, body.y + circleSize, new Color(25, 25, 112) // Midnight blue
-            );
-            g2d.setPaint(bodyGradient);
-            g2d.fillOval(body.x - overlap, body.y - overlap, circleSize + overlap, circleSize + overlap);
-            
-            // Calculate line dimensions first
-            int lineHeight = Math.max(6, (circleSize + overlap) / 4);
-            int lineX = body.x - overlap;
-            int lineY = body.y - overlap + (circleSize + overlap) / 2 - lineHeight / 2;
-            int lineWidth = circleSize + overlap;
-            
-            // Draw modern accent line through the center with gradient
-            GradientPaint accentGradient = new GradientPaint(
-                lineX, lineY, new Color(0, 255, 127), // Spring green
-                lineX + lineWidth, lineY + lineHeight, new Color(0, 200, 100) // Darker green
-            );
-            g2d.setPaint(accentGradient);
-            g2d.fillRect(lineX, lineY, lineWidth, lineHeight);
-            
-            // Draw modern border with glow effect
-            g2d.setColor(new Color(25, 25, 112)); // Midnight blue
-            g2d.setStroke(new BasicStroke(2));
-            g2d.drawOval(body.x - overlap, body.y - overlap, circleSize + overlap, circleSize + overlap);
-            
-            g2d.dispose();
-        }
-        
-        private void drawSnakeTail(Graphics g, Point tail) {
-            // Draw tail as a circle with modern theme like other body segments
-            int overlap = UNIT_SIZE / 4;
-            int circleSize = UNIT_SIZE - 4; // Same size as body circles
-            
-            Graphics2D g2d = (Graphics2D) g.create();
-            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-            
-            // Create gradient for tail
-            GradientPaint tailGradient = new GradientPaint(
-                tail.x - overlap, tail.y - overlap, new Color(30, 144, 255), // Dodger blue
-                tail.x + circleSize, tail.y + circleSize, new Color(25, 25, 112) // Midnight blue
-            );
-            g2d.setPaint(tailGradient);
-            g2d.fillOval(tail.x - overlap, tail.y - overlap, circleSize + overlap, circleSize + overlap);
-            
-            // Calculate line dimensions first
-            int lineHeight = Math.max(6, (circleSize + overlap) / 4); // Same thickness as body
-            int lineX = tail.x - overlap;
-            int lineY = tail.y - overlap + (circleSize + overlap) / 2 - lineHeight / 2;
-            int lineWidth = circleSize + overlap;
-            
-            // Draw modern accent line through the center with gradient
-            GradientPaint accentGradient = new GradientPaint(
-                lineX, lineY, new Color(0, 255, 127), // Spring green
-                lineX + lineWidth, lineY + lineHeight, new Color(0, 200, 100) // Darker green
-            );
-            g2d.setPaint(accentGradient);
-            g2d.fillRect(lineX, lineY, lineWidth, lineHeight);
-            
-            // Draw modern border with glow effect
-            g2d.setColor(new Color(25, 25, 112)); // Midnight blue
-            g2d.setStroke(new BasicStroke(2));
-            g2d.drawOval(tail.x - overlap, tail.y - overlap, circleSize + overlap, circleSize + overlap);
-            
-            g2d.dispose();
-        }
-        
-        private void drawApple(Graphics g, Point apple) {
-            if (apple == null) {
-                return;
-            }
-            // Keep the apple fully within its grid cell for visibility
-            int bodyInset = Math.max(2, UNIT_SIZE / 10);
-            int bodySize = UNIT_SIZE - bodyInset * 2;
-            int bodyX = apple.x + bodyInset;
-            int bodyY = apple.y + bodyInset;
-
-            if (foodType.equals("multiplier")) {
-                // Draw multiplier apple (green with sparkles)
-                g.setColor(new Color(0, 255, 0)); // Bright green
-                g.fillOval(bodyX, bodyY, bodySize, bodySize);
-
-                // Draw green border
-                g.setColor(new Color(0, 200, 0)); // Darker green border
-                g.drawOval(bodyX, bodyY, bodySize, bodySize);
-
-                // Draw sparkles for multiplier effect
-                g.setColor(Color.YELLOW);
-                int sparkleSize = 3;
-                g.fillOval(bodyX + bodySize / 4, bodyY + bodySize / 4, sparkleSize, sparkleSize);
-                g.fillOval(bodyX + bodySize * 3 / 4, bodyY + bodySize / 4, sparkleSize, sparkleSize);
-                g.fillOval(bodyX + bodySize / 4, bodyY + bodySize * 3 / 4, sparkleSize, sparkleSize);
-                g.fillOval(bodyX + bodySize * 3 / 4, bodyY + bodySize * 3 / 4, sparkleSize, sparkleSize);
-
-                // Draw "2x" text
-                g.setColor(Color.WHITE);
-                g.setFont(new Font("Arial", Font.BOLD, 12));
-                g.drawString("2x", bodyX + bodySize / 3, bodyY + bodySize / 2 + 4);
-
-            } else {
-                // Draw regular apple (red circle)
-                g.setColor(new Color(220, 20, 60)); // Crimson red
-                g.fillOval(bodyX, bodyY, bodySize, bodySize);
-
-                // Draw apple border
-                g.setColor(new Color(139, 0, 0)); // Dark red border
-                g.drawOval(bodyX, bodyY, bodySize, bodySize);
-
-                // Draw apple stem (brown) - anchored to top center of body
-                g.setColor(new Color(139, 69, 19)); // Saddle brown
-                int stemWidth = Math.max(2, UNIT_SIZE / 8);
-                int stemHeight = Math.max(3, UNIT_SIZE / 6);
-                int stemX = bodyX + bodySize / 2 - stemWidth / 2;
-                int stemY = bodyY - stemHeight / 2;
-                g.fillRect(stemX, stemY, stemWidth, stemHeight);
-
-                // Draw apple leaf (green) near the stem
-                g.setColor(new Color(34, 139, 34)); // Forest green
-                int leafSize = Math.max(3, UNIT_SIZE / 6);
-                int leafX = stemX + stemWidth;
-                int leafY = stemY - leafSize / 3;
-                g.fillOval(leafX, leafY, leafSize, leafSize);
-
-                // Draw leaf border
-                g.setColor(new Color(0, 100, 0)); // Dark green
-                g.drawOval(leafX, leafY, leafSize, leafSize);
-
-                // Draw apple highlight (white circle for shine effect)
-                g.setColor(new Color(255, 255, 255, 100)); // Semi-transparent white
-                int highlightSize = Math.max(3, UNIT_SIZE / 4);
-                int highlightX = bodyX + bodySize / 5;
-                int highlightY = bodyY + bodySize / 5;
-                g.fillOval(highlightX, highlightY, highlightSize / 3, highlightSize / 3);
-            }
-        }
-        
-        private void drawBomb(Graphics g, Point bomb) {
-            if (bomb == null) {
-                return;
-            }
-            
-            // Keep the bomb fully within its grid cell for visibility
-            int bodyInset = Math.max(2, UNIT_SIZE / 10);
-            int bodySize = UNIT_SIZE - bodyInset * 2;
-            int bodyX = bomb.x + bodyInset;
-            int bodyY = bomb.y + bodyInset;
-            
-            // Draw bomb body (black circle)
-            g.setColor(Color.BLACK);
-            g.fillOval(bodyX, bodyY, bodySize, bodySize);
-            
-            // Draw bomb border
-            g.setColor(Color.DARK_GRAY);
-            g.drawOval(bodyX, bodyY, bodySize, bodySize);
-            
-            // Draw fuse (red line)
-            g.setColor(Color.RED);
-            int fuseWidth = Math.max(2, UNIT_SIZE / 8);
-            int fuseHeight = Math.max(8, UNIT_SIZE / 3);
-            int fuseX = bodyX + bodySize / 2 - fuseWidth / 2;
-            int fuseY = bodyY - fuseHeight;
-            g.fillRect(fuseX, fuseY, fuseWidth, fuseHeight);
-            
-            // Draw fuse tip (orange)
-            g.setColor(Color.ORANGE);
-            int tipSize = Math.max(3, UNIT_SIZE / 6);
-            int tipX = fuseX - tipSize / 2;
-            int tipY = fuseY - tipSize / 2;
-            g.fillOval(tipX, tipY, tipSize, tipSize);
-            
-            // Draw "BOOM!" text
-            g.setColor(Color.WHITE);
-            g.setFont(new Font("Arial", Font.BOLD, 10));
-            g.drawString("BOOM!", bodyX + bodySize / 4, bodyY + bodySize / 2 + 4);
-        }
-        
-        private void drawAISnake(Graphics g) {
-            if (aiSnake == null || aiSnake.isEmpty()) return;
-            
-            Graphics2D g2d = (Graphics2D) g.create();
-            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-            
-            for (int i = 0; i < aiSnake.size(); i++) {
-                Point segment = aiSnake.get(i);
-                
-                if (i == 0) {
-                    // Draw AI snake head with cool gradient effect
-                    GradientPaint headGradient = new GradientPaint(
-                        segment.x, segment.y, new Color(255, 0, 0), // Bright red
-                        segment.x + UNIT_SIZE, segment.y + UNIT_SIZE, new Color(139, 0, 0) // Dark red
-                    );
-                    g2d.setPaint(headGradient);
-                    g2d.fillOval(segment.x, segment.y, UNIT_SIZE, UNIT_SIZE);
-                    
-                    // Draw head border with glow effect
-                    g2d.setColor(new Color(100, 0, 0));
-                    g2d.setStroke(new BasicStroke(2));
-                    g2d.drawOval(segment.x + 1, segment.y + 1, UNIT_SIZE - 2, UNIT_SIZE - 2);
-                    
-                    // Draw eyes with modern styling
-                    g2d.setColor(Color.WHITE);
-                    int eyeSize = UNIT_SIZE / 5;
-                    int eyeOffset = UNIT_SIZE / 3;
-                    g2d.fillOval(segment.x + eyeOffset, segment.y + eyeOffset, eyeSize, eyeSize);
-                    g2d.fillOval(segment.x + UNIT_SIZE - eyeOffset - eyeSize, segment.y + eyeOffset, eyeSize, eyeSize);
-                    
-                    // Draw pupils with glow effect
-                    g2d.setColor(Color.BLACK);
-                    g2d.fillOval(segment.x + eyeOffset + 1, segment.y + eyeOffset + 1, eyeSize - 2, eyeSize - 2);
-                    g2d.fillOval(segment.x + UNIT_SIZE - eyeOffset - eyeSize + 1, segment.y + eyeOffset + 1, eyeSize - 2, eyeSize - 2);
-                } else {
-                    // Draw AI snake body with gradient effect
-                    GradientPaint bodyGradient = new GradientPaint(
-                        segment.x, segment.y, new Color(139, 0, 0), // Dark red
-                        segment.x + UNIT_SIZE, segment.y + UNIT_SIZE, new Color(100, 0, 0) // Darker red
-                    );
-                    g2d.setPaint(bodyGradient);
-                    g2d.fillOval(segment.x, segment.y, UNIT_SIZE, UNIT_SIZE);
-                    
-                    // Draw body border with glow effect
-                    g2d.setColor(new Color(80, 0, 0));
-                    g2d.setStroke(new BasicStroke(1));
-                    g2d.drawOval(segment.x + 1, segment.y + 1, UNIT_SIZE - 2, UNIT_SIZE - 2);
-                }
-            }
-            
-            g2d.dispose();
-        }
     }
     
     private class GameKeyListener extends KeyAdapter {
         @Override
         public void keyPressed(KeyEvent e) {
-            if (running) {
+            if (e.getKeyCode() == KeyEvent.VK_F3) {
+                // Performance overlay, in and out of game
+                perfOverlay = !perfOverlay;
+                gamePanel.repaint();
+                return;
+            }
+            NetClient client = net;
+            if (running && client != null) {
+                // Online: turns are queued for the net-client thread; the server applies them on its next tick
+                switch (e.getKeyCode()) {
+                    case KeyEvent.VK_LEFT:
+                        client.sendTurn('L');
+                        break;
+                    case KeyEvent.VK_RIGHT:
+                        client.sendTurn('R');
+                        break;
+                    case KeyEvent.VK_UP:
+                        client.sendTurn('U');
+                        break;
+                    case KeyEvent.VK_DOWN:
+                        client.sendTurn('D');
+                        break;
+                    case KeyEvent.VK_ESCAPE:
+                        showMainMenu();
+                        break;
+                }
+            } else if (running && playback != null) {
+                // Replay viewer transport; seeks are carried out on the next tick
+                switch (e.getKeyCode()) {
+                    case KeyEvent.VK_SPACE:
+                        replayPaused = !replayPaused;
+                        break;
+                    case KeyEvent.VK_LEFT:
+                        replayPaused = true;
+                        replayNudge.addAndGet(-1);
+                        break;
+                    case KeyEvent.VK_RIGHT:
+                        replayPaused = true;
+                        replayNudge.addAndGet(1);
+                        break;
+                    case KeyEvent.VK_UP:
+                        replaySpeed = Math.min(MAX_REPLAY_SPEED, replaySpeed * 2);
+                        break;
+                    case KeyEvent.VK_DOWN:
+                        replaySpeed = Math.max(1, replaySpeed / 2);
+                        break;
+                    case KeyEvent.VK_HOME:
+                        seekReplay(0);
+                        break;
+                    case KeyEvent.VK_END:
+                        seekReplay(playback.getEndTick() + 1);
+                        break;
+                    case KeyEvent.VK_ESCAPE:
+                        showMainMenu();
+                        break;
+                }
+            } else if (running) {
                 // Game controls
                 switch (e.getKeyCode()) {
                     case KeyEvent.VK_LEFT:
-                        if (direction != 'R') direction = 'L';
+                        inputQueue.offer('L', System.nanoTime());
                         break;
                     case KeyEvent.VK_RIGHT:
-                        if (direction != 'L') direction = 'R';
+                        inputQueue.offer('R', System.nanoTime());
                         break;
                     case KeyEvent.VK_UP:
-                        if (direction != 'D') direction = 'U';
+                        inputQueue.offer('U', System.nanoTime());
                         break;
                     case KeyEvent.VK_DOWN:
-                        if (direction != 'U') direction = 'D';
+                        inputQueue.offer('D', System.nanoTime());
                         break;
                     case KeyEvent.VK_ESCAPE:
                         showMainMenu();
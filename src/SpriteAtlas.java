@@ -0,0 +1,384 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * All snake, AI snake, apple and bomb sprites, painted once at startup into
+ * a single translucent image so the game panel can draw every segment with
+ * one {@code drawImage} and no per-frame paint objects.
+ *
+ * Each sprite sits in a square slot of {@code unitSize + 2 * pad} pixels:
+ * body circles, the apple stem and the bomb fuse reach past their grid cell,
+ * so the padding keeps them from being clipped.
+ */
+public class SpriteAtlas {
+    public static final int HEAD_UP = 0;
+    public static final int HEAD_DOWN = 1;
+    public static final int HEAD_LEFT = 2;
+    public static final int HEAD_RIGHT = 3;
+    public static final int BODY = 4;
+    public static final int TAIL = 5;
+    public static final int AI_HEAD = 6;
+    public static final int AI_BODY = 7;
+    public static final int APPLE = 8;
+    public static final int MULTIPLIER_APPLE = 9;
+    public static final int BOMB = 10;
+    private static final int SPRITE_COUNT = 11;
+
+    private final int unitSize;
+    private final int pad;
+    private final int slot;
+    private final BufferedImage atlas;
+
+    public SpriteAtlas(int unitSize) {
+        this.unitSize = unitSize;
+        this.pad = unitSize / 2;
+        this.slot = unitSize + 2 * pad;
+        this.atlas = createImage(slot * SPRITE_COUNT, slot);
+
+        Graphics2D g2d = atlas.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.setRenderingHint(RenderingHints.KEY_ALPHA_INTERPOLATION, RenderingHints.VALUE_ALPHA_INTERPOLATION_QUALITY);
+        g2d.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+        g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+
+        paintSnakeHead(g2d, originX(HEAD_UP), pad, 'U');
+        paintSnakeHead(g2d, originX(HEAD_DOWN), pad, 'D');
+        paintSnakeHead(g2d, originX(HEAD_LEFT), pad, 'L');
+        paintSnakeHead(g2d, originX(HEAD_RIGHT), pad, 'R');
+        paintSnakeBody(g2d, originX(BODY), pad);
+        paintSnakeTail(g2d, originX(TAIL), pad);
+        paintAIHead(g2d, originX(AI_HEAD), pad);
+        paintAIBody(g2d, originX(AI_BODY), pad);
+        paintApple(g2d, originX(APPLE), pad, false);
+        paintApple(g2d, originX(MULTIPLIER_APPLE), pad, true);
+        paintBomb(g2d, originX(BOMB), pad);
+        g2d.dispose();
+    }
+
+    /** How far a sprite may reach outside its grid cell on each side. */
+    public int getPadding() {
+        return pad;
+    }
+
+    public static int headFor(char direction) {
+        switch (direction) {
+            case 'U': return HEAD_UP;
+            case 'D': return HEAD_DOWN;
+            case 'L': return HEAD_LEFT;
+            default: return HEAD_RIGHT;
+        }
+    }
+
+    /** Draws {@code sprite} so that its grid cell's top-left corner lands on (x, y). */
+    public void draw(Graphics g, int sprite, int x, int y) {
+        int sx = sprite * slot;
+        g.drawImage(atlas, x - pad, y - pad, x - pad + slot, y - pad + slot, sx, 0, sx + slot, slot, null);
+    }
+
+    private int originX(int sprite) {
+        return sprite * slot + pad;
+    }
+
+    private static BufferedImage createImage(int w, int h) {
+        if (!GraphicsEnvironment.isHeadless()) {
+            GraphicsConfiguration gc = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                .getDefaultScreenDevice().getDefaultConfiguration();
+            return gc.createCompatibleImage(w, h, Transparency.TRANSLUCENT);
+        }
+        return new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    private void paintSnakeHead(Graphics g, int x, int y, char direction) {
+        // Draw circular head with cool gradient effect and modern styling
+        Graphics2D g2d = (Graphics2D) g.create();
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        
+        // Create gradient for head
+        GradientPaint headGradient = new GradientPaint(
+            x, y, new Color(0, 255, 127), // Spring green
+            x + unitSize, y + unitSize, new Color(0, 200, 100) // Darker green
+        );
+        g2d.setPaint(headGradient);
+        g2d.fillOval(x, y, unitSize, unitSize);
+        
+        // Draw head border with glow effect
+        g2d.setColor(new Color(0, 150, 75));
+        g2d.setStroke(new BasicStroke(2));
+        g2d.drawOval(x + 1, y + 1, unitSize - 2, unitSize - 2);
+        
+        // Draw black eyes based on direction
+        int eyeSize = unitSize / 5;
+        int eyeOffset = unitSize / 3;
+        
+        // Calculate eye positions based on direction
+        int leftEyeX, leftEyeY, rightEyeX, rightEyeY;
+        
+        switch (direction) {
+            case 'R': // Moving right
+                leftEyeX = x + unitSize - eyeOffset;
+                leftEyeY = y + eyeOffset;
+                rightEyeX = x + unitSize - eyeOffset;
+                rightEyeY = y + unitSize - eyeOffset;
+                break;
+            case 'L': // Moving left
+                leftEyeX = x + eyeOffset;
+                leftEyeY = y + eyeOffset;
+                rightEyeX = x + eyeOffset;
+                rightEyeY = y + unitSize - eyeOffset;
+                break;
+            case 'U': // Moving up
+                leftEyeX = x + eyeOffset;
+                leftEyeY = y + eyeOffset;
+                rightEyeX = x + unitSize - eyeOffset;
+                rightEyeY = y + eyeOffset;
+                break;
+            case 'D': // Moving down
+                leftEyeX = x + eyeOffset;
+                leftEyeY = y + unitSize - eyeOffset;
+                rightEyeX = x + unitSize - eyeOffset;
+                rightEyeY = y + unitSize - eyeOffset;
+                break;
+            default:
+                leftEyeX = x + eyeOffset;
+                leftEyeY = y + eyeOffset;
+                rightEyeX = x + unitSize - eyeOffset;
+                rightEyeY = y + unitSize - eyeOffset;
+        }
+        
+        // Draw black eyes directly (no white background)
+        g2d.setColor(Color.BLACK);
+        g2d.fillOval(leftEyeX, leftEyeY, eyeSize, eyeSize);
+        g2d.fillOval(rightEyeX, rightEyeY, eyeSize, eyeSize);
+        
+        g2d.dispose();
+    }
+    
+    private void paintSnakeBody(Graphics g, int x, int y) {
+        // Draw smaller circular body segments with overlap for intersection
+        int overlap = unitSize / 4; // Reduced overlap for smaller circles
+        int circleSize = unitSize - 4; // Make circles smaller
+        
+        Graphics2D g2d = (Graphics2D) g.create();
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        
+        // Create gradient for body
+        GradientPaint bodyGradient = new GradientPaint(
+            x - overlap, y - overlap, new Color(30, 144, 255), // Dodger blue
+            x + circleSize, y + circleSize, new Color(25, 25, 112) // Midnight blue
+        );
+        g2d.setPaint(bodyGradient);
+        g2d.fillOval(x - overlap, y - overlap, circleSize + overlap, circleSize + overlap);
+        
+        // Calculate line dimensions first
+        int lineHeight = Math.max(6, (circleSize + overlap) / 4);
+        int lineX = x - overlap;
+        int lineY = y - overlap + (circleSize + overlap) / 2 - lineHeight / 2;
+        int lineWidth = circleSize + overlap;
+        
+        // Draw modern accent line through the center with gradient
+        GradientPaint accentGradient = new GradientPaint(
+            lineX, lineY, new Color(0, 255, 127), // Spring green
+            lineX + lineWidth, lineY + lineHeight, new Color(0, 200, 100) // Darker green
+        );
+        g2d.setPaint(accentGradient);
+        g2d.fillRect(lineX, lineY, lineWidth, lineHeight);
+        
+        // Draw modern border with glow effect
+        g2d.setColor(new Color(25, 25, 112)); // Midnight blue
+        g2d.setStroke(new BasicStroke(2));
+        g2d.drawOval(x - overlap, y - overlap, circleSize + overlap, circleSize + overlap);
+        
+        g2d.dispose();
+    }
+    
+    private void paintSnakeTail(Graphics g, int x, int y) {
+        // Draw tail as a circle with modern theme like other body segments
+        int overlap = unitSize / 4;
+        int circleSize = unitSize - 4; // Same size as body circles
+        
+        Graphics2D g2d = (Graphics2D) g.create();
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        
+        // Create gradient for tail
+        GradientPaint tailGradient = new GradientPaint(
+            x - overlap, y - overlap, new Color(30, 144, 255), // Dodger blue
+            x + circleSize, y + circleSize, new Color(25, 25, 112) // Midnight blue
+        );
+        g2d.setPaint(tailGradient);
+        g2d.fillOval(x - overlap, y - overlap, circleSize + overlap, circleSize + overlap);
+        
+        // Calculate line dimensions first
+        int lineHeight = Math.max(6, (circleSize + overlap) / 4); // Same thickness as body
+        int lineX = x - overlap;
+        int lineY = y - overlap + (circleSize + overlap) / 2 - lineHeight / 2;
+        int lineWidth = circleSize + overlap;
+        
+        // Draw modern accent line through the center with gradient
+        GradientPaint accentGradient = new GradientPaint(
+            lineX, lineY, new Color(0, 255, 127), // Spring green
+            lineX + lineWidth, lineY + lineHeight, new Color(0, 200, 100) // Darker green
+        );
+        g2d.setPaint(accentGradient);
+        g2d.fillRect(lineX, lineY, lineWidth, lineHeight);
+        
+        // Draw modern border with glow effect
+        g2d.setColor(new Color(25, 25, 112)); // Midnight blue
+        g2d.setStroke(new BasicStroke(2));
+        g2d.drawOval(x - overlap, y - overlap, circleSize + overlap, circleSize + overlap);
+        
+        g2d.dispose();
+    }
+    
+    private void paintApple(Graphics g, int x, int y, boolean multiplier) {
+        // Keep the apple fully within its grid cell for visibility
+        int bodyInset = Math.max(2, unitSize / 10);
+        int bodySize = unitSize - bodyInset * 2;
+        int bodyX = x + bodyInset;
+        int bodyY = y + bodyInset;
+
+        if (multiplier) {
+            // Draw multiplier apple (green with sparkles)
+            g.setColor(new Color(0, 255, 0)); // Bright green
+            g.fillOval(bodyX, bodyY, bodySize, bodySize);
+
+            // Draw green border
+            g.setColor(new Color(0, 200, 0)); // Darker green border
+            g.drawOval(bodyX, bodyY, bodySize, bodySize);
+
+            // Draw sparkles for multiplier effect
+            g.setColor(Color.YELLOW);
+            int sparkleSize = 3;
+            g.fillOval(bodyX + bodySize / 4, bodyY + bodySize / 4, sparkleSize, sparkleSize);
+            g.fillOval(bodyX + bodySize * 3 / 4, bodyY + bodySize / 4, sparkleSize, sparkleSize);
+            g.fillOval(bodyX + bodySize / 4, bodyY + bodySize * 3 / 4, sparkleSize, sparkleSize);
+            g.fillOval(bodyX + bodySize * 3 / 4, bodyY + bodySize * 3 / 4, sparkleSize, sparkleSize);
+
+            // Draw "2x" text
+            g.setColor(Color.WHITE);
+            g.setFont(new Font("Arial", Font.BOLD, 12));
+            g.drawString("2x", bodyX + bodySize / 3, bodyY + bodySize / 2 + 4);
+
+        } else {
+            // Draw regular apple (red circle)
+            g.setColor(new Color(220, 20, 60)); // Crimson red
+            g.fillOval(bodyX, bodyY, bodySize, bodySize);
+
+            // Draw apple border
+            g.setColor(new Color(139, 0, 0)); // Dark red border
+            g.drawOval(bodyX, bodyY, bodySize, bodySize);
+
+            // Draw apple stem (brown) - anchored to top center of body
+            g.setColor(new Color(139, 69, 19)); // Saddle brown
+            int stemWidth = Math.max(2, unitSize / 8);
+            int stemHeight = Math.max(3, unitSize / 6);
+            int stemX = bodyX + bodySize / 2 - stemWidth / 2;
+            int stemY = bodyY - stemHeight / 2;
+            g.fillRect(stemX, stemY, stemWidth, stemHeight);
+
+            // Draw apple leaf (green) near the stem
+            g.setColor(new Color(34, 139, 34)); // Forest green
+            int leafSize = Math.max(3, unitSize / 6);
+            int leafX = stemX + stemWidth;
+            int leafY = stemY - leafSize / 3;
+            g.fillOval(leafX, leafY, leafSize, leafSize);
+
+            // Draw leaf border
+            g.setColor(new Color(0, 100, 0)); // Dark green
+            g.drawOval(leafX, leafY, leafSize, leafSize);
+
+            // Draw apple highlight (white circle for shine effect)
+            g.setColor(new Color(255, 255, 255, 100)); // Semi-transparent white
+            int highlightSize = Math.max(3, unitSize / 4);
+            int highlightX = bodyX + bodySize / 5;
+            int highlightY = bodyY + bodySize / 5;
+            g.fillOval(highlightX, highlightY, highlightSize / 3, highlightSize / 3);
+        }
+    }
+    
+    private void paintBomb(Graphics g, int x, int y) {
+        // Keep the bomb fully within its grid cell for visibility
+        int bodyInset = Math.max(2, unitSize / 10);
+        int bodySize = unitSize - bodyInset * 2;
+        int bodyX = x + bodyInset;
+        int bodyY = y + bodyInset;
+        
+        // Draw bomb body (black circle)
+        g.setColor(Color.BLACK);
+        g.fillOval(bodyX, bodyY, bodySize, bodySize);
+        
+        // Draw bomb border
+        g.setColor(Color.DARK_GRAY);
+        g.drawOval(bodyX, bodyY, bodySize, bodySize);
+        
+        // Draw fuse (red line)
+        g.setColor(Color.RED);
+        int fuseWidth = Math.max(2, unitSize / 8);
+        int fuseHeight = Math.max(8, unitSize / 3);
+        int fuseX = bodyX + bodySize / 2 - fuseWidth / 2;
+        int fuseY = bodyY - fuseHeight;
+        g.fillRect(fuseX, fuseY, fuseWidth, fuseHeight);
+        
+        // Draw fuse tip (orange)
+        g.setColor(Color.ORANGE);
+        int tipSize = Math.max(3, unitSize / 6);
+        int tipX = fuseX - tipSize / 2;
+        int tipY = fuseY - tipSize / 2;
+        g.fillOval(tipX, tipY, tipSize, tipSize);
+        
+        // Draw "BOOM!" text
+        g.setColor(Color.WHITE);
+        g.setFont(new Font("Arial", Font.BOLD, 10));
+        g.drawString("BOOM!", bodyX + bodySize / 4, bodyY + bodySize / 2 + 4);
+    }
+
+    private void paintAIHead(Graphics g, int x, int y) {
+        Graphics2D g2d = (Graphics2D) g.create();
+        
+        // Draw AI snake head with cool gradient effect
+        GradientPaint headGradient = new GradientPaint(
+            x, y, new Color(255, 0, 0), // Bright red
+            x + unitSize, y + unitSize, new Color(139, 0, 0) // Dark red
+        );
+        g2d.setPaint(headGradient);
+        g2d.fillOval(x, y, unitSize, unitSize);
+        
+        // Draw head border with glow effect
+        g2d.setColor(new Color(100, 0, 0));
+        g2d.setStroke(new BasicStroke(2));
+        g2d.drawOval(x + 1, y + 1, unitSize - 2, unitSize - 2);
+        
+        // Draw eyes with modern styling
+        g2d.setColor(Color.WHITE);
+        int eyeSize = unitSize / 5;
+        int eyeOffset = unitSize / 3;
+        g2d.fillOval(x + eyeOffset, y + eyeOffset, eyeSize, eyeSize);
+        g2d.fillOval(x + unitSize - eyeOffset - eyeSize, y + eyeOffset, eyeSize, eyeSize);
+        
+        // Draw pupils with glow effect
+        g2d.setColor(Color.BLACK);
+        g2d.fillOval(x + eyeOffset + 1, y + eyeOffset + 1, eyeSize - 2, eyeSize - 2);
+        g2d.fillOval(x + unitSize - eyeOffset - eyeSize + 1, y + eyeOffset + 1, eyeSize - 2, eyeSize - 2);
+        
+        g2d.dispose();
+    }
+    
+    private void paintAIBody(Graphics g, int x, int y) {
+        Graphics2D g2d = (Graphics2D) g.create();
+        
+        // Draw AI snake body with gradient effect
+        GradientPaint bodyGradient = new GradientPaint(
+            x, y, new Color(139, 0, 0), // Dark red
+            x + unitSize, y + unitSize, new Color(100, 0, 0) // Darker red
+        );
+        g2d.setPaint(bodyGradient);
+        g2d.fillOval(x, y, unitSize, unitSize);
+        
+        // Draw body border with glow effect
+        g2d.setColor(new Color(80, 0, 0));
+        g2d.setStroke(new BasicStroke(1));
+        g2d.drawOval(x + 1, y + 1, unitSize - 2, unitSize - 2);
+        
+        g2d.dispose();
+    }
+}
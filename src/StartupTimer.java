@@ -0,0 +1,46 @@
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Cold-start milestones, measured from when {@link App#main} started:
+ * the first frame painted, the window ready for input, and every asset
+ * loaded in the background. Each is printed once, when it is reached, so
+ * a startup regression shows up in the console of any run.
+ *
+ * Time to interactive is when the event queue first runs a task posted
+ * by the first paint: the window is showing and the EDT has worked
+ * through everything queued during startup, so a key press or click is
+ * handled right away.
+ */
+public final class StartupTimer {
+    private static final long START = System.nanoTime();
+
+    private static final AtomicBoolean framePainted = new AtomicBoolean();
+    private static final AtomicBoolean assetsLoaded = new AtomicBoolean();
+
+    private StartupTimer() {
+    }
+
+    /** Call first thing in {@code main}; loading this class starts the clock. */
+    public static void start() {
+    }
+
+    /**
+     * Call from anything that paints a frame; the first call prints the time
+     * to first frame and schedules the time-to-interactive check. Any thread.
+     */
+    public static void framePainted() {
+        if (framePainted.get() || !framePainted.compareAndSet(false, true)) return;
+        print("first frame");
+        java.awt.EventQueue.invokeLater(() -> print("interactive"));
+    }
+
+    /** Call once every background load has finished, successfully or not. */
+    public static void assetsLoaded() {
+        if (assetsLoaded.compareAndSet(false, true)) print("assets loaded");
+    }
+
+    private static void print(String milestone) {
+        System.out.println(String.format(java.util.Locale.ROOT, "Startup: %s after %.0f ms",
+            milestone, (System.nanoTime() - START) / 1e6));
+    }
+}
@@ -0,0 +1,150 @@
+import java.util.Arrays;
+
+/**
+ * Hashed timing wheel for a fixed set of timers identified by small ints,
+ * advanced one slot per engine tick. Each timer lives in intrusive linked
+ * lists built from primitive arrays, so scheduling, cancelling and firing
+ * never allocate. Deadlines past one revolution simply stay in their slot
+ * until the wheel comes round to the right tick.
+ *
+ * Timers that fall due on the same tick fire in ascending id order, so the
+ * outcome never depends on the order they happened to be scheduled in.
+ */
+public class TimingWheel {
+    /** Receives due timers from {@link #advance(Handler)}. */
+    public interface Handler {
+        void onTimer(int id);
+    }
+
+    private static final int IDLE = 0;
+    private static final int SCHEDULED = 1;
+    private static final int DUE = 2;
+    private static final int NONE = -1;
+
+    private final int[] slotHead;
+    private final int[] slotTail;
+    private final int mask;
+
+    private final int[] next;
+    private final int[] prev;
+    private final long[] deadline;
+    private final int[] status;
+
+    // Timers collected for firing in the current advance()
+    private final int[] dueIds;
+    private int dueCount;
+
+    private long now = 0;
+
+    /** {@code slots} is rounded up to a power of two. */
+    public TimingWheel(int timerCount, int slots) {
+        int size = Integer.highestOneBit(Math.max(1, slots - 1)) << 1;
+        slotHead = new int[size];
+        slotTail = new int[size];
+        mask = size - 1;
+        next = new int[timerCount];
+        prev = new int[timerCount];
+        deadline = new long[timerCount];
+        status = new int[timerCount];
+        dueIds = new int[timerCount];
+        clear();
+    }
+
+    /** Cancels every timer and rewinds the wheel to tick 0. */
+    public void clear() {
+        Arrays.fill(slotHead, NONE);
+        Arrays.fill(slotTail, NONE);
+        Arrays.fill(status, IDLE);
+        dueCount = 0;
+        now = 0;
+    }
+
+    public long now() {
+        return now;
+    }
+
+    /** Schedules (or reschedules) {@code id} to fire {@code delayTicks} ticks from now, at least one. */
+    public void schedule(int id, long delayTicks) {
+        cancel(id);
+        long at = now + Math.max(1, delayTicks);
+        deadline[id] = at;
+        status[id] = SCHEDULED;
+        int slot = (int) (at & mask);
+        next[id] = NONE;
+        prev[id] = slotTail[slot];
+        if (slotTail[slot] == NONE) {
+            slotHead[slot] = id;
+        } else {
+            next[slotTail[slot]] = id;
+        }
+        slotTail[slot] = id;
+    }
+
+    public void cancel(int id) {
+        if (status[id] == SCHEDULED) {
+            unlink(id);
+        }
+        status[id] = IDLE;
+    }
+
+    public boolean isScheduled(int id) {
+        return status[id] == SCHEDULED;
+    }
+
+    /** Ticks until {@code id} fires, or 0 if it is not scheduled. */
+    public long remainingTicks(int id) {
+        return status[id] == SCHEDULED ? deadline[id] - now : 0;
+    }
+
+    /** Moves to the next tick and fires every timer due on it. */
+    public void advance(Handler handler) {
+        now++;
+        int slot = (int) (now & mask);
+
+        // Unlink everything due first; handlers may cancel or reschedule other timers
+        dueCount = 0;
+        int id = slotHead[slot];
+        while (id != NONE) {
+            int following = next[id];
+            if (deadline[id] <= now) {
+                unlink(id);
+                status[id] = DUE;
+                insertDue(id);
+            }
+            id = following;
+        }
+
+        for (int i = 0; i < dueCount; i++) {
+            int due = dueIds[i];
+            // Skip timers a previous handler cancelled or rescheduled in the meantime
+            if (status[due] == DUE) {
+                status[due] = IDLE;
+                handler.onTimer(due);
+            }
+        }
+        dueCount = 0;
+    }
+
+    private void insertDue(int id) {
+        int i = dueCount++;
+        while (i > 0 && dueIds[i - 1] > id) {
+            dueIds[i] = dueIds[i - 1];
+            i--;
+        }
+        dueIds[i] = id;
+    }
+
+    private void unlink(int id) {
+        int slot = (int) (deadline[id] & mask);
+        if (prev[id] == NONE) {
+            slotHead[slot] = next[id];
+        } else {
+            next[prev[id]] = next[id];
+        }
+        if (next[id] == NONE) {
+            slotTail[slot] = prev[id];
+        } else {
+            prev[next[id]] = prev[id];
+        }
+    }
+}